@@ -65,6 +65,106 @@ public class AgentConfig {
     public static final String FEDERATION_SERVICE_BATCH_SIZE = "cx.agent.federation.batch.max";
     public static final long DEFAULT_FEDERATION_SERVICE_BATCH_SIZE = Long.MAX_VALUE;
 
+    public static final String FEDERATION_SERVICE_BATCH_ADAPTIVE = "cx.agent.federation.batch.adaptive";
+    public static final boolean DEFAULT_FEDERATION_SERVICE_BATCH_ADAPTIVE = false;
+
+    public static final String FEDERATION_SERVICE_BATCH_MIN = "cx.agent.federation.batch.min";
+    public static final long DEFAULT_FEDERATION_SERVICE_BATCH_MIN = 1;
+
+    public static final String FEDERATION_SERVICE_BATCH_INITIAL = "cx.agent.federation.batch.initial";
+    public static final long DEFAULT_FEDERATION_SERVICE_BATCH_INITIAL = 64;
+
+    public static final String FEDERATION_SERVICE_BATCH_LATENCY = "cx.agent.federation.batch.latency";
+    public static final long DEFAULT_FEDERATION_SERVICE_BATCH_LATENCY = 2000;
+
+    public static final String FEDERATION_SERVICE_BATCH_PIPELINE = "cx.agent.federation.batch.pipeline";
+    public static final int DEFAULT_FEDERATION_SERVICE_BATCH_PIPELINE = 0;
+
+    public static final String FEDERATION_SERVICE_BATCH_SPLIT = "cx.agent.federation.batch.split";
+    public static final int DEFAULT_FEDERATION_SERVICE_BATCH_SPLIT = 1;
+
+    public static final String FEDERATION_SERVICE_BATCH_SPLIT_MIN = "cx.agent.federation.batch.split.min";
+    public static final long DEFAULT_FEDERATION_SERVICE_BATCH_SPLIT_MIN = 64;
+
+    public static final String FEDERATION_DEADLINE = "cx.agent.federation.deadline";
+    public static final long DEFAULT_FEDERATION_DEADLINE = -1;
+
+    public static final String FEDERATION_MAX_REQUESTS = "cx.agent.federation.requests.max";
+    public static final int DEFAULT_FEDERATION_MAX_REQUESTS = 64;
+
+    public static final String FEDERATION_MAX_REQUESTS_PER_HOST = "cx.agent.federation.requests.host";
+    public static final int DEFAULT_FEDERATION_MAX_REQUESTS_PER_HOST = 16;
+
+    public static final String FEDERATION_SERVICE_STREAMING = "cx.agent.federation.streaming";
+    public static final boolean DEFAULT_FEDERATION_SERVICE_STREAMING = false;
+
+    public static final String FEDERATION_SERVICE_READAHEAD = "cx.agent.federation.readahead";
+    public static final int DEFAULT_FEDERATION_SERVICE_READAHEAD = 1024;
+
+    public static final String FEDERATION_VIRTUAL_THREADS = "cx.agent.federation.threads.virtual";
+    public static final boolean DEFAULT_FEDERATION_VIRTUAL_THREADS = false;
+
+    public static final String FEDERATION_CONNECTOR_LIMIT = "cx.agent.federation.connector.max";
+    public static final int DEFAULT_FEDERATION_CONNECTOR_LIMIT = -1;
+
+    public static final String FEDERATION_ASSET_LIMIT = "cx.agent.federation.asset.max";
+    public static final int DEFAULT_FEDERATION_ASSET_LIMIT = -1;
+
+    public static final String FEDERATION_BULKHEAD_QUEUE = "cx.agent.federation.bulkhead.queue";
+    public static final int DEFAULT_FEDERATION_BULKHEAD_QUEUE = 64;
+
+    public static final String FEDERATION_BULKHEAD_WAIT = "cx.agent.federation.bulkhead.wait";
+    public static final long DEFAULT_FEDERATION_BULKHEAD_WAIT = 5000;
+
+    public static final String NEGOTIATION_CONNECTOR_LIMIT = "cx.agent.negotiation.connector.max";
+    public static final int DEFAULT_NEGOTIATION_CONNECTOR_LIMIT = -1;
+
+    public static final String FEDERATION_BREAKER_FAILURES = "cx.agent.federation.breaker.failures";
+    public static final int DEFAULT_FEDERATION_BREAKER_FAILURES = -1;
+
+    public static final String FEDERATION_BREAKER_DELAY = "cx.agent.federation.breaker.delay";
+    public static final long DEFAULT_FEDERATION_BREAKER_DELAY = 30000;
+
+    public static final String FEDERATION_HEDGE_PERCENTILE = "cx.agent.federation.hedge.percentile";
+    public static final int DEFAULT_FEDERATION_HEDGE_PERCENTILE = -1;
+
+    public static final String FEDERATION_COMPRESSION = "cx.agent.federation.compression";
+    public static final boolean DEFAULT_FEDERATION_COMPRESSION = false;
+
+    public static final String FEDERATION_COMPRESSION_MIN = "cx.agent.federation.compression.min";
+    public static final int DEFAULT_FEDERATION_COMPRESSION_MIN = 4096;
+
+    public static final String FEDERATION_BINARY_RESULTS = "cx.agent.federation.results.binary";
+    public static final boolean DEFAULT_FEDERATION_BINARY_RESULTS = false;
+
+    public static final String FEDERATION_ROUTE_CACHE = "cx.agent.federation.routes.max";
+    public static final int DEFAULT_FEDERATION_ROUTE_CACHE = 1024;
+
+    public static final String FEDERATION_ORDERING = "cx.agent.federation.ordering";
+    public static final boolean DEFAULT_FEDERATION_ORDERING = true;
+
+    public static final String FEDERATION_HASH_JOIN = "cx.agent.federation.hashjoin.max";
+    public static final long DEFAULT_FEDERATION_HASH_JOIN = 0;
+
+    public static final String FEDERATION_UNION_PARALLELISM = "cx.agent.federation.union.max";
+    public static final int DEFAULT_FEDERATION_UNION_PARALLELISM = 8;
+
+    public static final String FEDERATION_BRANCH_THREADS = "cx.agent.federation.branch.threads";
+    public static final int DEFAULT_FEDERATION_BRANCH_THREADS = 32;
+
+    public static final String FEDERATION_PUSHDOWN = "cx.agent.federation.pushdown";
+    public static final boolean DEFAULT_FEDERATION_PUSHDOWN = true;
+
+    public static final String FEDERATION_PUSHDOWN_AGGREGATES = "cx.agent.federation.pushdown.aggregates";
+    public static final boolean DEFAULT_FEDERATION_PUSHDOWN_AGGREGATES = true;
+
+    public static final String FEDERATION_LOCAL = "cx.agent.federation.local";
+    public static final boolean DEFAULT_FEDERATION_LOCAL = true;
+
+    public static final String COMPRESSION_CONTEXTS = "cx.agent.compression.contexts";
+    public static final String AGENT_COMPRESSION_CONTEXT = "agent";
+    public static final String DEFAULT_COMPRESSION_CONTEXTS = AGENT_COMPRESSION_CONTEXT + ",public";
+
     public static final String THREAD_POOL_SIZE = "cx.agent.threadpool.size";
     public static final int DEFAULT_THREAD_POOL_SIZE = 4;
 
@@ -324,6 +424,303 @@ public class AgentConfig {
         return config.getLong(FEDERATION_SERVICE_BATCH_SIZE, DEFAULT_FEDERATION_SERVICE_BATCH_SIZE);
     }
 
+    /**
+     * access
+     *
+     * @return whether batch sizes should be adapted per service
+     */
+    public boolean isFederationServiceBatchAdaptive() {
+        return config.getBoolean(FEDERATION_SERVICE_BATCH_ADAPTIVE, DEFAULT_FEDERATION_SERVICE_BATCH_ADAPTIVE);
+    }
+
+    /**
+     * access
+     *
+     * @return minimal batch size for adaptive remote service calls
+     */
+    public long getFederationServiceBatchMin() {
+        return Math.max(1, config.getLong(FEDERATION_SERVICE_BATCH_MIN, DEFAULT_FEDERATION_SERVICE_BATCH_MIN));
+    }
+
+    /**
+     * access
+     *
+     * @return initial batch size for adaptive remote service calls
+     */
+    public long getFederationServiceBatchInitial() {
+        return config.getLong(FEDERATION_SERVICE_BATCH_INITIAL, DEFAULT_FEDERATION_SERVICE_BATCH_INITIAL);
+    }
+
+    /**
+     * access
+     *
+     * @return latency in milliseconds which adaptive remote service calls should aim at
+     */
+    public long getFederationServiceBatchLatency() {
+        return config.getLong(FEDERATION_SERVICE_BATCH_LATENCY, DEFAULT_FEDERATION_SERVICE_BATCH_LATENCY);
+    }
+
+    /**
+     * access
+     *
+     * @return number of batches to dispatch ahead of the currently consumed batch
+     */
+    public int getFederationServiceBatchPipeline() {
+        return Math.max(0, config.getInteger(FEDERATION_SERVICE_BATCH_PIPELINE, DEFAULT_FEDERATION_SERVICE_BATCH_PIPELINE));
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of concurrent requests into which the batch of a single service is split
+     */
+    public int getFederationServiceBatchSplit() {
+        return Math.max(1, config.getInteger(FEDERATION_SERVICE_BATCH_SPLIT, DEFAULT_FEDERATION_SERVICE_BATCH_SPLIT));
+    }
+
+    /**
+     * access
+     *
+     * @return minimal number of bindings per request of a split batch
+     */
+    public long getFederationServiceBatchSplitMin() {
+        return Math.max(1, config.getLong(FEDERATION_SERVICE_BATCH_SPLIT_MIN, DEFAULT_FEDERATION_SERVICE_BATCH_SPLIT_MIN));
+    }
+
+    /**
+     * access
+     *
+     * @return number of milliseconds after which pending federated calls of a query are given up, negative if unlimited
+     */
+    public long getFederationDeadline() {
+        return config.getLong(FEDERATION_DEADLINE, DEFAULT_FEDERATION_DEADLINE);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of concurrently executing remote service calls
+     */
+    public int getFederationMaxRequests() {
+        return config.getInteger(FEDERATION_MAX_REQUESTS, DEFAULT_FEDERATION_MAX_REQUESTS);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of concurrently executing remote service calls per host
+     */
+    public int getFederationMaxRequestsPerHost() {
+        return config.getInteger(FEDERATION_MAX_REQUESTS_PER_HOST, DEFAULT_FEDERATION_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * access
+     *
+     * @return whether remote service results should be streamed rather than materialized
+     */
+    public boolean isFederationServiceStreaming() {
+        return config.getBoolean(FEDERATION_SERVICE_STREAMING, DEFAULT_FEDERATION_SERVICE_STREAMING);
+    }
+
+    /**
+     * access
+     *
+     * @return number of remote result rows to read ahead when streaming
+     */
+    public int getFederationServiceReadAhead() {
+        return config.getInteger(FEDERATION_SERVICE_READAHEAD, DEFAULT_FEDERATION_SERVICE_READAHEAD);
+    }
+
+    /**
+     * access
+     *
+     * @return whether remote service invocations should run on virtual threads (if supported by the runtime)
+     */
+    public boolean isFederationVirtualThreads() {
+        return config.getBoolean(FEDERATION_VIRTUAL_THREADS, DEFAULT_FEDERATION_VIRTUAL_THREADS);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of concurrent federated calls per remote connector, non-positive if unlimited
+     */
+    public int getFederationConnectorLimit() {
+        return config.getInteger(FEDERATION_CONNECTOR_LIMIT, DEFAULT_FEDERATION_CONNECTOR_LIMIT);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of concurrent federated calls per remote asset, non-positive if unlimited
+     */
+    public int getFederationAssetLimit() {
+        return config.getInteger(FEDERATION_ASSET_LIMIT, DEFAULT_FEDERATION_ASSET_LIMIT);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of calls waiting for a connector or asset slot
+     */
+    public int getFederationBulkheadQueue() {
+        return config.getInteger(FEDERATION_BULKHEAD_QUEUE, DEFAULT_FEDERATION_BULKHEAD_QUEUE);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of milliseconds a call waits for a connector or asset slot
+     */
+    public long getFederationBulkheadWait() {
+        return config.getLong(FEDERATION_BULKHEAD_WAIT, DEFAULT_FEDERATION_BULKHEAD_WAIT);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of concurrent negotiations per remote connector, non-positive if unlimited
+     */
+    public int getNegotiationConnectorLimit() {
+        return config.getInteger(NEGOTIATION_CONNECTOR_LIMIT, DEFAULT_NEGOTIATION_CONNECTOR_LIMIT);
+    }
+
+    /**
+     * access
+     *
+     * @return number of consecutive failures after which calls to a remote endpoint are refused, non-positive if never
+     */
+    public int getFederationBreakerFailures() {
+        return config.getInteger(FEDERATION_BREAKER_FAILURES, DEFAULT_FEDERATION_BREAKER_FAILURES);
+    }
+
+    /**
+     * access
+     *
+     * @return number of milliseconds calls to a failing remote endpoint are refused before probing again
+     */
+    public long getFederationBreakerDelay() {
+        return config.getLong(FEDERATION_BREAKER_DELAY, DEFAULT_FEDERATION_BREAKER_DELAY);
+    }
+
+    /**
+     * access
+     *
+     * @return latency percentile (of the remote endpoint) after which a remote select is sent a second time, non-positive if never
+     */
+    public int getFederationHedgePercentile() {
+        return config.getInteger(FEDERATION_HEDGE_PERCENTILE, DEFAULT_FEDERATION_HEDGE_PERCENTILE);
+    }
+
+    /**
+     * access
+     *
+     * @return whether bodies of outgoing federated calls are gzip compressed
+     */
+    public boolean isFederationCompression() {
+        return config.getBoolean(FEDERATION_COMPRESSION, DEFAULT_FEDERATION_COMPRESSION);
+    }
+
+    /**
+     * access
+     *
+     * @return minimal number of bytes from which on outgoing bodies are compressed
+     */
+    public int getFederationCompressionMin() {
+        return config.getInteger(FEDERATION_COMPRESSION_MIN, DEFAULT_FEDERATION_COMPRESSION_MIN);
+    }
+
+    /**
+     * access
+     *
+     * @return whether binary (thrift) result sets are requested from remote agents
+     */
+    public boolean isFederationBinaryResults() {
+        return config.getBoolean(FEDERATION_BINARY_RESULTS, DEFAULT_FEDERATION_BINARY_RESULTS);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of resolved dataspace service routes to remember, non-positive disables the cache
+     */
+    public int getFederationRouteCacheSize() {
+        return config.getInteger(FEDERATION_ROUTE_CACHE, DEFAULT_FEDERATION_ROUTE_CACHE);
+    }
+
+    /**
+     * access
+     *
+     * @return whether federated services should be ordered by their observed selectivity
+     */
+    public boolean isFederationOrdering() {
+        return config.getBoolean(FEDERATION_ORDERING, DEFAULT_FEDERATION_ORDERING);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of results of a service pattern which is fetched once and joined locally, non-positive always ships the bindings
+     */
+    public long getFederationHashJoinLimit() {
+        return config.getLong(FEDERATION_HASH_JOIN, DEFAULT_FEDERATION_HASH_JOIN);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of service branches of a union which are executed concurrently, 1 executes them one after the other
+     */
+    public int getFederationUnionParallelism() {
+        return config.getInteger(FEDERATION_UNION_PARALLELISM, DEFAULT_FEDERATION_UNION_PARALLELISM);
+    }
+
+    /**
+     * access
+     *
+     * @return maximal number of threads running concurrent service branches (if there is no dedicated federation lane)
+     */
+    public int getFederationBranchThreads() {
+        return config.getInteger(FEDERATION_BRANCH_THREADS, DEFAULT_FEDERATION_BRANCH_THREADS);
+    }
+
+    /**
+     * access
+     *
+     * @return whether filters, projections, duplicate elimination and limits should be pushed into the remote queries
+     */
+    public boolean isFederationPushdown() {
+        return config.getBoolean(FEDERATION_PUSHDOWN, DEFAULT_FEDERATION_PUSHDOWN);
+    }
+
+    /**
+     * access
+     *
+     * @return whether decomposable aggregates should be split into remote partial aggregates
+     */
+    public boolean isFederationPushdownAggregates() {
+        return config.getBoolean(FEDERATION_PUSHDOWN_AGGREGATES, DEFAULT_FEDERATION_PUSHDOWN_AGGREGATES);
+    }
+
+    /**
+     * access
+     *
+     * @return whether services which target graph assets of the local connector are evaluated in-process
+     */
+    public boolean isFederationLocal() {
+        return config.getBoolean(FEDERATION_LOCAL, DEFAULT_FEDERATION_LOCAL);
+    }
+
+    /**
+     * access
+     *
+     * @return web contexts in which compressed requests and responses are supported
+     */
+    public String[] getCompressionContexts() {
+        return config.getString(COMPRESSION_CONTEXTS, DEFAULT_COMPRESSION_CONTEXTS).split(",");
+    }
+
     /**
      * access
      *
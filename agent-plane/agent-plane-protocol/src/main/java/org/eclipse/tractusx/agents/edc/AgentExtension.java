@@ -36,6 +36,7 @@ import org.eclipse.edc.spi.system.ServiceExtensionContext;
 import org.eclipse.edc.spi.types.TypeManager;
 import org.eclipse.edc.web.spi.WebService;
 import org.eclipse.tractusx.agents.edc.http.AgentController;
+import org.eclipse.tractusx.agents.edc.http.CompressionFilter;
 import org.eclipse.tractusx.agents.edc.http.DelegationServiceImpl;
 import org.eclipse.tractusx.agents.edc.http.HttpClientFactory;
 import org.eclipse.tractusx.agents.edc.http.transfer.AgentSourceFactory;
@@ -45,10 +46,12 @@ import org.eclipse.tractusx.agents.edc.service.DataManagement;
 import org.eclipse.tractusx.agents.edc.service.DataspaceSynchronizer;
 import org.eclipse.tractusx.agents.edc.service.EdcSkillStore;
 import org.eclipse.tractusx.agents.edc.sparql.DataspaceServiceExecutor;
+import org.eclipse.tractusx.agents.edc.sparql.FederationExecutors;
 import org.eclipse.tractusx.agents.edc.sparql.SparqlQueryProcessor;
 import org.eclipse.tractusx.agents.edc.sparql.SparqlQuerySerializerFactory;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -63,6 +66,7 @@ public class AgentExtension implements ServiceExtension {
      */
     protected static final String DEFAULT_CONTEXT_ALIAS = "default";
     protected static final String CALLBACK_CONTEXT_ALIAS = "callback";
+    protected static final String AGENT_RESOURCE_PATH = "agent";
 
     /**
      * dependency injection part
@@ -96,6 +100,18 @@ public class AgentExtension implements ServiceExtension {
      */
     protected ScheduledExecutorService executorService;
 
+    /**
+     * refers the execution lane of federated calls
+     * (may be the scheduler)
+     */
+    protected ExecutorService federationService;
+
+    /**
+     * refers the lane of tasks which wait for federated calls
+     * (may be the federation lane)
+     */
+    protected ExecutorService branchService;
+
     /**
      * data synchronization service
      */
@@ -140,7 +156,11 @@ public class AgentExtension implements ServiceExtension {
 
         // EDC Remoting Support
         ServiceExecutorRegistry reg = new ServiceExecutorRegistry();
-        reg.addBulkLink(new DataspaceServiceExecutor(monitor, agreementController, config, httpClient, executorService, typeManager));
+        federationService = FederationExecutors.create(config, monitor, executorService);
+        branchService = FederationExecutors.createBlocking(config, federationService, executorService);
+        // service calls and delegations share the per-connector limits
+        Bulkhead bulkhead = Bulkhead.forFederation(config, monitor);
+        reg.addBulkLink(new DataspaceServiceExecutor(monitor, agreementController, config, httpClient, federationService, typeManager, bulkhead, rdfStore, catalogService));
         //reg.add(new DataspaceServiceExecutor(monitor,agreementController,config,httpClient));
 
         // Ontop and other deep nesting-afraid providers/optimizers
@@ -151,15 +171,28 @@ public class AgentExtension implements ServiceExtension {
         SerializerRegistry.get().addQuerySerializer(Syntax.syntaxSPARQL_11, arqQuerySerializerFactory);
 
         // the actual sparql engine inside the EDC
-        SparqlQueryProcessor processor = new SparqlQueryProcessor(reg, monitor, config, rdfStore, typeManager);
+        SparqlQueryProcessor processor = new SparqlQueryProcessor(reg, monitor, config, rdfStore, typeManager, branchService);
 
         // stored procedure store and transport endpoint
         SkillStore skillStore = new EdcSkillStore(catalogService, typeManager, config);
-        DelegationServiceImpl delegationService = new DelegationServiceImpl(agreementController, monitor, httpClient, typeManager, config);
+        DelegationServiceImpl delegationService = new DelegationServiceImpl(agreementController, monitor, httpClient, typeManager, config, bulkhead);
         AgentController agentController = new AgentController(monitor, agreementController, config, processor, skillStore, delegationService);
         monitor.debug(String.format("Registering agent controller %s", agentController));
         webService.registerResource(DEFAULT_CONTEXT_ALIAS, agentController);
 
+        // gzip transport between agents (the public context receives the queries of remote agents)
+        // the agent context is just the agent controller inside the default context, whole contexts are opt-in
+        for (String compressionContext : config.getCompressionContexts()) {
+            String contextAlias = compressionContext.trim();
+            if (AgentConfig.AGENT_COMPRESSION_CONTEXT.equals(contextAlias)) {
+                monitor.debug(String.format("Registering compression filter for the agent resources in context %s", DEFAULT_CONTEXT_ALIAS));
+                webService.registerResource(DEFAULT_CONTEXT_ALIAS, new CompressionFilter(monitor, AGENT_RESOURCE_PATH));
+            } else if (!contextAlias.isBlank()) {
+                monitor.debug(String.format("Registering compression filter in context %s", contextAlias));
+                webService.registerResource(contextAlias, new CompressionFilter(monitor));
+            }
+        }
+
         monitor.debug(String.format("Initialized %s", name()));
 
         HttpRequestFactory httpRequestFactory = new HttpRequestFactory();
@@ -206,5 +239,11 @@ public class AgentExtension implements ServiceExtension {
     @Override
     public void shutdown() {
         synchronizer.shutdown();
+        if (federationService != executorService) {
+            federationService.shutdownNow();
+        }
+        if (branchService != federationService) {
+            branchService.shutdownNow();
+        }
     }
 }
\ No newline at end of file
@@ -75,6 +75,7 @@ public class AgreementControllerImpl implements AgreementController {
     protected final Monitor monitor;
     protected final DataManagement dataManagement;
     protected final AgentConfig config;
+    protected final Bulkhead bulkhead;
 
     /**
      * memory store for links from assets to the actual transfer addresses
@@ -103,6 +104,7 @@ public class AgreementControllerImpl implements AgreementController {
         this.monitor = monitor;
         this.dataManagement = dataManagement;
         this.config = config;
+        this.bulkhead = Bulkhead.forNegotiation(config, monitor);
     }
 
     /**
@@ -249,6 +251,25 @@ public class AgreementControllerImpl implements AgreementController {
      */
     @Override
     public EndpointDataReference createAgreement(String remoteUrl, String asset) throws WebApplicationException {
+        // limit the concurrent negotiations with a single connector
+        Bulkhead.Permit permit = bulkhead.acquire(remoteUrl, asset);
+        try {
+            return negotiateAgreement(remoteUrl, asset);
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * negotiates a new agreement and transfer
+     * and waits for the result
+     *
+     * @param remoteUrl ids endpoint url of the remote connector
+     * @param asset name of the asset to agree upon
+     * @return endpoint reference of the transfer
+     * @throws WebApplicationException if the negotiation fails
+     */
+    protected EndpointDataReference negotiateAgreement(String remoteUrl, String asset) throws WebApplicationException {
         monitor.debug(String.format("About to create an agreement for asset %s at connector %s", asset, remoteUrl));
 
         activate(asset);
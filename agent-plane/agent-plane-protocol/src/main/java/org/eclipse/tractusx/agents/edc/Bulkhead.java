@@ -0,0 +1,361 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.ws.rs.ServiceUnavailableException;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent outgoing calls per remote connector
+ * (and per remote asset), such that a slow partner cannot occupy
+ * all workers. Callers beyond the limit wait in a bounded queue for a bounded
+ * time and are rejected fast otherwise.
+ * Active calls, queue depth, wait times and rejections are published as metrics.
+ * The metrics are aggregated per kind of compartment (connector or asset), as the number
+ * of remote connectors and assets is unbounded. Rejections are logged with their compartment.
+ */
+public class Bulkhead {
+
+    public static final String METRIC_PREFIX = "cx.agent.bulkhead.";
+
+    protected final String name;
+    protected final int connectorLimit;
+    protected final int assetLimit;
+    protected final int queueLimit;
+    protected final long maxWait;
+    protected final Monitor monitor;
+    protected final MeterRegistry registry;
+
+    protected final Map<String, Compartment> connectors = new ConcurrentHashMap<>();
+    protected final Map<String, Compartment> assets = new ConcurrentHashMap<>();
+    protected final Map<String, Timer> waitTimers = new ConcurrentHashMap<>();
+    protected final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+
+    /**
+     * creates a new bulkhead which publishes to the global meter registry
+     *
+     * @param name           name of the bulkhead (used as a metric tag)
+     * @param connectorLimit maximal number of concurrent calls per connector, non-positive if unlimited
+     * @param assetLimit     maximal number of concurrent calls per asset, non-positive if unlimited
+     * @param queueLimit     maximal number of waiting calls per compartment
+     * @param maxWait        maximal number of milliseconds to wait for a slot
+     * @param monitor        logging subsystem
+     */
+    public Bulkhead(String name, int connectorLimit, int assetLimit, int queueLimit, long maxWait, Monitor monitor) {
+        this(name, connectorLimit, assetLimit, queueLimit, maxWait, monitor, Metrics.globalRegistry);
+    }
+
+    /**
+     * creates a new bulkhead
+     *
+     * @param name           name of the bulkhead (used as a metric tag)
+     * @param connectorLimit maximal number of concurrent calls per connector, non-positive if unlimited
+     * @param assetLimit     maximal number of concurrent calls per asset, non-positive if unlimited
+     * @param queueLimit     maximal number of waiting calls per compartment
+     * @param maxWait        maximal number of milliseconds to wait for a slot
+     * @param monitor        logging subsystem
+     * @param registry       meter registry to publish to
+     */
+    public Bulkhead(String name, int connectorLimit, int assetLimit, int queueLimit, long maxWait, Monitor monitor, MeterRegistry registry) {
+        this.name = name;
+        this.connectorLimit = connectorLimit;
+        this.assetLimit = assetLimit;
+        this.queueLimit = Math.max(0, queueLimit);
+        this.maxWait = Math.max(0, maxWait);
+        this.monitor = monitor;
+        this.registry = registry;
+        registerMeters("connector", connectors);
+        registerMeters("asset", assets);
+    }
+
+    /**
+     * registers the aggregated meters of a kind of compartment
+     *
+     * @param kind         connector or asset
+     * @param compartments the compartments of that kind
+     */
+    protected void registerMeters(String kind, Map<String, Compartment> compartments) {
+        Gauge.builder(METRIC_PREFIX + "queue", compartments, map -> map.values().stream().mapToInt(compartment -> compartment.waiting.get()).sum())
+                .description("Number of calls waiting for a slot")
+                .tags("bulkhead", name, "kind", kind)
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "active", compartments, map -> map.values().stream().mapToInt(compartment -> compartment.limit - compartment.slots.availablePermits()).sum())
+                .description("Number of active calls")
+                .tags("bulkhead", name, "kind", kind)
+                .register(registry);
+        waitTimers.put(kind, Timer.builder(METRIC_PREFIX + "wait")
+                .description("Time waited for a slot")
+                .tags("bulkhead", name, "kind", kind)
+                .register(registry));
+        rejections.put(kind, Counter.builder(METRIC_PREFIX + "rejected")
+                .description("Number of rejected calls")
+                .tags("bulkhead", name, "kind", kind)
+                .register(registry));
+    }
+
+    /**
+     * creates the bulkhead for federated calls (service calls and delegations)
+     *
+     * @param config  agent config
+     * @param monitor logging subsystem
+     * @return the federation bulkhead
+     */
+    public static Bulkhead forFederation(AgentConfig config, Monitor monitor) {
+        return new Bulkhead("federation", config.getFederationConnectorLimit(), config.getFederationAssetLimit(),
+                config.getFederationBulkheadQueue(), config.getFederationBulkheadWait(), monitor);
+    }
+
+    /**
+     * creates the bulkhead for negotiations
+     *
+     * @param config  agent config
+     * @param monitor logging subsystem
+     * @return the negotiation bulkhead
+     */
+    public static Bulkhead forNegotiation(AgentConfig config, Monitor monitor) {
+        return new Bulkhead("negotiation", config.getNegotiationConnectorLimit(), -1,
+                config.getFederationBulkheadQueue(), config.getNegotiationTimeout(), monitor);
+    }
+
+    /**
+     * derives the connector key (host and port) from a connector or service address
+     *
+     * @param address an edc, edcs, http or https address
+     * @return the connector key, empty for the local connector
+     */
+    public static String connectorKey(String address) {
+        if (address == null) {
+            return "";
+        }
+        int start = address.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < address.length() && "/#?".indexOf(address.charAt(end)) < 0) {
+            end++;
+        }
+        return address.substring(start, end);
+    }
+
+    /**
+     * acquires a slot for a call to the given connector and asset.
+     * The resulting permit must be closed after the call.
+     *
+     * @param connector the connector key or address
+     * @param asset     the asset, may be null
+     * @return permit
+     * @throws ServiceUnavailableException if the call is rejected
+     */
+    public Permit acquire(String connector, String asset) throws ServiceUnavailableException {
+        String connectorKey = connectorKey(connector);
+        Compartment connectorCompartment = getConnectorCompartment(connectorKey);
+        Compartment assetCompartment = getAssetCompartment(connectorKey, asset);
+        enter(connectorCompartment);
+        try {
+            enter(assetCompartment);
+        } catch (RuntimeException e) {
+            if (connectorCompartment != null) {
+                connectorCompartment.leave();
+            }
+            throw e;
+        }
+        return new Permit(connectorCompartment, assetCompartment);
+    }
+
+    /**
+     * acquires a slot for an optional call to the given connector and asset
+     * (such as a hedged request) only if it is free right now. Never waits and never counts as a rejection.
+     * The resulting permit must be closed after the call.
+     *
+     * @param connector the connector key or address
+     * @param asset     the asset, may be null
+     * @return permit, null if no slot is free
+     */
+    public Permit tryAcquire(String connector, String asset) {
+        String connectorKey = connectorKey(connector);
+        Compartment connectorCompartment = getConnectorCompartment(connectorKey);
+        Compartment assetCompartment = getAssetCompartment(connectorKey, asset);
+        if (connectorCompartment != null && !connectorCompartment.tryEnter()) {
+            return null;
+        }
+        if (assetCompartment != null && !assetCompartment.tryEnter()) {
+            if (connectorCompartment != null) {
+                connectorCompartment.leave();
+            }
+            return null;
+        }
+        return new Permit(connectorCompartment, assetCompartment);
+    }
+
+    protected Compartment getConnectorCompartment(String connectorKey) {
+        return connectorLimit > 0 ? connectors.computeIfAbsent(connectorKey, key -> new Compartment(key, "connector", connectorLimit)) : null;
+    }
+
+    protected Compartment getAssetCompartment(String connectorKey, String asset) {
+        return assetLimit > 0 && asset != null && !asset.isEmpty() ?
+                assets.computeIfAbsent(connectorKey + "#" + asset, key -> new Compartment(key, "asset", assetLimit)) : null;
+    }
+
+    protected void enter(Compartment compartment) throws ServiceUnavailableException {
+        if (compartment != null) {
+            compartment.enter();
+        }
+    }
+
+    /**
+     * access
+     *
+     * @param connector the connector key or address
+     * @return number of calls waiting for the connector
+     */
+    public int getWaiting(String connector) {
+        Compartment compartment = connectors.get(connectorKey(connector));
+        return compartment != null ? compartment.waiting.get() : 0;
+    }
+
+    /**
+     * access
+     *
+     * @param connector the connector key or address
+     * @return number of active calls to the connector
+     */
+    public int getActive(String connector) {
+        Compartment compartment = connectors.get(connectorKey(connector));
+        return compartment != null ? compartment.limit - compartment.slots.availablePermits() : 0;
+    }
+
+    /**
+     * access
+     *
+     * @param connector the connector key or address
+     * @param asset     the asset, may be null
+     * @return number of calls to the connector and asset which would currently get a slot without waiting
+     */
+    public int getAvailable(String connector, String asset) {
+        String connectorKey = connectorKey(connector);
+        int available = Integer.MAX_VALUE;
+        if (connectorLimit > 0) {
+            Compartment compartment = connectors.get(connectorKey);
+            available = compartment != null ? compartment.slots.availablePermits() : connectorLimit;
+        }
+        if (assetLimit > 0 && asset != null && !asset.isEmpty()) {
+            Compartment compartment = assets.get(connectorKey + "#" + asset);
+            available = Math.min(available, compartment != null ? compartment.slots.availablePermits() : assetLimit);
+        }
+        return available;
+    }
+
+    /**
+     * a slot which has been acquired in the bulkhead
+     */
+    public static class Permit implements AutoCloseable {
+        protected final Compartment[] compartments;
+        protected final AtomicBoolean released = new AtomicBoolean();
+
+        protected Permit(Compartment... compartments) {
+            this.compartments = compartments;
+        }
+
+        /**
+         * releases the slot (only once)
+         */
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                for (Compartment compartment : compartments) {
+                    if (compartment != null) {
+                        compartment.leave();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * a limited compartment of the bulkhead
+     */
+    protected class Compartment {
+        protected final String key;
+        protected final String kind;
+        protected final int limit;
+        protected final Semaphore slots;
+        protected final AtomicInteger waiting = new AtomicInteger();
+        protected final Timer waitTimer;
+        protected final Counter rejected;
+
+        protected Compartment(String key, String kind, int limit) {
+            this.key = key;
+            this.kind = kind;
+            this.limit = limit;
+            this.slots = new Semaphore(limit, true);
+            this.waitTimer = waitTimers.get(kind);
+            this.rejected = rejections.get(kind);
+        }
+
+        protected boolean tryEnter() {
+            if (slots.tryAcquire()) {
+                waitTimer.record(0, TimeUnit.MILLISECONDS);
+                return true;
+            }
+            return false;
+        }
+
+        protected void enter() throws ServiceUnavailableException {
+            if (tryEnter()) {
+                return;
+            }
+            if (waiting.incrementAndGet() > queueLimit) {
+                waiting.decrementAndGet();
+                throw reject("too many waiting calls");
+            }
+            long start = System.nanoTime();
+            try {
+                if (!slots.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                    throw reject(String.format("no slot within %d ms", maxWait));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("interrupted while waiting");
+            } finally {
+                waiting.decrementAndGet();
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        protected void leave() {
+            slots.release();
+        }
+
+        protected ServiceUnavailableException reject(String reason) {
+            rejected.increment();
+            String message = String.format("Bulkhead %s rejected a call to %s %s: %s (limit %d).", name, kind, key, reason, limit);
+            monitor.warning(message);
+            return new ServiceUnavailableException(message);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.eclipse.tractusx.agents.edc.http;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
@@ -423,6 +424,22 @@ public class AgentController {
         }
     }
 
+    /**
+     * endpoint for cancelling a running query
+     *
+     * @param id the id of the query (as returned in the cx_query_id header)
+     * @return only status
+     */
+    @DELETE
+    @Path("/query")
+    public Response cancelQuery(@QueryParam("id") String id) {
+        monitor.debug(String.format("Received a DELETE query request %s", id));
+        if (processor.cancel(id)) {
+            return Response.ok().build();
+        }
+        return Response.status(HttpStatus.SC_NOT_FOUND).build();
+    }
+
     /**
      * endpoint for posting a skill
      *
@@ -0,0 +1,205 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http;
+
+import jakarta.ws.rs.NotSupportedException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Jakarta filter which implements gzip content coding for the agent transport.
+ * Request bodies with a gzip content encoding are transparently inflated before
+ * they reach the resource (e.g. the query body arriving at the public data plane api).
+ * Response entities are deflated whenever the caller accepts a gzip encoding
+ * (the OkHttp client of a consuming agent does so by default).
+ * Responses which are written directly to the servlet (and hence carry no entity) are left untouched.
+ * The filter may be restricted to the resources below a path of its web context.
+ */
+@PreMatching
+public class CompressionFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    public static final String GZIP_ENCODING = "gzip";
+    public static final String X_GZIP_ENCODING = "x-gzip";
+    public static final String COMPRESSED_PROPERTY = CompressionFilter.class.getName() + ".compressed";
+
+    protected final Monitor monitor;
+    protected final String path;
+
+    /**
+     * creates a new filter for a whole web context
+     *
+     * @param monitor logging subsystem
+     */
+    public CompressionFilter(Monitor monitor) {
+        this(monitor, null);
+    }
+
+    /**
+     * creates a new filter
+     *
+     * @param monitor logging subsystem
+     * @param path    resource path (relative to the web context) to restrict the filter to, null for the whole context
+     */
+    public CompressionFilter(Monitor monitor, String path) {
+        this.monitor = monitor;
+        this.path = path;
+    }
+
+    /**
+     * checks whether the request addresses a resource of this filter
+     *
+     * @param requestContext incoming request
+     * @return whether compression applies
+     */
+    protected boolean appliesTo(ContainerRequestContext requestContext) {
+        if (path == null) {
+            return true;
+        }
+        String requestPath = requestContext.getUriInfo().getPath();
+        if (requestPath.startsWith("/")) {
+            requestPath = requestPath.substring(1);
+        }
+        return requestPath.equals(path) || requestPath.startsWith(path + "/");
+    }
+
+    /**
+     * inflates compressed request bodies
+     *
+     * @param requestContext incoming request
+     * @throws NotSupportedException if the content encoding is unknown
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (!appliesTo(requestContext)) {
+            return;
+        }
+        String encoding = requestContext.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || encoding.isBlank() || "identity".equalsIgnoreCase(encoding.trim())) {
+            return;
+        }
+        if (!isGzip(encoding.trim())) {
+            throw new NotSupportedException(String.format("Content encoding %s is not supported.", encoding));
+        }
+        monitor.debug(String.format("Inflating a %s request body of %s", encoding, requestContext.getUriInfo().getPath()));
+        requestContext.setEntityStream(new GZIPInputStream(requestContext.getEntityStream()));
+        requestContext.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        requestContext.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+    }
+
+    /**
+     * negotiates the compression of the response entity
+     *
+     * @param requestContext  incoming request
+     * @param responseContext outgoing response
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (!responseContext.hasEntity() || responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING) || !appliesTo(requestContext)) {
+            return;
+        }
+        if (!acceptsGzip(requestContext.getHeaders().get(HttpHeaders.ACCEPT_ENCODING))) {
+            return;
+        }
+        responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING);
+        responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        responseContext.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+    }
+
+    /**
+     * deflates the response entity if negotiated
+     *
+     * @param context writer context
+     */
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        // another filter in the same context may already deflate the entity
+        if (encoding == null || !isGzip(encoding.toString()) || context.getProperty(COMPRESSED_PROPERTY) != null) {
+            context.proceed();
+            return;
+        }
+        context.setProperty(COMPRESSED_PROPERTY, Boolean.TRUE);
+        OutputStream original = context.getOutputStream();
+        GZIPOutputStream compressed = new GZIPOutputStream(original, 8192);
+        context.setOutputStream(compressed);
+        try {
+            context.proceed();
+        } finally {
+            compressed.finish();
+            context.setOutputStream(original);
+        }
+    }
+
+    /**
+     * checks for gzip encoding
+     *
+     * @param encoding name of the encoding
+     * @return whether this is gzip
+     */
+    protected static boolean isGzip(String encoding) {
+        return GZIP_ENCODING.equalsIgnoreCase(encoding) || X_GZIP_ENCODING.equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * checks the accept-encoding headers for a non-zero gzip entry
+     *
+     * @param acceptEncodings all accept-encoding header values
+     * @return whether gzip is accepted
+     */
+    protected static boolean acceptsGzip(List<String> acceptEncodings) {
+        if (acceptEncodings == null) {
+            return false;
+        }
+        for (String header : acceptEncodings) {
+            for (String entry : header.split(",")) {
+                String[] parts = entry.trim().toLowerCase(Locale.ROOT).split(";");
+                String coding = parts[0].trim();
+                if (isGzip(coding) || "*".equals(coding)) {
+                    boolean rejected = false;
+                    for (int count = 1; count < parts.length; count++) {
+                        String param = parts[count].replace(" ", "");
+                        if (param.startsWith("q=")) {
+                            try {
+                                rejected = Double.parseDouble(param.substring(2)) <= 0;
+                            } catch (NumberFormatException e) {
+                                rejected = true;
+                            }
+                        }
+                    }
+                    if (!rejected) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
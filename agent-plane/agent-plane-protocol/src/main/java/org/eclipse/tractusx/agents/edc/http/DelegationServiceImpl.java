@@ -33,19 +33,19 @@ import org.eclipse.edc.spi.types.TypeManager;
 import org.eclipse.edc.spi.types.domain.edr.EndpointDataReference;
 import org.eclipse.tractusx.agents.edc.AgentConfig;
 import org.eclipse.tractusx.agents.edc.AgreementController;
+import org.eclipse.tractusx.agents.edc.Bulkhead;
+import org.eclipse.tractusx.agents.edc.http.transfer.MultipartReader;
 import org.eclipse.tractusx.agents.edc.sparql.CatenaxWarning;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -65,6 +65,7 @@ public class DelegationServiceImpl implements DelegationService {
     public static final TypeReference<List<CatenaxWarning>> WARNING_TYPE_REFERENCE = new TypeReference<>(){};
     protected final TypeManager typeManager;
     protected final AgentConfig config;
+    protected final Bulkhead bulkhead;
 
     /**
      * creates a new delegation service
@@ -74,11 +75,24 @@ public class DelegationServiceImpl implements DelegationService {
      * @param client outgoing http infrastructure
      */
     public DelegationServiceImpl(AgreementController agreementController, Monitor monitor, OkHttpClient client, TypeManager typeManager, AgentConfig config) {
+        this(agreementController, monitor, client, typeManager, config, Bulkhead.forFederation(config, monitor));
+    }
+
+    /**
+     * creates a new delegation service
+     *
+     * @param agreementController EDC agreement helper
+     * @param monitor logging facility
+     * @param client outgoing http infrastructure
+     * @param bulkhead limits the concurrent calls per connector/asset
+     */
+    public DelegationServiceImpl(AgreementController agreementController, Monitor monitor, OkHttpClient client, TypeManager typeManager, AgentConfig config, Bulkhead bulkhead) {
         this.agreementController = agreementController;
         this.monitor = monitor;
         this.client = client;
         this.typeManager = typeManager;
         this.config = config;
+        this.bulkhead = bulkhead;
     }
 
     /**
@@ -110,20 +124,31 @@ public class DelegationServiceImpl implements DelegationService {
         if (endpoint == null) {
             return new DelegationResponse(HttpUtils.respond(monitor, headers, HttpStatus.SC_FORBIDDEN, String.format("Could not get an agreement from connector %s to asset %s", remoteUrl, asset), null));
         }
-        if ("GET".equals(request.getMethod())) {
-            try {
-                return sendGetRequest(endpoint, "", headers, response, uri);
-            } catch (IOException e) {
-                return new DelegationResponse(HttpUtils.respond(monitor, headers, HttpStatus.SC_INTERNAL_SERVER_ERROR, String.format("Could not delegate remote GET call to connector %s asset %s", remoteUrl, asset), e));
+        // the slot of the target connector/asset is kept until the call has been completed
+        Bulkhead.Permit permit = null;
+        try {
+            permit = bulkhead.acquire(remoteUrl, asset);
+            if ("GET".equals(request.getMethod())) {
+                try {
+                    return sendGetRequest(endpoint, "", headers, response, uri);
+                } catch (IOException e) {
+                    return new DelegationResponse(HttpUtils.respond(monitor, headers, HttpStatus.SC_INTERNAL_SERVER_ERROR, String.format("Could not delegate remote GET call to connector %s asset %s", remoteUrl, asset), e));
+                }
+            } else if ("POST".equals(request.getMethod())) {
+                try {
+                    return sendPostRequest(endpoint, "", headers, request, response, uri);
+                } catch (IOException e) {
+                    return new DelegationResponse(HttpUtils.respond(monitor, headers, HttpStatus.SC_INTERNAL_SERVER_ERROR, String.format("Could not delegate remote POST call to connector %s asset %s", remoteUrl, asset), e));
+                }
+            } else {
+                return new DelegationResponse(HttpUtils.respond(monitor, headers, HttpStatus.SC_METHOD_NOT_ALLOWED, String.format("%s calls to connector %s asset %s are not allowed", request.getMethod(), remoteUrl, asset), null));
             }
-        } else if ("POST".equals(request.getMethod())) {
-            try {
-                return sendPostRequest(endpoint, "", headers, request, response, uri);
-            } catch (IOException e) {
-                return new DelegationResponse(HttpUtils.respond(monitor, headers, HttpStatus.SC_INTERNAL_SERVER_ERROR, String.format("Could not delegate remote POST call to connector %s asset %s", remoteUrl, asset), e));
+        } catch (WebApplicationException e) {
+            return new DelegationResponse(HttpUtils.respond(monitor, headers, e.getResponse().getStatus(), String.format("Could not delegate call to connector %s asset %s", remoteUrl, asset), e));
+        } finally {
+            if (permit != null) {
+                permit.close();
             }
-        } else {
-            return new DelegationResponse(HttpUtils.respond(monitor, headers, HttpStatus.SC_METHOD_NOT_ALLOWED, String.format("%s calls to connector %s asset %s are not allowed", request.getMethod(), remoteUrl, asset), null));
         }
 
     }
@@ -248,7 +273,7 @@ public class DelegationServiceImpl implements DelegationService {
                 monitor.warning(String.format("Data plane call was not successful: %s", myResponse.code()));
             }
 
-            Optional<List<CatenaxWarning>> warnings = Optional.empty();
+            List<CatenaxWarning> warnings = new ArrayList<>();
 
             var body = myResponse.body();
 
@@ -269,7 +294,7 @@ public class DelegationServiceImpl implements DelegationService {
                 inputStream.reset();
                 if ("--".equals(boundary)) {
                     //
-                    // Multipart Case separates the actual result (last part) from the warnings (first part)
+                    // Multipart Case streams the actual result part while collecting the warnings parts on the side
                     //
                     if (contentType != null) {
                         int boundaryIndex;
@@ -278,62 +303,23 @@ public class DelegationServiceImpl implements DelegationService {
                             boundary = boundary + contentType.toString().substring(boundaryIndex + 10);
                         }
                     }
-                    StringBuilder nextPart = null;
-                    String embeddedContentType = null;
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                        if (boundary.equals(line)) {
-                            if (nextPart != null && embeddedContentType != null) {
-                                if (embeddedContentType.equals("application/cx-warnings+json")) {
-                                    List<CatenaxWarning> nextWarnings = typeManager.readValue(nextPart.toString(), WARNING_TYPE_REFERENCE);
-                                    if (warnings.isPresent()) {
-                                        warnings.get().addAll(nextWarnings);
-                                    } else {
-                                        warnings = Optional.of(nextWarnings);
-                                    }
-                                } else {
-                                    inputStream = new ByteArrayInputStream(nextPart.toString().getBytes());
-                                    contentType = okhttp3.MediaType.parse(embeddedContentType);
-                                }
-                            }
-                            nextPart = new StringBuilder();
-                            String contentLine = reader.readLine();
-                            if (contentLine != null && contentLine.startsWith("Content-Type: ")) {
-                                embeddedContentType = contentLine.substring(14);
-                            } else {
-                                embeddedContentType = null;
-                            }
-                        } else if (nextPart != null) {
-                            nextPart.append(line);
-                            nextPart.append("\n");
-                        }
-                    }
-                    reader.close();
-                    // multipart parsing through, now look at the actual result in the last part
-                    if (nextPart != null && embeddedContentType != null) {
-                        // is it a downloaded skill text?
-                        if (embeddedContentType.equals("application/sparql-query")) {
-                            // immediately return
-                            return nextPart.toString();
-                        } else if (embeddedContentType.equals("application/cx-warnings+json")) {
-                            // is it a trailing warnings structure
-                            List<CatenaxWarning> nextWarnings = typeManager.readValue(nextPart.toString(), WARNING_TYPE_REFERENCE);
-                            if (warnings.isPresent()) {
-                                warnings.get().addAll(nextWarnings);
-                            } else {
-                                warnings = Optional.of(nextWarnings);
-                            }
-                        } else {
-                            // it is a normal "result" that we take as the actual response
-                            inputStream = new ByteArrayInputStream(nextPart.toString().getBytes());
-                            contentType = okhttp3.MediaType.parse(embeddedContentType);
-                        }
+                    MultipartReader reader = MultipartReader.forWarnings(inputStream, boundary,
+                            (type, warningsBody) -> warnings.addAll(typeManager.readValue(new String(warningsBody, StandardCharsets.UTF_8), WARNING_TYPE_REFERENCE)));
+                    MultipartReader.Part part = reader.nextPart();
+                    if (part != null) {
+                        inputStream = part;
+                        contentType = okhttp3.MediaType.parse(part.getContentType());
+                    } else {
+                        reader.close();
+                        inputStream = new ByteArrayInputStream(new byte[0]);
                     }
                 }
-                // if we got a simple skill text as answer (not multipart)
-                if (contentType.toString().equals("application/sparql-query")) {
+                // if we got a simple skill text as answer
+                if (contentType != null && contentType.toString().equals("application/sparql-query")) {
                     // return the skill text
-                    return IOUtils.toString(inputStream, Charset.defaultCharset());
+                    try (InputStream skillStream = inputStream) {
+                        return IOUtils.toString(skillStream, StandardCharsets.UTF_8);
+                    }
                 }
                 // else set the response status a
                 response.setStatus(myResponse.code());
@@ -343,24 +329,31 @@ public class DelegationServiceImpl implements DelegationService {
                         if (header.equals("cx_warnings")) {
                             List<CatenaxWarning> nextWarnings = typeManager.getMapper().readValue(value, WARNING_TYPE_REFERENCE);
                             if (nextWarnings != null) {
-                                if (warnings.isPresent()) {
-                                    warnings.get().addAll(nextWarnings);
-                                } else {
-                                    warnings = Optional.of(nextWarnings);
-                                }
+                                warnings.addAll(nextWarnings);
                             }
                         } else if (!header.equalsIgnoreCase("content-length")) {
                             response.addHeader(header, value);
                         }
                     }
                 }
-                warnings.ifPresent(catenaxWarnings -> response.addHeader("cx_warnings", typeManager.writeValueAsString(catenaxWarnings)));
+                int leadingWarnings = warnings.size();
+                if (leadingWarnings > 0) {
+                    response.setHeader("cx_warnings", typeManager.writeValueAsString(warnings));
+                }
                 if (contentType != null) {
                     response.setContentType(contentType.toString());
                 }
-                // and finally copy the body from intermediate response to final response
+                // and finally stream the body from intermediate response to final response
                 IOUtils.copy(inputStream, response.getOutputStream());
+                // closing delivers any trailing warnings
                 inputStream.close();
+                if (warnings.size() > leadingWarnings) {
+                    if (!response.isCommitted()) {
+                        response.setHeader("cx_warnings", typeManager.writeValueAsString(warnings));
+                    } else {
+                        monitor.warning(String.format("Could not forward %d trailing warnings of %s as the response has already been committed.", warnings.size() - leadingWarnings, request.url()));
+                    }
+                }
             }
         }
         return null;
@@ -1,4 +1,4 @@
-// Copyright (c) 2022,2023 Contributors to the Eclipse Foundation
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
 //
 // See the NOTICE file(s) distributed with this work for additional
 // information regarding copyright ownership.
@@ -17,11 +17,12 @@
 package org.eclipse.tractusx.agents.edc.http;
 
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.net.Authenticator;
@@ -30,12 +31,10 @@ import java.net.ProxySelector;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Flow;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 
@@ -103,75 +102,91 @@ public class HttpClientAdapter extends HttpClient {
 
     @Override
     public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) throws IOException, InterruptedException {
+        Call okCall = delegate.newCall(toOkRequest(request));
+        Response okResponse = okCall.execute();
+        return adapt(okResponse, request);
+    }
+
+    /**
+     * wraps an OkHttp response. The body handler is never consulted,
+     * all callers of this adapter read the body as an input stream
+     * (see HttpResponseAdapter#body), so the body type is only nominal.
+     *
+     * @param response OkHttp response
+     * @param request original request
+     * @param <T> nominal body type
+     * @return java.net.http response
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> HttpResponse<T> adapt(Response response, HttpRequest request) {
+        return (HttpResponse<T>) new HttpResponseAdapter(response, request);
+    }
+
+    /**
+     * translates a java.net.http request into an OkHttp request.
+     * The body publisher is not consumed here, but streamed
+     * when the request is actually written.
+     *
+     * @param request java.net.http request
+     * @return OkHttp request
+     * @throws IOException if the request cannot be translated
+     */
+    protected Request toOkRequest(HttpRequest request) throws IOException {
         var builder = new Request.Builder();
         request.headers().map().forEach((key, values) -> values.forEach(value -> builder.header(key, value)));
         if (request.bodyPublisher().isPresent()) {
-            var bodyPublisher = request.bodyPublisher().get();
-
-            var subscriber = new Flow.Subscriber<ByteBuffer>() {
-
-                private ByteBuffer body;
-                private Throwable problem;
-                private boolean ready;
-
-                @Override
-                public void onSubscribe(Flow.Subscription subscription) {
-                    subscription.request(bodyPublisher.contentLength());
-                }
-
-                @Override
-                public void onNext(ByteBuffer item) {
-                    if (body == null) {
-                        body = item;
-                    } else if (item != null) {
-                        ByteBuffer combined = ByteBuffer.allocate(body.capacity() + item.capacity());
-                        combined.put(body);
-                        combined.put(item);
-                        combined.flip();
-                        body = combined;
-                    }
-                }
-
-                @Override
-                public void onError(Throwable throwable) {
-                    problem = throwable;
-                }
-
-                @Override
-                public void onComplete() {
-                    ready = true;
-                }
-            };
-
-            bodyPublisher.subscribe(subscriber);
-            long startTime = System.currentTimeMillis();
-            while (System.currentTimeMillis() - startTime < 2000 && !subscriber.ready) {
-                Thread.sleep(100);
-            }
-            if (!subscriber.ready) {
-                throw new IOException("Could not wrap request because body cannot be read");
-            }
-            if (subscriber.problem != null) {
-                throw new IOException("Could not wrap request because body cannot be read", subscriber.problem);
-            }
-            builder.method(request.method(), RequestBody.create(subscriber.body.array(), MediaType.parse(request.headers().firstValue("Content-Type").get())));
+            MediaType mediaType = request.headers().firstValue("Content-Type").map(MediaType::parse).orElse(null);
+            builder.method(request.method(), new PublisherRequestBody(request.bodyPublisher().get(), mediaType, delegate.writeTimeoutMillis()));
         } else {
             builder.method(request.method(), null);
         }
         builder.url(request.uri().toURL());
-        Request okRequest = builder.build();
-        Call okCall = delegate.newCall(okRequest);
-        Response okResponse = okCall.execute();
-        return (HttpResponse<T>) new HttpResponseAdapter(okResponse, request);
+        return builder.build();
     }
 
+    /**
+     * enqueues the request at the OkHttp dispatcher. The resulting
+     * future completes with the response headers (the body is streamed afterwards).
+     * Cancelling the future cancels the underlying call.
+     *
+     * @param request java.net.http request
+     * @param responseBodyHandler ignored, the body is always an input stream
+     * @return future response
+     */
     @Override
     public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
-        throw new UnsupportedOperationException("sendAsync");
+        Call okCall;
+        try {
+            okCall = delegate.newCall(toOkRequest(request));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                okCall.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        okCall.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                if (!result.complete(adapt(response, request))) {
+                    // nobody is interested anymore
+                    response.close();
+                }
+            }
+        });
+        return result;
     }
 
     @Override
     public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
-        throw new UnsupportedOperationException("sendAsync");
+        return sendAsync(request, responseBodyHandler);
     }
 }
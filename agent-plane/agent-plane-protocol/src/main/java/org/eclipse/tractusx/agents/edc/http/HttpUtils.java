@@ -20,9 +20,12 @@ import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.edc.spi.monitor.Monitor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utilities to deal with Http Protocol stuff
@@ -157,4 +160,19 @@ public class HttpUtils {
         }
         return builder.build();
     }
+
+    /**
+     * compresses a body
+     *
+     * @param body uncompressed bytes
+     * @return gzip compressed bytes
+     * @throws IOException in case compression fails
+     */
+    public static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream compressed = new GZIPOutputStream(buffer)) {
+            compressed.write(body);
+        }
+        return buffer.toByteArray();
+    }
 }
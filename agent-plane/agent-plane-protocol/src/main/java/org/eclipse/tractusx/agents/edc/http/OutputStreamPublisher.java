@@ -0,0 +1,204 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * A body publisher of unknown length (and hence chunked transfer) whose content
+ * is produced by a writer into an output stream. The writer runs on the given executor
+ * once the body is subscribed and is slowed down to the pace of the network (it blocks
+ * while the subscriber has no demand), so that only a single chunk is held in memory.
+ */
+public class OutputStreamPublisher implements HttpRequest.BodyPublisher {
+
+    public static final int DEFAULT_CHUNK_SIZE = 16384;
+
+    /**
+     * produces the body
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        /**
+         * write the complete body
+         *
+         * @param output stream to write to (must not be closed)
+         * @throws IOException in case writing fails or the subscriber has cancelled
+         */
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    protected final BodyWriter writer;
+    protected final Executor executor;
+    protected final int chunkSize;
+
+    /**
+     * create a new publisher
+     *
+     * @param writer    produces the body (for each subscription)
+     * @param executor  runs the writer
+     * @param chunkSize size of the chunks handed to the subscriber
+     */
+    public OutputStreamPublisher(BodyWriter writer, Executor executor, int chunkSize) {
+        this.writer = writer;
+        this.executor = executor;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * create a new publisher with the default chunk size
+     *
+     * @param writer   produces the body (for each subscription)
+     * @param executor runs the writer
+     */
+    public OutputStreamPublisher(BodyWriter writer, Executor executor) {
+        this(writer, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * access
+     *
+     * @return the writer which produces the body
+     */
+    public BodyWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        ChunkStream stream = new ChunkStream(subscriber);
+        subscriber.onSubscribe(stream);
+        try {
+            executor.execute(stream::run);
+        } catch (RuntimeException e) {
+            subscriber.onError(e);
+        }
+    }
+
+    /**
+     * subscription and output stream of a single subscriber
+     */
+    protected class ChunkStream extends OutputStream implements Flow.Subscription {
+        protected final Flow.Subscriber<? super ByteBuffer> subscriber;
+        protected byte[] chunk = new byte[chunkSize];
+        protected int filled;
+        protected long demand;
+        protected boolean cancelled;
+
+        protected ChunkStream(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        protected void run() {
+            try {
+                writer.writeTo(this);
+                emit();
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    }
+                }
+                subscriber.onComplete();
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    }
+                }
+                subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("Non-positive demand " + n));
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (filled == chunk.length) {
+                emit();
+            }
+            chunk[filled++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (filled == chunk.length) {
+                    emit();
+                }
+                int count = Math.min(length, chunk.length - filled);
+                System.arraycopy(bytes, offset, chunk, filled, count);
+                filled += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /**
+         * hands the current chunk to the subscriber as soon as it demands
+         */
+        protected void emit() throws IOException {
+            if (filled == 0) {
+                return;
+            }
+            synchronized (this) {
+                try {
+                    while (demand == 0 && !cancelled) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the request body to be consumed");
+                }
+                if (cancelled) {
+                    throw new IOException("Request body subscription has been cancelled");
+                }
+                demand--;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, filled);
+            // the subscriber owns the handed-out chunk
+            chunk = new byte[chunkSize];
+            filled = 0;
+            subscriber.onNext(buffer);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bridges a java.net.http body publisher into an OkHttp request body.
+ * The publisher is subscribed only when OkHttp writes the body
+ * and its chunks are handed one by one to the sink (with backpressure),
+ * so the body is neither collected nor copied beforehand.
+ * Bodies which are produced by an output stream writer are written directly
+ * into the sink on the calling (OkHttp) thread.
+ */
+public class PublisherRequestBody extends RequestBody {
+
+    /**
+     * marks the regular end of the body
+     */
+    protected static final Object COMPLETE = new Object();
+
+    protected final HttpRequest.BodyPublisher publisher;
+    protected final MediaType mediaType;
+    protected final long writeTimeout;
+
+    /**
+     * creates a new body bridge which waits indefinitely for the chunks of the publisher
+     *
+     * @param publisher the java.net.http body publisher
+     * @param mediaType the content type, may be null
+     */
+    public PublisherRequestBody(HttpRequest.BodyPublisher publisher, MediaType mediaType) {
+        this(publisher, mediaType, 0);
+    }
+
+    /**
+     * creates a new body bridge
+     *
+     * @param publisher    the java.net.http body publisher
+     * @param mediaType    the content type, may be null
+     * @param writeTimeout maximal number of milliseconds to wait for the next chunk of the publisher, non-positive if unlimited
+     */
+    public PublisherRequestBody(HttpRequest.BodyPublisher publisher, MediaType mediaType, long writeTimeout) {
+        this.publisher = publisher;
+        this.mediaType = mediaType;
+        this.writeTimeout = writeTimeout;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return mediaType;
+    }
+
+    @Override
+    public long contentLength() {
+        return publisher.contentLength();
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        if (publisher instanceof OutputStreamPublisher) {
+            // no need to hand over chunks between threads (the stream of the sink must not be closed)
+            OutputStream output = sink.outputStream();
+            ((OutputStreamPublisher) publisher).getWriter().writeTo(output);
+            output.flush();
+            return;
+        }
+        // at most one chunk is requested at a time, so the queue stays small
+        BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription newSubscription) {
+                subscription[0] = newSubscription;
+                newSubscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                chunks.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                chunks.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                chunks.add(COMPLETE);
+            }
+        });
+        try {
+            while (true) {
+                Object chunk = writeTimeout > 0 ? chunks.poll(writeTimeout, TimeUnit.MILLISECONDS) : chunks.take();
+                if (chunk == null) {
+                    throw new SocketTimeoutException(String.format("Request body did not produce within %d ms", writeTimeout));
+                }
+                if (chunk == COMPLETE) {
+                    return;
+                }
+                if (chunk instanceof Throwable) {
+                    throw new IOException("Could not write request because body cannot be read", (Throwable) chunk);
+                }
+                ByteBuffer buffer = (ByteBuffer) chunk;
+                while (buffer.hasRemaining()) {
+                    sink.write(buffer);
+                }
+                subscription[0].request(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (subscription[0] != null) {
+                subscription[0].cancel();
+            }
+            throw new InterruptedIOException("Interrupted while writing request body");
+        } catch (IOException e) {
+            if (subscription[0] != null) {
+                subscription[0].cancel();
+            }
+            throw e;
+        }
+    }
+}
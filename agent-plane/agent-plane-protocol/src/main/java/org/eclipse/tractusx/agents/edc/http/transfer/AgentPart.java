@@ -0,0 +1,111 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http.transfer;
+
+import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource.Part;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A part of the agent transfer body. Each part is framed by a boundary line
+ * and a content type line. Textual parts (such as json results or warnings) simply follow.
+ * Binary parts (such as thrift result sets) additionally announce their length,
+ * such that they may contain arbitrary bytes.
+ * Transfer bodies are read by the {@link MultipartReader}.
+ */
+public class AgentPart implements Part {
+
+    public static final String AGENT_BOUNDARY = "--";
+    public static final String CONTENT_TYPE_PREFIX = "Content-Type: ";
+    public static final String CONTENT_LENGTH_PREFIX = "Content-Length: ";
+
+    private final String name;
+    private final byte[] body;
+    private final byte[] content;
+
+    /**
+     * create a new part
+     *
+     * @param name    content type of the part, if null the content is sent unframed
+     * @param body    content of the part
+     */
+    public AgentPart(String name, byte[] body) {
+        this.name = name;
+        this.body = body;
+        if (name != null) {
+            ByteArrayOutputStream framed = new ByteArrayOutputStream(body.length + 64);
+            StringBuilder header = new StringBuilder();
+            header.append(AGENT_BOUNDARY);
+            header.append("\n");
+            header.append(CONTENT_TYPE_PREFIX);
+            header.append(name);
+            header.append("\n");
+            if (!isText(name)) {
+                header.append(CONTENT_LENGTH_PREFIX);
+                header.append(body.length);
+                header.append("\n");
+            }
+            framed.writeBytes(header.toString().getBytes(StandardCharsets.UTF_8));
+            framed.writeBytes(body);
+            if (isText(name) && body.length > 0 && body[body.length - 1] != '\n') {
+                // the next boundary must start on its own line
+                framed.write('\n');
+            }
+            this.content = framed.toByteArray();
+        } else {
+            this.content = body;
+        }
+    }
+
+    /**
+     * checks whether a content type is textual (and hence may be transferred line-based)
+     *
+     * @param contentType the content type
+     * @return whether the content is text
+     */
+    public static boolean isText(String contentType) {
+        String lower = contentType.toLowerCase();
+        return lower.startsWith("text/") || lower.contains("json") || lower.contains("xml") || lower.contains("sparql-query") || lower.contains("csv");
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * access
+     *
+     * @return the (unframed) content of the part
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public long size() {
+        return content.length;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new ByteArrayInputStream(content);
+    }
+}
@@ -36,9 +36,8 @@ import org.eclipse.tractusx.agents.edc.http.AgentHttpAction;
 import org.eclipse.tractusx.agents.edc.sparql.SparqlQueryProcessor;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -79,7 +78,7 @@ public class AgentSource implements DataSource {
 
     protected String matchmakingAgentUrl;
 
-    public static final String AGENT_BOUNDARY = "--";
+    public static final String AGENT_BOUNDARY = AgentPart.AGENT_BOUNDARY;
 
     /**
      * creates new agent source
@@ -163,12 +162,13 @@ public class AgentSource implements DataSource {
                 return StreamResult.error(format("Received code transferring HTTP data for request %s: %s - %s.", requestId, response.code(), response.message()));
             }
             List<Part> results = new ArrayList<>();
+            // warnings go first, so that the consumer may stream the result
+            if (response.header("cx_warnings") != null) {
+                results.add(new AgentPart(MultipartReader.WARNINGS_CONTENT_TYPE, response.header("cx_warnings").getBytes(StandardCharsets.UTF_8)));
+            }
             if (response.body() != null) {
                 results.add(new AgentPart(response.body().contentType().toString(), response.body().bytes()));
             }
-            if (response.header("cx_warnings") != null) {
-                results.add(new AgentPart("application/cx-warnings+json", response.header("cx_warnings").getBytes()));
-            }
             return StreamResult.success(results.stream());
         } catch (IOException e) {
             return StreamResult.error(e.getMessage());
@@ -270,12 +270,13 @@ public class AgentSource implements DataSource {
                 return StreamResult.error(format("Received code transferring HTTP data for request %s: %s - %s.", requestId, response.code(), response.message()));
             }
             List<Part> results = new ArrayList<>();
+            // warnings go first, so that the consumer may stream the result
+            if (response.header("cx_warnings") != null) {
+                results.add(new AgentPart(MultipartReader.WARNINGS_CONTENT_TYPE, response.header("cx_warnings").getBytes(StandardCharsets.UTF_8)));
+            }
             if (response.body() != null) {
                 results.add(new AgentPart(response.body().contentType().toString(), response.body().bytes()));
             }
-            if (response.header("cx_warnings") != null) {
-                results.add(new AgentPart("application/cx-warnings+json", response.header("cx_warnings").getBytes()));
-            }
             return StreamResult.success(results.stream());
         } catch (IOException e) {
             return StreamResult.error(e.getMessage());
@@ -363,42 +364,4 @@ public class AgentSource implements DataSource {
             dataSource = new AgentSource();
         }
     }
-
-    private static class AgentPart implements Part {
-        private final String name;
-        private final byte[] content;
-
-        AgentPart(String name, byte[] content) {
-            this.name = name;
-            if (this.name != null) {
-                StringBuilder newContent = new StringBuilder();
-                newContent.append(AGENT_BOUNDARY);
-                newContent.append("\n");
-                newContent.append("Content-Type: ");
-                newContent.append(name);
-                newContent.append("\n");
-                newContent.append(new String(content));
-                this.content = newContent.toString().getBytes();
-            } else {
-                this.content = content;
-            }
-        }
-
-        @Override
-        public String name() {
-            return name;
-        }
-
-        @Override
-        public long size() {
-            return content.length;
-        }
-
-        @Override
-        public InputStream openStream() {
-            return new ByteArrayInputStream(content);
-        }
-
-    }
-
 }
@@ -179,7 +179,7 @@ public class AgentSourceHttpParamsDecorator implements HttpParamsDecorator {
             if (accept == null) {
                 accept = cxAccepts.stream().findFirst().orElse(DEFAULT_ACCEPT);
             }
-            accept = accept.replace(CONTENT_TYPE_DISPOSITION, "").replace("%2F", "/");
+            accept = accept.replace(CONTENT_TYPE_DISPOSITION, "").replace("%2F", "/").replace("%2B", "+");
             params.header("Accept", accept);
         }
         Map<String, List<String>> addressParams = parseParams("?" + address.getQueryParams());
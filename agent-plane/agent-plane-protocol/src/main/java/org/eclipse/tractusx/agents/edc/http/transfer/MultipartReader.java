@@ -0,0 +1,337 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http.transfer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A streaming, byte-level reader of agent transfer bodies (see {@link AgentPart}).
+ * The result part is handed out as a stream which ends at the next boundary without
+ * buffering the part. Side-channel parts (such as warnings) are collected fully and
+ * delivered to a handler, no matter whether they come before or after the result.
+ * Trailing side-channel parts are delivered when the result stream is closed (but not when it is aborted).
+ */
+public class MultipartReader {
+
+    public static final String WARNINGS_CONTENT_TYPE = "application/cx-warnings+json";
+
+    protected static final int PUSHBACK = 256;
+
+    protected final PushbackInputStream input;
+    protected final byte[] boundary;
+    protected final Set<String> sideChannels;
+    protected final BiConsumer<String, byte[]> sideHandler;
+
+    // content type of the part whose header has been read last, null at the end of the body
+    protected String pendingType;
+    // announced length of the pending part, negative if line-based
+    protected long pendingLength = -1;
+    // the part which has been handed out last
+    protected Part current;
+
+    /**
+     * creates a new reader
+     *
+     * @param input        the transfer body
+     * @param boundary     the boundary line
+     * @param sideChannels content types of side-channel parts
+     * @param sideHandler  receives content type and body of each side-channel part
+     * @throws IOException if the body cannot be read
+     */
+    public MultipartReader(InputStream input, String boundary, Set<String> sideChannels, BiConsumer<String, byte[]> sideHandler) throws IOException {
+        this.boundary = boundary.getBytes(StandardCharsets.UTF_8);
+        this.input = new PushbackInputStream(input instanceof BufferedInputStream ? input : new BufferedInputStream(input), Math.max(PUSHBACK, this.boundary.length + 2));
+        this.sideChannels = sideChannels;
+        this.sideHandler = sideHandler;
+        // skip any preamble until the first boundary
+        while (!atBoundary()) {
+            if (skipLine() < 0) {
+                return;
+            }
+        }
+        readHeader();
+    }
+
+    /**
+     * creates a reader for the standard agent boundary and warnings side channel
+     *
+     * @param input       the transfer body
+     * @param boundary    the boundary line
+     * @param sideHandler receives content type and body of warnings
+     * @return new reader
+     * @throws IOException if the body cannot be read
+     */
+    public static MultipartReader forWarnings(InputStream input, String boundary, BiConsumer<String, byte[]> sideHandler) throws IOException {
+        return new MultipartReader(input, boundary, Set.of(WARNINGS_CONTENT_TYPE), sideHandler);
+    }
+
+    /**
+     * access the next non side-channel part, delivering all
+     * side-channel parts up to it (and skipping the rest of the previous part)
+     *
+     * @return the next part, null if there is none
+     * @throws IOException if the body cannot be read
+     */
+    public Part nextPart() throws IOException {
+        if (current != null) {
+            current.skipAll();
+            current = null;
+        }
+        while (pendingType != null) {
+            Part part = new Part(pendingType, pendingLength);
+            if (!sideChannels.contains(part.contentType)) {
+                current = part;
+                return part;
+            }
+            sideHandler.accept(part.contentType, part.readAllBytes());
+        }
+        return null;
+    }
+
+    /**
+     * delivers all remaining side-channel parts and skips any further parts
+     *
+     * @throws IOException if the body cannot be read
+     */
+    public void drain() throws IOException {
+        while (nextPart() != null) {
+            // skipped by the next call
+        }
+    }
+
+    /**
+     * closes the underlying body without reading further
+     *
+     * @throws IOException if closing fails
+     */
+    public void close() throws IOException {
+        pendingType = null;
+        input.close();
+    }
+
+    /**
+     * reads the header lines after a boundary
+     */
+    protected void readHeader() throws IOException {
+        skipLine();
+        pendingType = null;
+        pendingLength = -1;
+        String typeLine = peekHeader(AgentPart.CONTENT_TYPE_PREFIX);
+        if (typeLine == null) {
+            // a part without header has no type and is ignored
+            while (!atBoundary()) {
+                if (skipLine() < 0) {
+                    return;
+                }
+            }
+            readHeader();
+            return;
+        }
+        pendingType = typeLine;
+        String lengthLine = peekHeader(AgentPart.CONTENT_LENGTH_PREFIX);
+        if (lengthLine != null) {
+            pendingLength = Long.parseLong(lengthLine.trim());
+        }
+    }
+
+    /**
+     * consumes a header line if it starts with the given prefix
+     *
+     * @param prefix header prefix
+     * @return header value, null if there is no such header
+     */
+    protected String peekHeader(String prefix) throws IOException {
+        byte[] expected = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] found = input.readNBytes(expected.length);
+        if (!Arrays.equals(expected, found)) {
+            input.unread(found);
+            return null;
+        }
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        for (int next = input.read(); next >= 0 && next != '\n'; next = input.read()) {
+            if (next != '\r') {
+                value.write(next);
+            }
+        }
+        return value.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * checks whether the input is at a boundary line (without consuming it)
+     *
+     * @return whether the next line is a boundary
+     */
+    protected boolean atBoundary() throws IOException {
+        byte[] found = input.readNBytes(boundary.length + 2);
+        input.unread(found);
+        if (found.length < boundary.length || !Arrays.equals(boundary, 0, boundary.length, found, 0, boundary.length)) {
+            return false;
+        }
+        if (found.length == boundary.length) {
+            return true;
+        }
+        byte terminator = found[boundary.length];
+        return terminator == '\n' || terminator == '\r' && (found.length == boundary.length + 1 || found[boundary.length + 1] == '\n');
+    }
+
+    /**
+     * skips until after the next line terminator
+     *
+     * @return number of skipped bytes, -1 at the end of the stream
+     */
+    protected int skipLine() throws IOException {
+        int count = 0;
+        int next = input.read();
+        if (next < 0) {
+            return -1;
+        }
+        while (next >= 0 && next != '\n') {
+            count++;
+            next = input.read();
+        }
+        return count;
+    }
+
+    /**
+     * a single part whose body ends at the next boundary
+     */
+    public class Part extends InputStream {
+        protected final String contentType;
+        protected long remaining;
+        protected boolean lineStart = true;
+        protected boolean finished;
+
+        protected Part(String contentType, long length) {
+            this.contentType = contentType;
+            this.remaining = length;
+        }
+
+        /**
+         * access
+         *
+         * @return content type of the part
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return count < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining >= 0) {
+                // length-delimited (binary) part
+                if (remaining == 0) {
+                    return finish();
+                }
+                int count = input.read(buffer, offset, (int) Math.min(length, remaining));
+                if (count < 0) {
+                    return finish();
+                }
+                remaining -= count;
+                return count;
+            }
+            // line-based (textual) part
+            if (lineStart && atBoundary()) {
+                return finish();
+            }
+            // read a chunk in bulk, but hand out at most the current line such that the
+            // next boundary is detected. The chunk fits into the pushback buffer.
+            int count = input.read(buffer, offset, Math.min(length, PUSHBACK));
+            if (count <= 0) {
+                return finish();
+            }
+            for (int pos = offset; pos < offset + count; pos++) {
+                if (buffer[pos] == '\n') {
+                    int line = pos + 1 - offset;
+                    input.unread(buffer, pos + 1, count - line);
+                    lineStart = true;
+                    return line;
+                }
+            }
+            lineStart = false;
+            return count;
+        }
+
+        /**
+         * positions the reader at the next part header
+         */
+        protected int finish() throws IOException {
+            finished = true;
+            pendingType = null;
+            while (!atBoundary()) {
+                if (skipLine() < 0) {
+                    return -1;
+                }
+            }
+            readHeader();
+            return -1;
+        }
+
+        /**
+         * skips the remainder of this part
+         */
+        protected void skipAll() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // skip
+            }
+        }
+
+        /**
+         * skips the remainder of the part, delivers trailing side-channel parts
+         * and closes the body
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                MultipartReader.this.close();
+            }
+        }
+
+        /**
+         * closes the body without reading any further
+         *
+         * @throws IOException if closing fails
+         */
+        public void abort() throws IOException {
+            finished = true;
+            MultipartReader.this.close();
+        }
+    }
+}
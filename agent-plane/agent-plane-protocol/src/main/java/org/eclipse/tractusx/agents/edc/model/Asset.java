@@ -29,11 +29,13 @@ public class Asset extends JsonLdObject {
 
     Map<String, JsonValue> publicProperties;
     Map<String, JsonValue> privateProperties;
+    Map<String, JsonValue> dataAddress;
 
     public Asset(JsonObject node) {
         super(node);
         this.publicProperties = node.getJsonObject("https://w3id.org/edc/v0.0.1/ns/properties");
         this.privateProperties = node.getJsonObject("https://w3id.org/edc/v0.0.1/ns/privateProperties");
+        this.dataAddress = node.getJsonObject("https://w3id.org/edc/v0.0.1/ns/dataAddress");
     }
 
     public Map<String, JsonValue> getPrivateProperties() {
@@ -44,4 +46,8 @@ public class Asset extends JsonLdObject {
         return publicProperties;
     }
 
+    public Map<String, JsonValue> getDataAddress() {
+        return dataAddress;
+    }
+
 }
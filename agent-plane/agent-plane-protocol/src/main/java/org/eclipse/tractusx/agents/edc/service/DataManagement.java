@@ -43,7 +43,10 @@ import org.eclipse.tractusx.agents.edc.model.TransferRequest;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static java.lang.String.format;
@@ -288,6 +291,29 @@ public class DataManagement {
         }
     }
 
+    /**
+     * Access the address properties of an asset of the own connector
+     *
+     * @param assetId (connector-unique) identifier of the asset
+     * @return the properties of the data address, empty if there is no such asset
+     * @throws IOException in case something went wrong
+     */
+    public Optional<Map<String, Object>> getAssetAddress(String assetId) throws IOException {
+        QuerySpec findAsset = QuerySpec.Builder.newInstance().filter(
+                List.of(new Criterion("https://w3id.org/edc/v0.0.1/ns/id", "=", assetId))
+        ).build();
+        return listAssets(findAsset).stream()
+                .filter(asset -> assetId.equals(asset.getId()))
+                .findFirst()
+                .map(asset -> {
+                    Map<String, Object> properties = new HashMap<>();
+                    if (asset.getDataAddress() != null) {
+                        asset.getDataAddress().forEach((key, value) -> properties.put(key, JsonLd.asString(value)));
+                    }
+                    return properties;
+                });
+    }
+
     /**
      * helper to create or update assets
      *
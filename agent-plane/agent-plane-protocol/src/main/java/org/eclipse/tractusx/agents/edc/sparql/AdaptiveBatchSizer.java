@@ -0,0 +1,118 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides about the number of bindings to send in one
+ * federated call to a given target.
+ * In adaptive mode, the batch size of each target is derived from its observed
+ * latency per binding (aiming at the configured target latency) and is halved
+ * on failures, always staying within the configured bounds. While the recent
+ * error rate of a target is high, its batch size is not grown again.
+ * The latency of a call is taken until its response arrives, so slow consumers
+ * do not shrink the batches. The payload size is not tracked: the size of a
+ * rendered batch grows with its number of bindings anyway, and oversized
+ * payloads show up as latency or as failures.
+ * Otherwise, the global maximal batch size is used.
+ */
+public class AdaptiveBatchSizer {
+
+    /**
+     * error rate above which a target is not trusted with larger batches
+     */
+    public static final double ERROR_TOLERANCE = 0.1;
+
+    protected final AgentConfig config;
+    protected final Map<String, ServiceStatistics> statistics = new ConcurrentHashMap<>();
+    protected final Map<String, Long> batchSizes = new ConcurrentHashMap<>();
+
+    /**
+     * create a new sizer
+     *
+     * @param config agent config
+     */
+    public AdaptiveBatchSizer(AgentConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * access
+     *
+     * @param target the target key
+     * @return statistics of the target
+     */
+    public ServiceStatistics getStatistics(String target) {
+        return statistics.computeIfAbsent(target, ServiceStatistics::new);
+    }
+
+    /**
+     * access
+     *
+     * @param target the target key
+     * @return the number of bindings to send in the next call to the target
+     */
+    public long getBatchSize(String target) {
+        if (!config.isFederationServiceBatchAdaptive()) {
+            return config.getFederationServiceBatchSize();
+        }
+        return batchSizes.computeIfAbsent(target, key -> clamp(config.getFederationServiceBatchInitial()));
+    }
+
+    /**
+     * record a successful call
+     *
+     * @param target   the target key
+     * @param bindings number of bindings sent
+     * @param millis   latency of the call until its response arrived
+     */
+    public void recordSuccess(String target, long bindings, long millis) {
+        ServiceStatistics stats = getStatistics(target);
+        stats.recordSuccess(bindings, millis);
+        if (config.isFederationServiceBatchAdaptive()) {
+            double perBinding = Math.max(stats.getLatencyPerBinding(), 0.001);
+            long optimal = (long) Math.min(config.getFederationServiceBatchLatency() / perBinding, Long.MAX_VALUE);
+            batchSizes.compute(target, (key, current) -> {
+                long size = current != null ? current : config.getFederationServiceBatchInitial();
+                // grow at most by doubling (and only once failures have faded), shrink directly
+                long grown = stats.getErrorRate() > ERROR_TOLERANCE ? size : size > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : size * 2;
+                return clamp(Math.min(grown, optimal));
+            });
+        }
+    }
+
+    /**
+     * record a failed call
+     *
+     * @param target   the target key
+     * @param bindings number of bindings sent
+     */
+    public void recordFailure(String target, long bindings) {
+        getStatistics(target).recordFailure(bindings);
+        if (config.isFederationServiceBatchAdaptive()) {
+            batchSizes.compute(target, (key, current) -> clamp(Math.min(current != null ? current : bindings, bindings) / 2));
+        }
+    }
+
+    protected long clamp(long size) {
+        return Math.max(config.getFederationServiceBatchMin(), Math.min(config.getFederationServiceBatchSize(), size));
+    }
+}
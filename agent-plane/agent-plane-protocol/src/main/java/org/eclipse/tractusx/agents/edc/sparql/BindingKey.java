@@ -0,0 +1,87 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+import java.util.Arrays;
+
+/**
+ * The projection of a binding onto the columns which are sent to a remote service.
+ * Used to deduplicate the bindings of a batch by comparing the (hashed) nodes
+ * directly rather than some textual representation.
+ */
+public class BindingKey {
+
+    protected final Node[] values;
+    protected final int hash;
+
+    /**
+     * creates a new key
+     *
+     * @param values the column values, null if unbound
+     */
+    public BindingKey(Node[] values) {
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+    }
+
+    /**
+     * projects a binding
+     *
+     * @param binding the binding
+     * @param sources per column either a variable (which is looked up in the binding) or a constant
+     * @return key of the binding
+     */
+    public static BindingKey of(Binding binding, Node[] sources) {
+        Node[] values = new Node[sources.length];
+        for (int column = 0; column < sources.length; column++) {
+            Node source = sources[column];
+            values[column] = source.isVariable() ? binding.get((Var) source) : source;
+        }
+        return new BindingKey(values);
+    }
+
+    /**
+     * access
+     *
+     * @param column index of the column
+     * @return value of the column, null if unbound
+     */
+    public Node get(int column) {
+        return values[column];
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof BindingKey)) {
+            return false;
+        }
+        BindingKey otherKey = (BindingKey) other;
+        return hash == otherKey.hash && Arrays.equals(values, otherKey.values);
+    }
+}
@@ -17,6 +17,7 @@
 package org.eclipse.tractusx.agents.edc.sparql;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.graph.Node;
@@ -27,29 +28,27 @@ import org.apache.jena.query.ResultSet;
 import org.apache.jena.riot.ResultSetMgr;
 import org.apache.jena.riot.WebContent;
 import org.apache.jena.riot.resultset.ResultSetLang;
-import org.apache.jena.sparql.algebra.Op;
-import org.apache.jena.sparql.algebra.OpAsQuery;
+import org.apache.jena.sparql.algebra.OpVars;
 import org.apache.jena.sparql.algebra.Transformer;
-import org.apache.jena.sparql.algebra.op.OpProject;
-import org.apache.jena.sparql.algebra.op.OpSequence;
+import org.apache.jena.sparql.algebra.op.OpGroup;
 import org.apache.jena.sparql.algebra.op.OpService;
-import org.apache.jena.sparql.algebra.op.OpTable;
-import org.apache.jena.sparql.algebra.table.TableData;
+import org.apache.jena.sparql.algebra.op.OpSlice;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
 import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
 import org.apache.jena.sparql.engine.http.HttpParams;
 import org.apache.jena.sparql.engine.iterator.QueryIter;
 import org.apache.jena.sparql.engine.iterator.QueryIter1;
 import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.exec.QueryExec;
 import org.apache.jena.sparql.exec.RowSet;
 import org.apache.jena.sparql.exec.RowSetAdapter;
 import org.apache.jena.sparql.exec.http.Params;
 import org.apache.jena.sparql.exec.http.QuerySendMode;
 import org.apache.jena.sparql.exec.http.Service;
-import org.apache.jena.sparql.graph.NodeTransformLib;
 import org.apache.jena.sparql.resultset.ResultSetMem;
 import org.apache.jena.sparql.service.bulk.ChainingServiceExecutorBulk;
 import org.apache.jena.sparql.service.bulk.ServiceExecutorBulk;
@@ -61,10 +60,15 @@ import org.eclipse.edc.spi.types.TypeManager;
 import org.eclipse.edc.spi.types.domain.edr.EndpointDataReference;
 import org.eclipse.tractusx.agents.edc.AgentConfig;
 import org.eclipse.tractusx.agents.edc.AgreementController;
+import org.eclipse.tractusx.agents.edc.Bulkhead;
 import org.eclipse.tractusx.agents.edc.http.HttpClientAdapter;
+import org.eclipse.tractusx.agents.edc.http.OutputStreamPublisher;
+import org.eclipse.tractusx.agents.edc.rdf.RdfStore;
+import org.eclipse.tractusx.agents.edc.service.DataManagement;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
@@ -78,13 +82,30 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * A service executor (single and bulk mode) which replaces outgoing http calls
@@ -104,6 +125,13 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
     final HttpClient client;
     final ExecutorService executor;
     final ObjectMapper objectMapper;
+    final AdaptiveBatchSizer batchSizer;
+    final Bulkhead bulkhead;
+    final RdfStore localStore;
+    final DataManagement localAssets;
+    final ServiceRouteResolver routeResolver;
+    final Map<String, ServiceCircuitBreaker> breakers = new ConcurrentHashMap<>();
+    final Map<String, ServiceStatistics> endpointStatistics = new ConcurrentHashMap<>();
 
     /**
      * some constants
@@ -115,6 +143,9 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
     public static final Symbol ASSET_SYMBOL = Symbol.create("https://w3id.org/edc/v0.0.1/ns/id");
     public static final Symbol ALLOW_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#allowServicePattern");
     public static final Symbol DENY_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#denyServicePattern");
+    public static final Symbol DEADLINE_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#federationDeadline");
+    public static final Symbol HASH_JOIN_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#federationHashJoinLimit");
+    public static final int MIN_HEDGE_SAMPLES = 16;
 
     /**
      * create a new executor
@@ -123,17 +154,52 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
      * @param controller dataspace agreement
      */
     public DataspaceServiceExecutor(Monitor monitor, AgreementController controller, AgentConfig config, OkHttpClient client, ExecutorService executor, TypeManager typeManager) {
+        this(monitor, controller, config, client, executor, typeManager, Bulkhead.forFederation(config, monitor));
+    }
+
+    /**
+     * create a new executor
+     *
+     * @param monitor    logging subsystem
+     * @param controller dataspace agreement
+     * @param bulkhead   limits the concurrent calls per connector/asset
+     */
+    public DataspaceServiceExecutor(Monitor monitor, AgreementController controller, AgentConfig config, OkHttpClient client, ExecutorService executor, TypeManager typeManager, Bulkhead bulkhead) {
+        this(monitor, controller, config, client, executor, typeManager, bulkhead, null, null);
+    }
+
+    /**
+     * create a new executor which evaluates calls to its own graph assets in-process
+     *
+     * @param monitor    logging subsystem
+     * @param controller dataspace agreement
+     * @param bulkhead   limits the concurrent calls per connector/asset
+     * @param localStore  the store of the local graph assets, null if all calls should be remote
+     * @param localAssets the asset index of the own connector (for the address properties of the local graph assets)
+     */
+    public DataspaceServiceExecutor(Monitor monitor, AgreementController controller, AgentConfig config, OkHttpClient client, ExecutorService executor, TypeManager typeManager, Bulkhead bulkhead,
+                                    RdfStore localStore, DataManagement localAssets) {
         this.monitor = monitor;
         this.agreementController = controller;
         this.config = config;
-        this.client = new HttpClientAdapter(client);
+        // remote calls are enqueued at a dedicated dispatcher (sharing the connection pool)
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.getFederationMaxRequests());
+        dispatcher.setMaxRequestsPerHost(config.getFederationMaxRequestsPerHost());
+        this.client = new HttpClientAdapter(client.newBuilder().dispatcher(dispatcher).build());
         this.executor = executor;
         this.objectMapper = typeManager.getMapper();
+        this.batchSizer = new AdaptiveBatchSizer(config);
+        this.bulkhead = bulkhead;
+        this.localStore = localStore;
+        this.localAssets = localAssets;
+        this.routeResolver = new ServiceRouteResolver(monitor, config);
     }
 
     /**
      * bulk execution call - this is the default
-     * TODO implement batch size per service and not globally
+     * input bindings are collected per service and dispatched
+     * once the batch size of the service has been reached
      *
      * @param opService bound operator
      * @param queryIterator incoming bindings (may set service uri and input params)
@@ -145,7 +211,8 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
     public QueryIterator createExecution(OpService opService, QueryIterator queryIterator, ExecutionContext executionContext, ServiceExecutorBulk serviceExecutorBulk) {
         Node serviceNode = opService.getService();
         Set<String> boundVars = new HashSet<>();
-        long batchSize = config.getFederationServiceBatchSize();
+
+        int pipelineWindow = config.getFederationServiceBatchPipeline();
 
         //
         // returns an iterator over batches
@@ -155,57 +222,113 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
             // the active iterator over the current batch
             private QueryIterator batchIterator;
 
+            // the batches which have already been dispatched ahead of the current batch
+            private final Queue<QueryIterator> pipeline = new ConcurrentLinkedQueue<>();
+
+            // the bindings per service which have not yet been dispatched
+            private final Map<String, List<Binding>> pendingBindings = new HashMap<>();
+
+            // the services to which a batch has already been dispatched
+            private final Set<String> dispatchedServices = new HashSet<>();
+
+            // whether the query has been cancelled (possibly from another thread)
+            private volatile boolean cancelled;
+
             /**
              * check whether we still have something left in the current iterator
-             * or switch to the next batch
+             * or switch to the next batch (while keeping the pipeline filled)
              */
             @Override
             protected boolean hasNextBinding() {
-                return (batchIterator != null && batchIterator.hasNext()) || hasNextResultBinding();
+                while (true) {
+                    if (batchIterator != null && batchIterator.hasNext()) {
+                        fillPipeline();
+                        return true;
+                    }
+                    if (batchIterator != null) {
+                        batchIterator.close();
+                    }
+                    batchIterator = pipeline.isEmpty() ? dispatchNextBatch() : pipeline.poll();
+                    if (batchIterator == null) {
+                        return false;
+                    }
+                }
+            }
+
+            /**
+             * dispatches further batches until the pipeline window is full
+             */
+            protected void fillPipeline() {
+                while (pipeline.size() < pipelineWindow) {
+                    QueryIterator nextBatch = dispatchNextBatch();
+                    if (nextBatch == null) {
+                        return;
+                    }
+                    pipeline.add(nextBatch);
+                }
             }
 
             /**
-             * switch to the next batch
+             * reads and dispatches the next batch
              *
-             * @return whether next batch exists
+             * @return iterator over the next batch, null if the input is exhausted
              */
-            public boolean hasNextResultBinding() {
-                // do we have additional input bindings
-                if (this.getInput().hasNext()) {
-                    // yes then read the next batch
-                    Map<String, List<Binding>> bindings = new HashMap<>();
-                    long batchLength = 0;
-                    while (this.getInput().hasNext() && batchLength++ < batchSize) {
-                        Binding binding = this.getInput().next();
-                        Iterator<Var> vars = binding.vars();
-                        while (vars.hasNext()) {
-                            boundVars.add(vars.next().getVarName());
-                        }
-                        // detect the service uri under the current binding
-                        Node keyNode = serviceNode;
-                        if (keyNode.isVariable()) {
-                            keyNode = binding.get((Var) keyNode);
-                        }
-                        if (keyNode.isURI()) {
-                            String key = keyNode.getURI();
-                            if (!bindings.containsKey(key)) {
-                                bindings.put(key, new ArrayList<>());
-                            }
-                            bindings.get(key).add(binding);
-                        } else {
-                            monitor.warning("Omitting a call because of lacking service binding");
+            protected QueryIterator dispatchNextBatch() {
+                FederationScope scope = FederationScope.get(getExecContext().getContext());
+                if (cancelled || scope != null && scope.isClosed()) {
+                    // no further calls on behalf of a cancelled or finished query
+                    return null;
+                }
+                // read input bindings until some service batch is full
+                Map<String, List<Binding>> bindings = new HashMap<>();
+                while (bindings.isEmpty() && this.getInput().hasNext()) {
+                    Binding binding = this.getInput().next();
+                    Iterator<Var> vars = binding.vars();
+                    while (vars.hasNext()) {
+                        boundVars.add(vars.next().getVarName());
+                    }
+                    // detect the service uri under the current binding
+                    Node keyNode = serviceNode;
+                    if (keyNode.isVariable()) {
+                        keyNode = binding.get((Var) keyNode);
+                    }
+                    if (keyNode != null && keyNode.isURI()) {
+                        String key = keyNode.getURI();
+                        List<Binding> batch = pendingBindings.computeIfAbsent(key, k -> new ArrayList<>());
+                        batch.add(binding);
+                        if (batch.size() >= batchSizer.getBatchSize(key)) {
+                            bindings.put(key, pendingBindings.remove(key));
                         }
+                    } else {
+                        monitor.warning("Omitting a call because of lacking service binding");
                     }
-                    ExecutionContext ctx = this.getExecContext();
+                }
+                // at the end of the input, dispatch all remaining batches
+                if (!this.getInput().hasNext()) {
+                    bindings.putAll(pendingBindings);
+                    pendingBindings.clear();
+                }
+                if (bindings.isEmpty()) {
+                    return null;
+                }
+                ExecutionContext ctx = this.getExecContext();
+                Set<String> batchVars = new HashSet<>(boundVars);
 
-                    List<Future<QueryIterator>> futureBindings = bindings.entrySet().stream().map(serviceSpec -> executor.submit(() ->
-                            createExecution(opService, serviceSpec.getKey(), boundVars, serviceSpec.getValue(), ctx))).collect(Collectors.toList());
+                // completed calls are queued so that they can be consumed in the order of arrival
+                BlockingQueue<Future<QueryIterator>> completed = new LinkedBlockingQueue<>();
+                Map<Future<QueryIterator>, String> futureBindings = new HashMap<>();
+                bindings.forEach((key, batch) -> {
+                    boolean first = dispatchedServices.add(key);
+                    // an oversized batch is shipped in several concurrent requests to the same service
+                    for (List<Binding> part : splitBatch(key, batch)) {
+                        CompletableFuture<QueryIterator> futureBinding = createJoinExecution(opService, key, batchVars, part, ctx, first);
+                        futureBinding.whenComplete((result, failure) -> completed.add(futureBinding));
+                        futureBindings.put(futureBinding, key);
+                    }
+                });
 
-                    batchIterator = new QueryIterFutures(config, monitor, config.getControlPlaneManagementUrl(), config.getDefaultAsset(), serviceNode, ctx.getContext(), futureBindings);
-                    return hasNextBinding();
-                } else {
-                    return false;
-                }
+                long deadline = ctx.getContext().get(DEADLINE_SYMBOL, -1L);
+                return new QueryIterFutures(config, monitor, config.getControlPlaneManagementUrl(), config.getDefaultAsset(), serviceNode, ctx.getContext(), futureBindings, completed, deadline);
             }
 
             /**
@@ -219,18 +342,30 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
             }
 
             /**
-             * no explicit sub canceling implemented, http is stateless in this respect
+             * cancels the current and all dispatched batches and stops dispatching
              */
             @Override
             protected void requestSubCancel() {
-
+                cancelled = true;
+                QueryIterator current = batchIterator;
+                if (current != null) {
+                    current.cancel();
+                }
+                pipeline.forEach(QueryIterator::cancel);
             }
 
             /**
-             * no explicit closing implemented, http is stateless in this respect
+             * closes the current and all dispatched batches
              */
             @Override
             protected void closeSubIterator() {
+                if (batchIterator != null) {
+                    batchIterator.close();
+                    batchIterator = null;
+                }
+                for (QueryIterator dispatched = pipeline.poll(); dispatched != null; dispatched = pipeline.poll()) {
+                    dispatched.close();
+                }
             }
 
         };
@@ -265,6 +400,109 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
         return createExecution(opOriginal, target, allowedVars, List.of(binding), execCxt);
     }
 
+    /**
+     * executes a batch in the join mode which the optimizer has chosen for the service. If the
+     * pattern is joined locally, it is fetched at most once per query (and service address).
+     *
+     * @param opOriginal the unbound operator
+     * @param serviceUrl uri of the target service
+     * @param boundVars  a set of all bound variables
+     * @param bindings   the current bindings
+     * @param execCxt    the execution context
+     * @param first      whether this is the first batch of the service
+     * @return future set of query results
+     */
+    protected CompletableFuture<QueryIterator> createJoinExecution(OpService opOriginal, String serviceUrl, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt, boolean first) {
+        FederationScope scope = FederationScope.get(execCxt.getContext());
+        ServiceJoinMode mode = scope == null ? ServiceJoinMode.BIND : scope.getJoinMode(opOriginal);
+        if (mode == ServiceJoinMode.BIND || (mode == ServiceJoinMode.HYBRID && first)) {
+            return createMeasuredExecution(opOriginal, serviceUrl, boundVars, bindings, execCxt);
+        }
+        CompletableFuture<RemoteTable> table = scope.getTemplate(List.of(RemoteTable.class, serviceUrl, opOriginal),
+                key -> fetchTable(opOriginal, serviceUrl, execCxt));
+        return table.thenComposeAsync(fetched -> {
+            if (fetched == null) {
+                return createMeasuredExecution(opOriginal, serviceUrl, boundVars, bindings, execCxt);
+            }
+            return CompletableFuture.completedFuture(QueryIterPlainWrapper.create(fetched.join(bindings).iterator(), execCxt));
+        }, executor);
+    }
+
+    /**
+     * fetches the complete (unbound) pattern of a service in order to join it locally.
+     * At most hash join limit results are fetched.
+     *
+     * @param opOriginal the unbound operator
+     * @param serviceUrl uri of the target service
+     * @param execCxt    the execution context
+     * @return future table, completes with null if the pattern is too large or could not be fetched
+     */
+    protected CompletableFuture<RemoteTable> fetchTable(OpService opOriginal, String serviceUrl, ExecutionContext execCxt) {
+        long limit = execCxt.getContext().get(HASH_JOIN_SYMBOL, 0L);
+        List<Var> vars = new ArrayList<>(OpVars.visibleVars(opOriginal.getSubOp()));
+        OpService opFetch = new OpService(opOriginal.getService(), new OpSlice(opOriginal.getSubOp(), Query.NOLIMIT, limit + 1), opOriginal.getSilent());
+        FederationStatistics statistics = FederationStatistics.get(execCxt.getContext());
+        return createExecutionAsync(opFetch, serviceUrl, Set.of(), List.of(BindingFactory.empty()), execCxt, executor).handle((iterator, failure) -> {
+            if (failure != null || !(iterator instanceof QueryIterJoin)) {
+                // silent fallbacks or problems such as graph assets which cannot be resolved without bindings
+                monitor.warning(String.format("Could not fetch the pattern of service %s, shipping the bindings instead: %s", serviceUrl, failure == null ? "silent" : unwrap(failure).getMessage()));
+                if (iterator != null) {
+                    iterator.close();
+                }
+                return null;
+            }
+            List<Binding> rows = new ArrayList<>();
+            try {
+                while (iterator.hasNext() && rows.size() <= limit) {
+                    Binding row = iterator.next();
+                    BindingBuilder builder = BindingBuilder.create();
+                    for (Var var : vars) {
+                        Node value = row.get(var);
+                        if (value != null) {
+                            builder.add(var, value);
+                        }
+                    }
+                    rows.add(builder.build());
+                }
+            } finally {
+                iterator.close();
+            }
+            if (statistics != null) {
+                statistics.record(opOriginal).recordFullResults(rows.size());
+            }
+            if (rows.size() > limit) {
+                monitor.debug(String.format("Pattern of service %s exceeds %d results, shipping the bindings instead", serviceUrl, limit));
+                return null;
+            }
+            return new RemoteTable(vars, rows);
+        });
+    }
+
+    /**
+     * invokes the remote http service execution asynchronously and records the
+     * call statistics of the target service. The latency is measured from sending the
+     * request until its response has arrived, so neither waiting for a bulkhead
+     * slot or a negotiation nor the time the consumer spends on the results is
+     * attributed to the batch size.
+     *
+     * @param opOriginal the unbound operator
+     * @param serviceUrl uri of the target service
+     * @param boundVars a set of all bound variables
+     * @param bindings   the current bindings
+     * @param execCxt    the execution context
+     * @return future set of query results
+     */
+    protected CompletableFuture<QueryIterator> createMeasuredExecution(OpService opOriginal, String serviceUrl, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt) {
+        CompletableFuture<QueryIterator> result = createExecutionAsync(opOriginal, serviceUrl, boundVars, bindings, execCxt, executor,
+                millis -> batchSizer.recordSuccess(serviceUrl, bindings.size(), millis));
+        result.whenComplete((iterator, failure) -> {
+            if (failure != null && !result.isCancelled()) {
+                batchSizer.recordFailure(serviceUrl, bindings.size());
+            }
+        });
+        return result;
+    }
+
     /**
      * (re-) implements the remote http service execution
      *
@@ -276,8 +514,299 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
      * @return a set of query results
      */
     public QueryIterator createExecution(OpService opOriginal, String serviceUrl, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt) {
-        Context context = execCxt.getContext();
+        try {
+            return createExecutionAsync(opOriginal, serviceUrl, boundVars, bindings, execCxt, Runnable::run).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
 
+    /**
+     * (re-) implements the remote http service execution in an asynchronous manner.
+     * Threads of the given executor are only occupied for resolving the target (which may
+     * include a negotiation), for preparing the call and for reading the results, but
+     * not while waiting for the remote side to respond.
+     * Cancelling the resulting future (or closing the federation scope of the query)
+     * aborts the currently pending step.
+     * The bulkhead slot of the call is kept (and its latency is measured) until the
+     * response has been released, which for streamed responses is only when the
+     * resulting iterator is exhausted or closed.
+     *
+     * @param opOriginal the unbound operator
+     * @param serviceUrl uri of the target service
+     * @param boundVars a set of all bound variables
+     * @param bindings   the current bindings
+     * @param execCxt    the execution context
+     * @param stageExecutor executor to run the individual steps on
+     * @return future set of query results
+     */
+    public CompletableFuture<QueryIterator> createExecutionAsync(OpService opOriginal, String serviceUrl, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt, Executor stageExecutor) {
+        return createExecutionAsync(opOriginal, serviceUrl, boundVars, bindings, execCxt, stageExecutor, null);
+    }
+
+    /**
+     * (re-) implements the remote http service execution in an asynchronous manner
+     * and measures the call
+     *
+     * @param opOriginal    the unbound operator
+     * @param serviceUrl    uri of the target service
+     * @param boundVars     a set of all bound variables
+     * @param bindings      the current bindings
+     * @param execCxt       the execution context
+     * @param stageExecutor executor to run the individual steps on
+     * @param measurement   receives the milliseconds from sending the request until the response has arrived (its first rows when streamed), may be null
+     * @return future set of query results
+     */
+    public CompletableFuture<QueryIterator> createExecutionAsync(OpService opOriginal, String serviceUrl, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt, Executor stageExecutor,
+                                                                  LongConsumer measurement) {
+        AtomicLong sent = new AtomicLong(-1);
+        AtomicReference<Runnable> abortion = new AtomicReference<>();
+        AtomicReference<Bulkhead.Permit> permit = new AtomicReference<>();
+        CompletableFuture<QueryIterator> result = new CompletableFuture<>();
+        // completes with whether the response has been read completely
+        CompletableFuture<Boolean> released = new CompletableFuture<>();
+        released.whenComplete((complete, failure) -> releasePermit(permit));
+        // milliseconds from sending until the response has been read completely, negative otherwise
+        CompletableFuture<Long> consumed = released.thenApply(complete -> complete && sent.get() >= 0 ? System.currentTimeMillis() - sent.get() : -1L);
+        result.whenComplete((iterator, failure) -> {
+            Runnable abort = abortion.get();
+            if (result.isCancelled() && abort != null) {
+                abort.run();
+            }
+            if (failure != null) {
+                released.complete(false);
+            }
+        });
+        // outstanding calls are cancelled together with their query
+        FederationScope scope = FederationScope.get(execCxt.getContext());
+        if (scope != null) {
+            scope.register(result);
+        }
+        CompletableFuture<ServiceTarget> targetFuture = supplyInterruptibly(() -> {
+            // the slot of the target connector/asset is kept until the call has been completed
+            permit.set(acquirePermit(serviceUrl));
+            if (released.isDone()) {
+                releasePermit(permit);
+            }
+            return resolveTarget(opOriginal, serviceUrl, bindings, execCxt.getContext());
+        }, stageExecutor);
+        abortion.set(() -> targetFuture.cancel(true));
+        targetFuture.thenCompose(target -> {
+            if (result.isDone()) {
+                throw new CancellationException("Remote service execution has been cancelled");
+            }
+            // fail fast (or skip) while the remote endpoint is regarded as down
+            ServiceCircuitBreaker breaker = getCircuitBreaker(target.serviceUrl);
+            if (breaker != null && !breaker.tryAcquire()) {
+                if (target.opService.getSilent()) {
+                    monitor.warning(String.format("Skipping SILENT service %s because its circuit is open", target.serviceUrl));
+                    released.complete(false);
+                    return CompletableFuture.completedFuture(QueryIterPlainWrapper.create(bindings.iterator(), execCxt));
+                }
+                throw new QueryExecException(String.format("The service %s is unavailable (circuit open). Aborted execution.", target.serviceUrl));
+            }
+            // Next case distinction: we could either have a query or
+            // a direct skill call
+            CompletableFuture<QueryIterator> invocation;
+            sent.set(System.currentTimeMillis());
+            if (target.isLocal()) {
+                invocation = invokeLocal(target, boundVars, bindings, execCxt, abortion, released);
+            } else if (!target.isSkill()) {
+                invocation = invokeQuery(target, boundVars, bindings, execCxt, stageExecutor, abortion, released);
+            } else {
+                OpGroup partialGroup = ServicePushdown.getPartialGroup(target.opService.getSubOp());
+                if (partialGroup == null) {
+                    invocation = invokeSkill(target, boundVars, bindings, execCxt, stageExecutor, abortion);
+                } else {
+                    // skills ignore a pushed grouping, so we fetch the raw rows and aggregate them ourselves
+                    ServiceTarget rowTarget = new ServiceTarget(new OpService(target.opService.getService(), partialGroup.getSubOp(), target.opService.getSilent()),
+                            target.serviceUrl, target.assetType, target.authKey, target.authCode, target.dataspace);
+                    invocation = invokeSkill(rowTarget, boundVars, bindings, execCxt, stageExecutor, abortion)
+                            .thenApply(rows -> ServicePushdown.aggregateLocally(target.opService.getSubOp(), boundVars, rows, execCxt));
+                }
+                invocation.whenComplete((iterator, failure) -> released.complete(failure == null));
+            }
+            if (measurement != null && !target.isLocal()) {
+                // in-process evaluations only start when consumed, silent fallbacks have not been answered
+                invocation.thenAccept(iterator -> {
+                    if (!(iterator instanceof QueryIterPlainWrapper)) {
+                        measurement.accept(System.currentTimeMillis() - sent.get());
+                    }
+                });
+            }
+            if (breaker != null) {
+                // calls without outcome (cancelled, local problems) must not block the breaker
+                invocation.whenComplete((iterator, failure) -> breaker.release());
+            }
+            return invocation;
+        }).whenComplete((iterator, failure) -> {
+            if (failure == null) {
+                recordPattern(opOriginal, bindings.size(), iterator, consumed, execCxt.getContext());
+                if (!result.complete(iterator)) {
+                    // nobody is interested anymore
+                    iterator.close();
+                }
+            } else {
+                released.complete(false);
+                result.completeExceptionally(unwrap(failure));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * records the latency of a service pattern and its result cardinality for the
+     * cost-based join ordering, both once the results have been read completely
+     *
+     * @param opOriginal the unbound operator
+     * @param bindings   number of bindings sent
+     * @param iterator   the results
+     * @param consumed   completes with the latency of the call, negative if the response has not been read completely
+     * @param context    the query context
+     */
+    protected void recordPattern(OpService opOriginal, int bindings, QueryIterator iterator, CompletableFuture<Long> consumed, Context context) {
+        FederationStatistics statistics = FederationStatistics.get(context);
+        if (statistics == null || !(iterator instanceof QueryIterJoin)) {
+            // fallbacks of silent services tell nothing about the pattern
+            return;
+        }
+        ServiceStatistics patternStatistics = statistics.record(opOriginal);
+        consumed.thenAccept(millis -> {
+            if (millis >= 0) {
+                patternStatistics.recordSuccess(bindings, millis);
+            }
+        });
+        ((QueryIterJoin) iterator).onExhausted(results -> patternStatistics.recordResults(bindings, results));
+    }
+
+    /**
+     * splits the batch of a service into parts which are requested concurrently. The number
+     * of parts is bounded by the configured split, by the minimal part size and by the
+     * slots which the bulkhead currently grants to the connector (and asset) of the service.
+     *
+     * @param serviceUrl uri of the target service
+     * @param batch      the bindings of the service
+     * @return the parts of the batch
+     */
+    protected List<List<Binding>> splitBatch(String serviceUrl, List<Binding> batch) {
+        long parts = Math.min(config.getFederationServiceBatchSplit(), batch.size() / config.getFederationServiceBatchSplitMin());
+        if (parts > 1) {
+            ServiceRouteResolver.Address address = routeResolver.parse(serviceUrl);
+            int available = address.dataspace ? bulkhead.getAvailable(address.connector, address.asset) : bulkhead.getAvailable(serviceUrl, null);
+            parts = Math.min(parts, available);
+        }
+        if (parts <= 1) {
+            return List.of(batch);
+        }
+        List<List<Binding>> result = new ArrayList<>((int) parts);
+        int size = batch.size();
+        for (int part = 0; part < parts; part++) {
+            result.add(batch.subList((int) (size * part / parts), (int) (size * (part + 1) / parts)));
+        }
+        return result;
+    }
+
+    /**
+     * acquires a bulkhead slot for calling the given service
+     *
+     * @param serviceUrl uri of the target service
+     * @return permit to close after the call
+     */
+    protected Bulkhead.Permit acquirePermit(String serviceUrl) {
+        ServiceRouteResolver.Address address = routeResolver.parse(serviceUrl);
+        if (address.dataspace) {
+            return bulkhead.acquire(address.connector, address.asset);
+        }
+        return bulkhead.acquire(serviceUrl, null);
+    }
+
+    /**
+     * acquires a bulkhead slot for an optional call to the given service if one is free right now
+     *
+     * @param serviceUrl uri of the target service
+     * @return permit to close after the call, null if no slot is free
+     */
+    protected Bulkhead.Permit tryAcquirePermit(String serviceUrl) {
+        ServiceRouteResolver.Address address = routeResolver.parse(serviceUrl);
+        if (address.dataspace) {
+            return bulkhead.tryAcquire(address.connector, address.asset);
+        }
+        return bulkhead.tryAcquire(serviceUrl, null);
+    }
+
+    /**
+     * releases an acquired bulkhead slot (if any)
+     *
+     * @param permit holder of the permit
+     */
+    protected static void releasePermit(AtomicReference<Bulkhead.Permit> permit) {
+        Bulkhead.Permit acquired = permit.get();
+        if (acquired != null) {
+            acquired.close();
+        }
+    }
+
+    /**
+     * a resolved target of a remote service call
+     */
+    protected static class ServiceTarget {
+        final OpService opService;
+        final String serviceUrl;
+        final String assetType;
+        final String authKey;
+        final String authCode;
+        final Node localGraph;
+        final Map<String, Object> localProperties;
+        final boolean dataspace;
+
+        ServiceTarget(OpService opService, String serviceUrl, String assetType, String authKey, String authCode, boolean dataspace) {
+            this(opService, serviceUrl, assetType, authKey, authCode, null, null, dataspace);
+        }
+
+        ServiceTarget(OpService opService, String serviceUrl, String assetType, String authKey, String authCode, Node localGraph, Map<String, Object> localProperties, boolean dataspace) {
+            this.opService = opService;
+            this.serviceUrl = serviceUrl;
+            this.assetType = assetType;
+            this.authKey = authKey;
+            this.authCode = authCode;
+            this.localGraph = localGraph;
+            this.localProperties = localProperties;
+            this.dataspace = dataspace;
+        }
+
+        /**
+         * access
+         *
+         * @return whether the target is a graph asset of the local store
+         */
+        boolean isLocal() {
+            return localGraph != null;
+        }
+
+        /**
+         * access
+         *
+         * @return whether the target is a skill
+         */
+        boolean isSkill() {
+            return assetType.contains("Skill");
+        }
+    }
+
+    /**
+     * checks the service url and resolves it into a callable target (by
+     * negotiating the asset if it is an EDC address)
+     *
+     * @param opOriginal the unbound operator
+     * @param serviceUrl uri of the target service
+     * @param bindings   the current bindings
+     * @param context    the execution context
+     * @return the resolved target
+     */
+    protected ServiceTarget resolveTarget(OpService opOriginal, String serviceUrl, List<Binding> bindings, Context context) {
         // we have to only check outgoing URLs which have not already been checked
         String targetUrl = context.get(DataspaceServiceExecutor.TARGET_URL_SYMBOL);
         if (!serviceUrl.equalsIgnoreCase(targetUrl)) {
@@ -294,287 +823,656 @@ public class DataspaceServiceExecutor implements ServiceExecutor, ChainingServic
             }
         }
 
-        boolean silent = opOriginal.getSilent();
-
         // derive the asset type from the service URL, if possible
         // otherwise we will get it from the endpoint address after a ngotiation
         String assetType = serviceUrl.contains("Skill") ? "cx-common:SkillAsset" : serviceUrl.contains("Graph") ? "cx-common:GraphAsset" : "cx-common:Asset";
 
         // in case we have an EDC target, we need to negotiate/proxy the transfer
-        Matcher edcMatcher = EDC_TARGET_ADDRESS_PATTERN.matcher(serviceUrl);
-        if (edcMatcher.matches()) {
+        // (the route of a service pattern is only deduced once)
+        ServiceRouteResolver.Route route = routeResolver.resolve(opOriginal, serviceUrl, bindings);
+        if (route == null) {
+            monitor.info(String.format("About to execute http target %s without dataspace", serviceUrl));
+            return new ServiceTarget(opOriginal, serviceUrl, assetType, context.get(AUTH_KEY_SYMBOL), context.get(AUTH_CODE_SYMBOL), false);
+        }
 
-            //
-            // EDC case: negotiate and proxy the transfer
-            //
+        //
+        // EDC case: negotiate and proxy the transfer
+        //
 
-            monitor.info(String.format("About to execute edc target %s via dataspace", serviceUrl));
-            String remoteUrl = edcMatcher.group("connector");
-            if (remoteUrl == null || remoteUrl.length() == 0) {
-                remoteUrl = config.getControlPlaneIdsUrl();
-            } else {
-                if ("edcs".equals(edcMatcher.group("protocol"))) {
-                    remoteUrl = "https://" + remoteUrl;
-                } else {
-                    remoteUrl = "http://" + remoteUrl;
+        String remoteUrl = route.address.connectorUrl;
+        String asset = route.asset;
+        opOriginal = route.apply(opOriginal);
+        Node localGraph = getLocalGraph(remoteUrl, asset);
+        Map<String, Object> localProperties = localGraph != null ? getLocalProperties(asset, context) : null;
+        if (localProperties != null) {
+            // no need to negotiate with (and call) ourselves
+            monitor.info(String.format("About to execute edc target %s in-process", serviceUrl));
+            return new ServiceTarget(opOriginal, serviceUrl, "cx-common:GraphAsset", null, null, localGraph, localProperties, true);
+        }
+        monitor.info(String.format("About to execute edc target %s via dataspace", serviceUrl));
+        EndpointDataReference endpoint = agreementController.get(asset);
+        if (endpoint == null) {
+            endpoint = agreementController.createAgreement(remoteUrl, asset);
+            if (endpoint == null) {
+                throw new QueryExecException(String.format("Could not get an endpoint calback from connector %s to asset %s - Most likely this was a recursive call and you forgot to setup two control planes.", remoteUrl, asset));
+            }
+        }
+        // the asset type should be annotated in the rdf type property
+        assetType = String.valueOf(endpoint.getProperties().getOrDefault("http://www.w3.org/1999/02/22-rdf-syntax-ns#type", assetType));
+
+        // put the endpoint information into a new service operator
+        // and cater for the EDC public api slash problem
+        serviceUrl = endpoint.getEndpoint();
+        if (!serviceUrl.endsWith("/")) {
+            serviceUrl = serviceUrl + "/";
+        }
+        if (route.address.params != null) {
+            serviceUrl = serviceUrl + "?" + route.address.params;
+        }
+        Map<String, Map<String, List<String>>> allServiceParams = context.get(Service.serviceParams);
+        if (allServiceParams == null) {
+            allServiceParams = new ConcurrentHashMap<>();
+            context.put(Service.serviceParams, allServiceParams);
+        }
+        Map<String, List<String>> serviceParams = allServiceParams.computeIfAbsent(serviceUrl, k -> new HashMap<>());
+        // remote agents may answer in the compact thrift format, third-party endpoints are not routed via edc
+        serviceParams.put("cx_accept", List.of(config.isFederationBinaryResults() ? WebContent.contentTypeResultsThrift : "application/json"));
+        // the endpoint authentication is kept with the target rather than in the (shared) context
+        return new ServiceTarget(opOriginal, serviceUrl, assetType, endpoint.getAuthKey(), endpoint.getAuthCode(), true);
+    }
+
+    /**
+     * checks whether a dataspace address targets a graph asset of the own connector
+     *
+     * @param connectorUrl the connector of the address
+     * @param asset        the asset of the address
+     * @return the name of the asset graph in the local store, null if the asset is not local
+     */
+    protected Node getLocalGraph(String connectorUrl, String asset) {
+        String ownUrl = config.getControlPlaneIdsUrl();
+        if (localStore == null || !config.isFederationLocal() || ownUrl == null || connectorUrl == null || asset == null) {
+            return null;
+        }
+        if (!trimSlash(ownUrl).equalsIgnoreCase(trimSlash(connectorUrl))) {
+            return null;
+        }
+        // assets without a base are stored under the unset base
+        for (String graph : List.of(asset, SparqlQueryProcessor.UNSET_BASE + asset)) {
+            Node graphNode = NodeFactory.createURI(graph);
+            if (localStore.getDataSet().containsGraph(graphNode)) {
+                return graphNode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * looks up the address properties of a graph asset of the own connector (once per query)
+     *
+     * @param asset   the asset
+     * @param context the execution context
+     * @return the address properties of the asset, null if the asset is not offered by the own connector
+     */
+    protected Map<String, Object> getLocalProperties(String asset, Context context) {
+        if (localAssets == null) {
+            return null;
+        }
+        Optional<Map<String, Object>> properties = getTemplate(List.of(DataManagement.class, asset), context, key -> {
+            try {
+                return localAssets.getAssetAddress(asset);
+            } catch (IOException | RuntimeException e) {
+                monitor.warning(String.format("Could not look up the local asset %s, calling it via dataspace: %s", asset, e.getMessage()));
+                return Optional.empty();
+            }
+        });
+        return properties.orElse(null);
+    }
+
+    /**
+     * removes a trailing slash
+     *
+     * @param url some url
+     * @return url without trailing slash
+     */
+    protected static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * evaluates a (graph) query on a graph asset of the local store. The
+     * query is the same which would be sent to the connector, and nested
+     * services are checked against the allow/deny patterns of the asset.
+     * The evaluation is not dispatched to the federation pool (where nested
+     * services would wait for that same pool), but streamed by the thread which
+     * consumes the results.
+     *
+     * @param target    the resolved local target
+     * @param boundVars a set of all bound variables
+     * @param bindings  the current bindings
+     * @param execCxt   the execution context
+     * @param abortion  receives the action to abort the evaluation
+     * @param released  completed with whether the results have been read completely once the evaluation is closed
+     * @return future set of query results
+     */
+    protected CompletableFuture<QueryIterator> invokeLocal(ServiceTarget target, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt, AtomicReference<Runnable> abortion,
+                                                           CompletableFuture<Boolean> released) {
+        Context context = execCxt.getContext();
+        String serviceUrl = target.serviceUrl;
+        boolean silent = target.opService.getSilent();
+        CompletableFuture<QueryIterator> result;
+        try {
+            RemoteQueryTemplate template = getTemplate(List.of(target.opService.getSubOp(), Set.copyOf(boundVars)), context,
+                    key -> RemoteQueryTemplate.compile(target.opService.getSubOp(), boundVars));
+            Var idVar = template.getIdVar();
+            Var[] columns = template.getNeededVars().toArray(new Var[0]);
+            List<List<Binding>> newBindings = new ArrayList<>();
+            String query = template.render(prepareJoin(bindings, columns, columns, idVar, newBindings));
+
+            monitor.debug(String.format("Prepared local target %s for query %s", serviceUrl, query));
+
+            // the local call behaves like an incoming call of the asset
+            Context localContext = context.copy();
+            localContext.remove(TARGET_URL_SYMBOL);
+            localContext.set(ASSET_SYMBOL, target.localGraph.getURI());
+            SparqlQueryProcessor.setServicePatterns(localContext, target.localProperties, config);
+            CatenaxWarning.setWarnings(localContext, null);
+            QueryExec localExec = QueryExec.dataset(localStore.getDataSet()).query(query).context(localContext).build();
+            abortion.set(localExec::abort);
+            QueryIterator queryIterator = new QueryIterRemote(localExec).onRelease(complete -> {
+                localExec.close();
+                // the warnings of the local call would otherwise arrive in the response headers
+                List<CatenaxWarning> localWarnings = CatenaxWarning.getWarnings(localContext);
+                if (localWarnings != null && !localWarnings.isEmpty()) {
+                    CatenaxWarning.getOrSetWarnings(context).addAll(localWarnings);
                 }
+                released.complete(complete);
+            });
+            queryIterator = QueryIter.makeTracked(queryIterator, execCxt);
+            result = CompletableFuture.completedFuture(new QueryIterJoin(queryIterator, newBindings, idVar, execCxt));
+        } catch (RuntimeException ex) {
+            released.complete(false);
+            result = CompletableFuture.failedFuture(ex);
+        }
+        return result.exceptionally(failure -> {
+            Throwable cause = unwrap(failure);
+            if (silent && !(cause instanceof CancellationException)) {
+                Log.warn(this, "SERVICE " + serviceUrl + " : " + cause.getMessage());
+                // Return the input
+                return QueryIterPlainWrapper.create(bindings.iterator(), execCxt);
             }
-            String asset = edcMatcher.group("asset");
-            if (asset == null || asset.length() == 0) {
-                GraphRewriteVisitor grv = new GraphRewriteVisitor();
-                GraphRewrite gr = new GraphRewrite(monitor, bindings, grv);
-                Op transformed = Transformer.transform(gr, opOriginal.getSubOp(), grv, null);
-                opOriginal = new OpService(opOriginal.getService(), transformed, opOriginal.getSilent());
-                Set<String> graphNames = gr.getGraphNames();
-                if (graphNames.size() > 1) {
-                    throw new QueryExecException("There are several graph assets (currently not supported due to negotiation strategy, please rewrite your query) under EDC-based service: " + serviceUrl);
-                } else {
-                    Optional<String> graphName = graphNames.stream().findAny();
-                    if (graphName.isEmpty()) {
-                        throw new QueryExecException("There is no graph asset under EDC-based service: " + serviceUrl);
+            throw new CompletionException(cause);
+        });
+    }
+
+    /**
+     * invokes a (graph) query on the given target
+     *
+     * @param target        the resolved target
+     * @param boundVars     a set of all bound variables
+     * @param bindings      the current bindings
+     * @param execCxt       the execution context
+     * @param stageExecutor executor to read the results on
+     * @param abortion      receives the action to abort the pending call
+     * @param released      completed with whether the response has been read completely once the connection is released
+     * @return future set of query results
+     */
+    protected CompletableFuture<QueryIterator> invokeQuery(ServiceTarget target, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt, Executor stageExecutor, AtomicReference<Runnable> abortion,
+                                                           CompletableFuture<Boolean> released) {
+        Context context = execCxt.getContext();
+        String serviceUrl = target.serviceUrl;
+        boolean silent = target.opService.getSilent();
+        CompletableFuture<QueryIterator> result;
+
+        // http execute with headers and such
+        try {
+            RemoteQueryTemplate template = getTemplate(List.of(target.opService.getSubOp(), Set.copyOf(boundVars)), context,
+                    key -> RemoteQueryTemplate.compile(target.opService.getSubOp(), boundVars));
+            Var idVar = template.getIdVar();
+            List<Var> neededVars = template.getNeededVars();
+            Var[] columns = neededVars.toArray(new Var[0]);
+            List<List<Binding>> newBindings = new ArrayList<>();
+            List<Binding> resultingBindings = prepareJoin(bindings, columns, columns, idVar, newBindings);
+
+            // only the rows of the batch are written into the compiled query
+            String query = template.render(resultingBindings);
+
+            monitor.debug(String.format("Prepared target %s for query %s", serviceUrl, query));
+
+            // -- Setup
+            // only agents behind the dataspace are known to accept compressed query bodies
+            long timeoutMillis = config.getReadTimeout();
+
+            // RegistryServiceModifier is applied by QueryExecHTTP
+            Params serviceParams = getServiceParamsFromContext(serviceUrl, context);
+            HttpClient httpClient = chooseHttpClient(serviceUrl, context);
+
+            QuerySendMode querySendMode = chooseQuerySendMode(serviceUrl, context, QuerySendMode.asGetWithLimitBody);
+            // -- End setup
+
+            // Build the execution
+            QueryExecutorBuilder queryExecutorBuilder = QueryExecutor.newBuilder()
+                    .endpoint(serviceUrl)
+                    .timeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                    .queryString(query)
+                    .params(serviceParams)
+                    .context(context)
+                    .httpClient(httpClient)
+                    .objectMapper(objectMapper)
+                    .agentConfig(config)
+                    .compressBody(target.dataspace)
+                    .sendMode(querySendMode);
+
+            if (target.authKey != null) {
+                monitor.debug(String.format("About to use authentication header %s on http target %s", target.authKey, serviceUrl));
+                queryExecutorBuilder = queryExecutorBuilder.httpHeader(target.authKey, target.authCode);
+            }
+
+            boolean streaming = config.isFederationServiceStreaming();
+            result = selectHedged(queryExecutorBuilder, serviceUrl, bindings.size(), stageExecutor, abortion).thenApply(selected -> {
+                QueryExecutor remoteExec = selected.getKey();
+                RowSet rowSet = selected.getValue();
+                QueryIterator queryIterator;
+                try {
+                    if (streaming) {
+                        // Stay on the network stream, the iterator will release it
+                        queryIterator = new QueryIterRemote(remoteExec, rowSet).onRelease(released::complete).readAhead(config.getFederationServiceReadAhead());
                     } else {
-                        asset = graphName.get();
+                        // Detach from the network stream.
+                        queryIterator = QueryIterPlainWrapper.create(rowSet.materialize());
+                        remoteExec.close();
+                        released.complete(true);
                     }
+                } catch (RuntimeException ex) {
+                    remoteExec.abort();
+                    released.complete(false);
+                    throw ex;
                 }
+                queryIterator = QueryIter.makeTracked(queryIterator, execCxt);
+                return new QueryIterJoin(queryIterator, newBindings, idVar, execCxt);
+            });
+        } catch (RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
+        return result.exceptionally(failure -> {
+            released.complete(false);
+            Throwable cause = unwrap(failure);
+            if (silent && !(cause instanceof CancellationException)) {
+                Log.warn(this, "SERVICE " + serviceUrl + " : " + cause.getMessage());
+                // Return the input
+                return QueryIterPlainWrapper.create(bindings.iterator(), execCxt);
             }
-            EndpointDataReference endpoint = agreementController.get(asset);
-            if (endpoint == null) {
-                endpoint = agreementController.createAgreement(remoteUrl, asset);
-                if (endpoint == null) {
-                    throw new QueryExecException(String.format("Could not get an endpoint calback from connector %s to asset %s - Most likely this was a recursive call and you forgot to setup two control planes.", remoteUrl, asset));
+            throw new CompletionException(cause);
+        });
+    }
+
+    /**
+     * deduplicates the bindings of a batch into the rows which are sent to the remote side.
+     * Each row is identified by the (int) index of the bindings it joins with.
+     *
+     * @param bindings     the current bindings
+     * @param columns      the variables of the rows
+     * @param sources      per column, the variable to look up in the bindings or a constant
+     * @param idVar        the id variable
+     * @param joinBindings receives the bindings (annotated with the id) per row index
+     * @return the rows (annotated with the id)
+     */
+    protected static List<Binding> prepareJoin(List<Binding> bindings, Var[] columns, Node[] sources, Var idVar, List<List<Binding>> joinBindings) {
+        Map<BindingKey, Integer> ids = new HashMap<>();
+        List<Binding> rows = new ArrayList<>();
+        for (Binding originalBinding : bindings) {
+            BindingKey key = BindingKey.of(originalBinding, sources);
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = rows.size();
+                ids.put(key, id);
+                BindingBuilder bb = BindingBuilder.create();
+                for (int column = 0; column < columns.length; column++) {
+                    Node node = key.get(column);
+                    if (node != null) {
+                        bb.add(columns[column], node);
+                    }
                 }
+                bb.add(idVar, QueryIterJoin.idNode(id));
+                rows.add(bb.build());
+                joinBindings.add(new ArrayList<>());
             }
-            // the asset type should be annotated in the rdf type property
-            assetType = String.valueOf(endpoint.getProperties().getOrDefault("http://www.w3.org/1999/02/22-rdf-syntax-ns#type", assetType));
+            BindingBuilder bb2 = BindingBuilder.create(originalBinding);
+            bb2.set(idVar, QueryIterJoin.idNode(id));
+            joinBindings.get(id).add(bb2.build());
+        }
+        return rows;
+    }
 
-            // put the endpoint information into a new service operator
-            // and cater for the EDC public api slash problem
-            serviceUrl = endpoint.getEndpoint();
-            if (!serviceUrl.endsWith("/")) {
-                serviceUrl = serviceUrl + "/";
-            }
-            if (edcMatcher.group("params") != null) {
-                serviceUrl = serviceUrl + "?" + edcMatcher.group("params");
-            }
-            Map<String, Map<String, List<String>>> allServiceParams = context.get(Service.serviceParams);
-            if (allServiceParams == null) {
-                allServiceParams = new HashMap<>();
-                context.put(Service.serviceParams, allServiceParams);
-            }
-            Map<String, List<String>> serviceParams = allServiceParams.computeIfAbsent(serviceUrl, k -> new HashMap<>());
-            serviceParams.put("cx_accept", List.of("application/json"));
-            execCxt.getContext().put(AUTH_KEY_SYMBOL, endpoint.getAuthKey());
-            execCxt.getContext().put(AUTH_CODE_SYMBOL, endpoint.getAuthCode());
-        } else {
-            monitor.info(String.format("About to execute http target %s without dataspace", serviceUrl));
+    /**
+     * access a remote query template which is compiled at most once per query
+     *
+     * @param key      identifies the template
+     * @param context  the query context
+     * @param compiler compiles the template
+     * @param <T> type of the template
+     * @return the compiled template
+     */
+    protected <T> T getTemplate(Object key, Context context, Function<Object, T> compiler) {
+        FederationScope scope = FederationScope.get(context);
+        if (scope == null) {
+            return compiler.apply(key);
         }
+        return scope.getTemplate(key, compiler);
+    }
 
-        // Next case distinction: we could either have a query or
-        // a direct skill call
-        if (!assetType.contains("Skill")) {
-            // http execute with headers and such
-            try {
-                Op opRemote = opOriginal.getSubOp();
-                int hashCode = Math.abs(opRemote.hashCode());
-                String bindingVarName = "binding" + hashCode;
-                Var idVar = Var.alloc(bindingVarName);
-                VariableDetector vd = new VariableDetector(boundVars);
-                opRemote = NodeTransformLib.transform(vd, opRemote);
-                List<Var> neededVars = vd.getVariables();
-                Map<String, Binding> resultingBindings = new HashMap<>();
-                Map<Node, List<Binding>> newBindings = new HashMap<>();
-                for (Binding originalBinding : bindings) {
-                    StringBuilder keyBuilder = new StringBuilder();
-                    BindingBuilder bb = BindingBuilder.create();
-                    for (Var neededVar : neededVars) {
-                        Node node = originalBinding.get(neededVar);
-                        keyBuilder.append(neededVar.getVarName());
-                        keyBuilder.append("#");
-                        keyBuilder.append(node.toString());
-                        bb.add(neededVar, node);
-                    }
-                    String key = keyBuilder.toString();
-                    Node keyNode;
-                    if (resultingBindings.containsKey(key)) {
-                        Binding existingBinding = resultingBindings.get(key);
-                        keyNode = existingBinding.get(idVar);
-                    } else {
-                        keyNode = NodeFactory.createLiteral(String.valueOf(resultingBindings.size()));
-                        bb.add(idVar, keyNode);
-                        newBindings.put(keyNode, new ArrayList<>());
-                        Binding newBinding = bb.build();
-                        //bb = BindingBuilder.create(newBinding);
-                        resultingBindings.put(key, newBinding);
-                    }
-                    final BindingBuilder bb2 = BindingBuilder.create(originalBinding);
-                    bb2.set(idVar, keyNode);
-                    newBindings.get(keyNode).add(bb2.build());
-                }
-                neededVars.add(idVar);
-                TableData table = new TableData(neededVars, new ArrayList<>(resultingBindings.values()));
-                OpTable opTable = OpTable.create(table);
-
-                Query query;
-
-                // do we have a "sub-select", then we smuggle our binding into it
-                if (opRemote instanceof OpProject) {
-                    OpProject opRemoteProject = (OpProject) opRemote;
-                    Op join = OpSequence.create(opTable, opRemoteProject.getSubOp());
-                    List<Var> resultVars = opRemoteProject.getVars();
-                    resultVars.add(idVar);
-                    query = OpAsQuery.asQuery(new OpProject(join, resultVars));
-                } else {
-                    Op join = OpSequence.create(opTable, opRemote);
-                    query = OpAsQuery.asQuery(join);
+    /**
+     * invokes a skill on the given target
+     *
+     * @param target        the resolved target
+     * @param boundVars     a set of all bound variables
+     * @param bindings      the current bindings
+     * @param execCxt       the execution context
+     * @param stageExecutor executor to read the results on
+     * @param abortion      receives the action to abort the pending call
+     * @return future set of query results
+     */
+    protected CompletableFuture<QueryIterator> invokeSkill(ServiceTarget target, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt, Executor stageExecutor, AtomicReference<Runnable> abortion) {
+        Context context = execCxt.getContext();
+        String serviceUrl = target.serviceUrl;
+        boolean silent = target.opService.getSilent();
+        CompletableFuture<QueryIterator> result;
+
+        // Skill call
+        try {
+            // [QExec] Add getSubOpUnmodified();
+            String bindingVarName = "binding";
+            Var idVar = Var.alloc(bindingVarName);
+            Map<String, Node> neededVars = getTemplate(List.of(SkillVariableDetector.class, target.opService.getSubOp(), Set.copyOf(boundVars)), context, key -> {
+                SkillVariableDetector vd = new SkillVariableDetector(boundVars);
+                Transformer.transform(vd, target.opService.getSubOp());
+                return vd.getVariables();
+            });
+            var parameterSet = new ResultSetMem() {
+                public void setVarNames(List<String> vars) {
+                    this.varNames = vars;
                 }
 
-                monitor.debug(String.format("Prepared target %s for query %s", serviceUrl, query));
-
-                // -- Setup
-                //boolean withCompression = context.isTrueOrUndef(httpQueryCompression);
-                long timeoutMillis = config.getReadTimeout();
-
-                // RegistryServiceModifier is applied by QueryExecHTTP
-                Params serviceParams = getServiceParamsFromContext(serviceUrl, context);
-                HttpClient httpClient = chooseHttpClient(serviceUrl, context);
-
-                QuerySendMode querySendMode = chooseQuerySendMode(serviceUrl, context, QuerySendMode.asGetWithLimitBody);
-                // -- End setup
-
-                // Build the execution
-                QueryExecutorBuilder queryExecutorBuilder = QueryExecutor.newBuilder()
-                        .endpoint(serviceUrl)
-                        .timeout(timeoutMillis, TimeUnit.MILLISECONDS)
-                        .query(query)
-                        .params(serviceParams)
-                        .context(context)
-                        .httpClient(httpClient)
-                        .objectMapper(objectMapper)
-                        .agentConfig(config)
-                        .sendMode(querySendMode);
-
-                if (context.isDefined(AUTH_KEY_SYMBOL)) {
-                    String authKeyProp = context.get(AUTH_KEY_SYMBOL);
-                    monitor.debug(String.format("About to use authentication header %s on http target %s", authKeyProp, serviceUrl));
-                    String authCodeProp = context.get(AUTH_CODE_SYMBOL);
-                    queryExecutorBuilder = queryExecutorBuilder.httpHeader(authKeyProp, authCodeProp);
+                public List<Binding> getRows() {
+                    return this.rows;
                 }
 
-                try (QueryExecutor qExec = queryExecutorBuilder.build()) {
-                    // Detach from the network stream.
-                    RowSet rowSet = qExec.select().materialize();
+            };
+            List<String> vars = new ArrayList<>();
+            vars.add(bindingVarName);
+            neededVars.forEach((key1, value) -> vars.add(key1));
+            parameterSet.setVarNames(vars);
+            Var[] columns = new Var[neededVars.size()];
+            Node[] sources = new Node[neededVars.size()];
+            int column = 0;
+            for (Map.Entry<String, Node> neededVar : neededVars.entrySet()) {
+                columns[column] = Var.alloc(neededVar.getKey());
+                sources[column++] = neededVar.getValue();
+            }
+            List<List<Binding>> newBindings = new ArrayList<>();
+            List<Binding> resultingBindings = prepareJoin(bindings, columns, sources, idVar, newBindings);
+            parameterSet.getRows().addAll(resultingBindings);
+            parameterSet.reset();
+            long timeoutMillis = config.getReadTimeout();
+            HttpClient httpClient = chooseHttpClient(serviceUrl, context);
+
+            // the parameter set is serialized while it is sent (chunked), every attempt starts from the beginning
+            OutputStreamPublisher bindingSet = new OutputStreamPublisher(output -> {
+                parameterSet.reset();
+                ResultSetMgr.write(output, parameterSet, ResultSetLang.RS_JSON);
+            }, stageExecutor);
+            HttpRequest.Builder skillRequest = HttpRequest.newBuilder()
+                    .uri(new URI(serviceUrl))
+                    .header("Content-Type", WebContent.contentTypeResultsJSON)
+                    .timeout(Duration.ofMillis(timeoutMillis))
+                    .header("Accept", WebContent.contentTypeResultsJSON)
+                    .POST(bindingSet);
+
+            if (target.authKey != null) {
+                monitor.debug(String.format("About to use authentication header %s on http target %s", target.authKey, serviceUrl));
+                skillRequest = skillRequest.header(target.authKey, target.authCode);
+            }
+
+            CompletableFuture<HttpResponse<InputStream>> remoteFuture = httpClient.sendAsync(skillRequest.build(), HttpResponse.BodyHandlers.ofInputStream());
+            abortion.set(() -> remoteFuture.cancel(true));
+            remoteFuture.whenComplete((remoteCall, failure) -> {
+                if (!(unwrap(failure) instanceof CancellationException)) {
+                    recordOutcome(serviceUrl, failure == null && remoteCall.statusCode() < 500);
+                }
+            });
+            result = remoteFuture.thenApplyAsync(remoteCall -> {
+                if (remoteCall.statusCode() >= 200 && remoteCall.statusCode() < 300) {
+                    ResultSet resultSet = ResultSetMgr.read(remoteCall.body(), ResultSetLang.RS_JSON);
+                    RowSet rowSet = new RowSetAdapter(resultSet);
                     QueryIterator queryIterator = QueryIterPlainWrapper.create(rowSet);
                     queryIterator = QueryIter.makeTracked(queryIterator, execCxt);
                     return new QueryIterJoin(queryIterator, newBindings, idVar, execCxt);
-                }
-            } catch (RuntimeException ex) {
-                if (silent) {
-                    Log.warn(this, "SERVICE " + serviceUrl + " : " + ex.getMessage());
+                } else {
+                    Log.warn(this, "SERVICE " + serviceUrl + " resulted in status code " + remoteCall.statusCode());
+                    try {
+                        remoteCall.body().close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
                     // Return the input
                     return QueryIterPlainWrapper.create(bindings.iterator(), execCxt);
                 }
-                throw ex;
+            }, stageExecutor);
+        } catch (URISyntaxException | RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
+        return result.exceptionally(failure -> {
+            Throwable cause = unwrap(failure);
+            if (cause instanceof CancellationException) {
+                throw (CancellationException) cause;
             }
-        } else {
-            // Skill call
-            try {
-                // [QExec] Add getSubOpUnmodified();
-                Op opRemote = opOriginal.getSubOp();
-                String bindingVarName = "binding";
-                Var idVar = Var.alloc(bindingVarName);
-                SkillVariableDetector vd = new SkillVariableDetector(boundVars);
-                opRemote = Transformer.transform(vd, opRemote);
-                Map<String, Node> neededVars = vd.getVariables();
-                var parameterSet = new ResultSetMem() {
-                    public void setVarNames(List<String> vars) {
-                        this.varNames = vars;
-                    }
-
-                    public List<Binding> getRows() {
-                        return this.rows;
-                    }
+            if (silent) {
+                Log.warn(this, "SERVICE " + serviceUrl + " : " + cause.getMessage());
+                // Return the input
+                return QueryIterPlainWrapper.create(bindings.iterator(), execCxt);
+            }
+            throw new RuntimeException("Could not invoke remote skill", cause);
+        });
+    }
 
-                };
-                List<String> vars = new ArrayList<>();
-                vars.add(bindingVarName);
-                neededVars.forEach((key1, value) -> vars.add(key1));
-                parameterSet.setVarNames(vars);
-                Map<String, Binding> resultingBindings = new HashMap<>();
-                Map<Node, List<Binding>> newBindings = new HashMap<>();
-                for (Binding originalBinding : bindings) {
-                    StringBuilder keyBuilder = new StringBuilder();
-                    BindingBuilder bb = BindingBuilder.create();
-                    for (Map.Entry<String, Node> neededVar : neededVars.entrySet()) {
-                        Node node = neededVar.getValue();
-                        if (node.isVariable()) {
-                            node = originalBinding.get((Var) node);
-                        }
-                        if (node != null) {
-                            keyBuilder.append(neededVar.getKey());
-                            keyBuilder.append("#");
-                            keyBuilder.append(node);
-                            bb.add(Var.alloc(neededVar.getKey()), node);
-                        }
-                    }
-                    String key = keyBuilder.toString();
-                    Node keyNode;
-                    if (resultingBindings.containsKey(key)) {
-                        Binding existingBinding = resultingBindings.get(key);
-                        keyNode = existingBinding.get(idVar);
+    /**
+     * sends a remote select. If hedging is enabled and the endpoint does not respond
+     * within its usual latency percentile, the select is sent a second time.
+     * The first response wins, the other call is aborted.
+     * The hedged call needs its own bulkhead slot and is skipped if none is free.
+     *
+     * @param builder       prepared remote execution
+     * @param serviceUrl    the remote endpoint
+     * @param bindings      number of bindings sent
+     * @param stageExecutor executor to read the results on
+     * @param abortion      receives the action to abort the pending calls
+     * @return future winning execution and its results
+     */
+    protected CompletableFuture<Map.Entry<QueryExecutor, RowSet>> selectHedged(QueryExecutorBuilder builder, String serviceUrl, int bindings, Executor stageExecutor, AtomicReference<Runnable> abortion) {
+        CompletableFuture<Map.Entry<QueryExecutor, RowSet>> result = new CompletableFuture<>();
+        List<QueryExecutor> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger pending = new AtomicInteger();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        long start = System.currentTimeMillis();
+        abortion.set(() -> {
+            cancelled.set(true);
+            result.completeExceptionally(new CancellationException("Remote service execution has been cancelled"));
+            attempts.forEach(QueryExecutor::abort);
+        });
+        Function<Bulkhead.Permit, Boolean> attempt = hedgePermit -> {
+            QueryExecutor remoteExec = builder.build();
+            attempts.add(remoteExec);
+            if (cancelled.get()) {
+                // the abortion may have missed this attempt
+                attempts.remove(remoteExec);
+                return false;
+            }
+            pending.incrementAndGet();
+            CompletableFuture<RowSet> selection = remoteExec.selectAsync(stageExecutor);
+            if (hedgePermit != null) {
+                // once decided, the remaining call is covered by the slot of the first attempt
+                selection.whenComplete((rowSet, failure) -> hedgePermit.close());
+            }
+            selection.whenComplete((rowSet, failure) -> {
+                if (failure == null) {
+                    if (result.complete(Map.entry(remoteExec, rowSet))) {
+                        getEndpointStatistics(serviceUrl).recordSuccess(bindings, System.currentTimeMillis() - start);
+                        recordOutcome(serviceUrl, true);
+                        attempts.stream().filter(other -> other != remoteExec).forEach(QueryExecutor::abort);
                     } else {
-                        keyNode = NodeFactory.createLiteral(String.valueOf(resultingBindings.size()));
-                        bb.add(idVar, keyNode);
-                        newBindings.put(keyNode, new ArrayList<>());
-                        Binding newBinding = bb.build();
-                        //bb=BindingBuilder.create(newBinding);
-                        resultingBindings.put(key, newBinding);
+                        // the other call has won
+                        remoteExec.abort();
+                    }
+                } else if (pending.decrementAndGet() == 0 && !result.isDone()) {
+                    if (!(unwrap(failure) instanceof CancellationException)) {
+                        getEndpointStatistics(serviceUrl).recordFailure(bindings);
+                        recordOutcome(serviceUrl, false);
                     }
-                    final BindingBuilder bb2 = BindingBuilder.create(originalBinding);
-                    bb2.set(idVar, keyNode);
-                    newBindings.get(keyNode).add(bb2.build());
+                    result.completeExceptionally(failure);
                 }
-                parameterSet.getRows().addAll(resultingBindings.values());
-                parameterSet.reset();
-                long timeoutMillis = config.getReadTimeout();
-                HttpClient httpClient = chooseHttpClient(serviceUrl, context);
-
-                String bindingSet = ResultSetMgr.asString(parameterSet, ResultSetLang.RS_JSON);
-                HttpRequest.Builder skillRequest = HttpRequest.newBuilder()
-                        .uri(new URI(serviceUrl))
-                        .header("Content-Type", WebContent.contentTypeResultsJSON)
-                        .timeout(Duration.ofMillis(timeoutMillis))
-                        .header("Accept", WebContent.contentTypeResultsJSON)
-                        .POST(HttpRequest.BodyPublishers.ofString(bindingSet));
-
-                if (context.isDefined(AUTH_KEY_SYMBOL)) {
-                    String authKeyProp = context.get(AUTH_KEY_SYMBOL);
-                    monitor.debug(String.format("About to use authentication header %s on http target %s", authKeyProp, serviceUrl));
-                    String authCodeProp = context.get(AUTH_CODE_SYMBOL);
-                    skillRequest = skillRequest.header(authKeyProp, authCodeProp);
+            });
+            return true;
+        };
+        attempt.apply(null);
+        long hedgeDelay = getHedgeDelay(serviceUrl);
+        if (hedgeDelay >= 0) {
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS, stageExecutor).execute(() -> {
+                if (result.isDone() || cancelled.get()) {
+                    return;
+                }
+                Bulkhead.Permit hedgePermit = tryAcquirePermit(serviceUrl);
+                if (hedgePermit == null) {
+                    monitor.debug(String.format("Not hedging the select to %s as the bulkhead is full", serviceUrl));
+                    return;
+                }
+                monitor.debug(String.format("Hedging the select to %s after %d ms", serviceUrl, hedgeDelay));
+                if (!attempt.apply(hedgePermit)) {
+                    hedgePermit.close();
                 }
+            });
+        }
+        return result;
+    }
 
-                HttpResponse<InputStream> remoteCall = httpClient.send(skillRequest.build(), HttpResponse.BodyHandlers.ofInputStream());
-                if (remoteCall.statusCode() >= 200 && remoteCall.statusCode() < 300) {
-                    ResultSet result = ResultSetMgr.read(remoteCall.body(), ResultSetLang.RS_JSON);
-                    RowSet rowSet = new RowSetAdapter(result);
-                    QueryIterator queryIterator = QueryIterPlainWrapper.create(rowSet);
-                    queryIterator = QueryIter.makeTracked(queryIterator, execCxt);
-                    return new QueryIterJoin(queryIterator, newBindings, idVar, execCxt);
-                } else {
-                    Log.warn(this, "SERVICE " + serviceUrl + " resulted in status code " + remoteCall.statusCode());
-                    remoteCall.body().close();
-                    // Return the input
-                    return QueryIterPlainWrapper.create(bindings.iterator(), execCxt);
+    /**
+     * access
+     *
+     * @param serviceUrl the remote endpoint
+     * @return number of milliseconds after which a select to the endpoint is hedged, negative if never
+     */
+    protected long getHedgeDelay(String serviceUrl) {
+        int percentile = config.getFederationHedgePercentile();
+        if (percentile <= 0) {
+            return -1;
+        }
+        ServiceStatistics statistics = getEndpointStatistics(serviceUrl);
+        if (statistics.getLatencySamples() < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+        return statistics.getLatencyPercentile(percentile / 100.0);
+    }
+
+    /**
+     * access
+     *
+     * @param serviceUrl the remote endpoint
+     * @return statistics of the remote endpoint
+     */
+    protected ServiceStatistics getEndpointStatistics(String serviceUrl) {
+        return endpointStatistics.computeIfAbsent(serviceUrl, ServiceStatistics::new);
+    }
+
+    /**
+     * access
+     *
+     * @param serviceUrl the remote endpoint
+     * @return circuit breaker of the remote endpoint, null if disabled
+     */
+    protected ServiceCircuitBreaker getCircuitBreaker(String serviceUrl) {
+        int failures = config.getFederationBreakerFailures();
+        if (failures <= 0) {
+            return null;
+        }
+        return breakers.computeIfAbsent(serviceUrl, key -> new ServiceCircuitBreaker(key, failures, config.getFederationBreakerDelay()));
+    }
+
+    /**
+     * records the outcome of a remote call at the circuit breaker of the endpoint
+     *
+     * @param serviceUrl the remote endpoint
+     * @param success    whether the call succeeded
+     */
+    protected void recordOutcome(String serviceUrl, boolean success) {
+        ServiceCircuitBreaker breaker = breakers.get(serviceUrl);
+        if (breaker != null) {
+            if (success) {
+                breaker.recordSuccess();
+            } else {
+                boolean wasOpen = breaker.getState() == ServiceCircuitBreaker.State.OPEN;
+                breaker.recordFailure();
+                if (!wasOpen && breaker.getState() == ServiceCircuitBreaker.State.OPEN) {
+                    monitor.warning(String.format("Circuit of service %s has been opened", serviceUrl));
                 }
-            } catch (URISyntaxException | IOException | InterruptedException | RuntimeException ex) {
-                if (silent) {
-                    Log.warn(this, "SERVICE " + serviceUrl + " : " + ex.getMessage());
-                    // Return the input
-                    return QueryIterPlainWrapper.create(bindings.iterator(), execCxt);
+            }
+        }
+    }
+
+    /**
+     * runs the given task on the executor, such that cancelling the
+     * resulting future interrupts the task
+     *
+     * @param task     the task to run
+     * @param executor the executor to run the task on
+     * @return future result of the task
+     */
+    protected static <T> CompletableFuture<T> supplyInterruptibly(Callable<T> task, Executor executor) {
+        AtomicReference<FutureTask<T>> running = new AtomicReference<>();
+        CompletableFuture<T> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                FutureTask<T> futureTask = running.get();
+                if (futureTask != null) {
+                    futureTask.cancel(true);
+                }
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        FutureTask<T> futureTask = new FutureTask<>(task) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    result.cancel(false);
+                    return;
+                }
+                try {
+                    result.complete(get());
+                } catch (ExecutionException e) {
+                    result.completeExceptionally(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    result.completeExceptionally(e);
                 }
-                throw new RuntimeException("Could not invoke remote skill", ex);
             }
+        };
+        running.set(futureTask);
+        try {
+            executor.execute(futureTask);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * access
+     *
+     * @param failure a failure reported by a future
+     * @return the original cause of the failure
+     */
+    protected static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException) && failure.getCause() != null) {
+            failure = failure.getCause();
         }
+        return failure;
     }
 
     /**
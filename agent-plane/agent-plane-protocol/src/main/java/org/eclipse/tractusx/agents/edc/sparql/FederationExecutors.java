@@ -0,0 +1,86 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory for the execution lane of federated calls.
+ * Virtual threads are looked up reflectively, such that the agent still
+ * compiles and runs on runtimes which do not offer them.
+ */
+public class FederationExecutors {
+
+    /**
+     * utility class
+     */
+    private FederationExecutors() {
+    }
+
+    /**
+     * creates the executor on which remote service invocations and negotiations run
+     *
+     * @param config   agent config
+     * @param monitor  logging subsystem
+     * @param fallback executor to use if no dedicated lane is configured or possible
+     * @return a dedicated virtual-thread executor or the fallback
+     */
+    public static ExecutorService create(AgentConfig config, Monitor monitor, ExecutorService fallback) {
+        if (!config.isFederationVirtualThreads()) {
+            return fallback;
+        }
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            monitor.info("Federated calls will run on virtual threads");
+            return virtual;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            monitor.warning(String.format("Virtual threads are not supported by this runtime (%s). Federated calls will share the agent thread pool.", Runtime.version()));
+            return fallback;
+        }
+    }
+
+    /**
+     * creates the executor for tasks which block while waiting for federated calls
+     * (such as the branches of a concurrent union). These must not run on a bounded pool
+     * which also runs the calls, otherwise they could occupy all of its threads.
+     * The own pool does not queue: tasks are rejected while all of its threads are busy
+     * and are then run by the caller.
+     *
+     * @param config            agent config
+     * @param federationService the execution lane of federated calls
+     * @param shared            the agent thread pool
+     * @return the (virtual-thread) lane if it is dedicated, otherwise a bounded pool of daemon threads
+     */
+    public static ExecutorService createBlocking(AgentConfig config, ExecutorService federationService, ExecutorService shared) {
+        if (federationService != shared) {
+            return federationService;
+        }
+        return new ThreadPoolExecutor(0, Math.max(1, config.getFederationBranchThreads()), 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "cx-agent-federation-branch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
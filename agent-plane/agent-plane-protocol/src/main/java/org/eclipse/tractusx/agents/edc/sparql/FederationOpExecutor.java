@@ -0,0 +1,149 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpOrder;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.op.OpTopN;
+import org.apache.jena.sparql.algebra.op.OpUnion;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.main.OpExecutor;
+import org.apache.jena.sparql.engine.main.OpExecutorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * an operator executor which runs the independent service branches
+ * of unions (such as asking all suppliers) concurrently. Ordered
+ * unions merge the (remotely sorted) results of their branches.
+ */
+public class FederationOpExecutor extends OpExecutor {
+
+    protected final ExecutorService executor;
+    protected final int maxBranches;
+
+    /**
+     * creates a new operator executor
+     *
+     * @param execCxt     the execution context
+     * @param executor    executor for the service branches
+     * @param maxBranches maximal number of service branches of a union running at the same time
+     */
+    protected FederationOpExecutor(ExecutionContext execCxt, ExecutorService executor, int maxBranches) {
+        super(execCxt);
+        this.executor = executor;
+        this.maxBranches = maxBranches;
+    }
+
+    /**
+     * creates a factory for federation executors
+     *
+     * @param executor    executor for the service branches
+     * @param maxBranches maximal number of service branches of a union running at the same time
+     * @return operator executor factory
+     */
+    public static OpExecutorFactory factory(ExecutorService executor, int maxBranches) {
+        return execCxt -> new FederationOpExecutor(execCxt, executor, maxBranches);
+    }
+
+    /**
+     * executes the service branches of a union concurrently
+     *
+     * @param opUnion the union
+     * @param input   the input bindings
+     * @return union iterator
+     */
+    @Override
+    protected QueryIterator execute(OpUnion opUnion, QueryIterator input) {
+        List<Op> branches = flattenUnion(opUnion);
+        List<Op> remoteBranches = new ArrayList<>();
+        List<Op> localBranches = new ArrayList<>();
+        for (Op branch : branches) {
+            if (isRemote(branch)) {
+                remoteBranches.add(branch);
+            } else {
+                localBranches.add(branch);
+            }
+        }
+        if (maxBranches <= 1 || remoteBranches.isEmpty() || branches.size() < 2) {
+            return super.execute(opUnion, input);
+        }
+        return new QueryIterParallelUnion(input, remoteBranches, localBranches, execCxt, executor, maxBranches);
+    }
+
+    /**
+     * merges the sorted service branches of an ordered union
+     *
+     * @param opOrder the order
+     * @param input   the input bindings
+     * @return ordered iterator
+     */
+    @Override
+    protected QueryIterator execute(OpOrder opOrder, QueryIterator input) {
+        QueryIterator merged = executeSortMerge(opOrder.getSubOp(), opOrder.getConditions(), Query.NOLIMIT, input);
+        return merged != null ? merged : super.execute(opOrder, input);
+    }
+
+    /**
+     * merges the top results of the service branches of an ordered union
+     *
+     * @param opTop the top-k operator
+     * @param input the input bindings
+     * @return ordered iterator
+     */
+    @Override
+    protected QueryIterator execute(OpTopN opTop, QueryIterator input) {
+        QueryIterator merged = executeSortMerge(opTop.getSubOp(), opTop.getConditions(), opTop.getLimit(), input);
+        return merged != null ? merged : super.execute(opTop, input);
+    }
+
+    /**
+     * sort-merges a union with service branches
+     *
+     * @param op         the ordered operator
+     * @param conditions the order
+     * @param limit      maximal number of results, Query.NOLIMIT if unlimited
+     * @param input      the input bindings
+     * @return merging iterator, null if the operator is not a union with service branches
+     */
+    protected QueryIterator executeSortMerge(Op op, List<SortCondition> conditions, long limit, QueryIterator input) {
+        if (maxBranches <= 1 || !(op instanceof OpUnion)) {
+            return null;
+        }
+        List<Op> branches = flattenUnion((OpUnion) op);
+        if (branches.stream().noneMatch(FederationOpExecutor::isRemote)) {
+            return null;
+        }
+        return new QueryIterSortMerge(input, branches, conditions, limit, execCxt, executor, maxBranches);
+    }
+
+    /**
+     * checks whether a branch should be executed concurrently
+     *
+     * @param branch the branch
+     * @return whether the branch is a service call
+     */
+    public static boolean isRemote(Op branch) {
+        return branch instanceof OpService;
+    }
+}
@@ -0,0 +1,177 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Keeps track of the federated calls which have been started on behalf
+ * of a single query. Closing the scope (at the end of the query) cancels
+ * all calls which are still outstanding, so that no work outlives its query.
+ * The scope also keeps the remote query templates which are compiled once per query
+ * and the join modes which the optimizer has chosen for the services of the query.
+ * Cancelling the scope (on behalf of the client) additionally aborts the local execution.
+ */
+public class FederationScope implements AutoCloseable {
+
+    public static final Symbol SCOPE_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#federationScope");
+
+    protected final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+    protected final Map<Object, Object> templates = new ConcurrentHashMap<>();
+    protected final Map<String, ServiceJoinMode> joinModes = new ConcurrentHashMap<>();
+    protected final List<Runnable> aborts = new CopyOnWriteArrayList<>();
+    protected volatile boolean closed;
+    protected volatile boolean cancelled;
+
+    /**
+     * opens a new scope in the given context
+     *
+     * @param context query context
+     * @return the new scope
+     */
+    public static FederationScope open(Context context) {
+        FederationScope scope = new FederationScope();
+        context.set(SCOPE_SYMBOL, scope);
+        return scope;
+    }
+
+    /**
+     * access
+     *
+     * @param context query context
+     * @return the scope of the query, null if none has been opened
+     */
+    public static FederationScope get(Context context) {
+        return context.get(SCOPE_SYMBOL);
+    }
+
+    /**
+     * registers an outstanding call
+     *
+     * @param future the call
+     * @param <T> type of the call result
+     * @return the call
+     */
+    public <T> CompletableFuture<T> register(CompletableFuture<T> future) {
+        pending.add(future);
+        future.whenComplete((result, failure) -> pending.remove(future));
+        if (closed) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * access a template which is compiled at most once per query
+     *
+     * @param key      identifies the template (such as the remote operator and the bound variables)
+     * @param compiler compiles the template if it has not yet been compiled
+     * @param <T> type of the template
+     * @return the compiled template
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getTemplate(Object key, Function<Object, T> compiler) {
+        return (T) templates.computeIfAbsent(key, compiler);
+    }
+
+    /**
+     * sets the join mode of a service pattern
+     *
+     * @param opService the (unbound) service operator
+     * @param mode      the join mode
+     */
+    public void setJoinMode(OpService opService, ServiceJoinMode mode) {
+        joinModes.put(FederationStatistics.key(opService), mode);
+    }
+
+    /**
+     * access
+     *
+     * @param opService the (unbound) service operator
+     * @return the join mode of the service pattern, bind join if none has been chosen
+     */
+    public ServiceJoinMode getJoinMode(OpService opService) {
+        return joinModes.getOrDefault(FederationStatistics.key(opService), ServiceJoinMode.BIND);
+    }
+
+    /**
+     * access
+     *
+     * @return number of outstanding calls
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * access
+     *
+     * @return whether the scope has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * registers an action which aborts the local execution of the query
+     *
+     * @param abort the action, run immediately if the scope has already been cancelled
+     */
+    public void onCancel(Runnable abort) {
+        aborts.add(abort);
+        if (cancelled) {
+            abort.run();
+        }
+    }
+
+    /**
+     * access
+     *
+     * @return whether the query has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * aborts the local execution and cancels all outstanding calls
+     */
+    public void cancel() {
+        cancelled = true;
+        aborts.forEach(Runnable::run);
+        close();
+    }
+
+    /**
+     * cancels all outstanding calls
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending.forEach(future -> future.cancel(true));
+    }
+}
@@ -0,0 +1,92 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.sparql.util.Symbol;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Observed statistics (latencies and result cardinalities) per service pattern,
+ * i.e., per service address (or variable) and sub-pattern. They are recorded
+ * by the {@link DataspaceServiceExecutor} and used by the {@link OptimizeJoinStrategy}
+ * to run the most selective services first. The statistics are shared by all
+ * queries of a processor and are handed over in the query context.
+ */
+public class FederationStatistics {
+
+    public static final Symbol STATISTICS_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#federationStatistics");
+
+    /**
+     * maximal number of patterns to remember (least recently used)
+     */
+    public static final int MAX_PATTERNS = 1024;
+
+    protected final Map<String, ServiceStatistics> patterns = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ServiceStatistics> eldest) {
+            return size() > MAX_PATTERNS;
+        }
+    });
+
+    /**
+     * access
+     *
+     * @param context query context
+     * @return the statistics handed over in the context, null if there are none
+     */
+    public static FederationStatistics get(Context context) {
+        return context == null ? null : context.get(STATISTICS_SYMBOL);
+    }
+
+    /**
+     * computes the key of a service pattern
+     *
+     * @param opService the (unbound) service operator
+     * @return key of the pattern
+     */
+    public static String key(OpService opService) {
+        return opService.getService().toString() + "#" + Integer.toHexString(opService.getSubOp().hashCode());
+    }
+
+    /**
+     * access the statistics of a pattern
+     *
+     * @param opService the (unbound) service operator
+     * @return statistics of the pattern, null if nothing has been recorded yet
+     */
+    public ServiceStatistics find(OpService opService) {
+        return patterns.get(key(opService));
+    }
+
+    /**
+     * access the statistics of a pattern in order to record them
+     *
+     * @param opService the (unbound) service operator
+     * @return statistics of the pattern
+     */
+    public ServiceStatistics record(OpService opService) {
+        String key = key(opService);
+        synchronized (patterns) {
+            return patterns.computeIfAbsent(key, ServiceStatistics::new);
+        }
+    }
+}
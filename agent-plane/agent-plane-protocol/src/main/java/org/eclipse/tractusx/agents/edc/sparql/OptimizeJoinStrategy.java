@@ -17,22 +17,86 @@
 package org.eclipse.tractusx.agents.edc.sparql;
 
 import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
 import org.apache.jena.sparql.algebra.op.OpGraph;
 import org.apache.jena.sparql.algebra.op.OpJoin;
 import org.apache.jena.sparql.algebra.op.OpSequence;
 import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.op.OpTable;
 import org.apache.jena.sparql.algebra.op.OpUnion;
 import org.apache.jena.sparql.algebra.optimize.TransformJoinStrategy;
+import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.main.JoinClassifier;
+import org.apache.jena.sparql.util.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * a modified default join strategy which will always linearize right-hand
  * service and union calls in order to obtain bindings from the
  * left part.
+ * If statistics are available (and ordering is enabled), consecutive services of a sequence are ordered
+ * such that the most selective service (fewest results per binding) runs first
+ * and drives the bind join of the others. Independent of the ordering, the statistics decide whether
+ * a service is bind-joined or whether its (small) pattern is fetched once and
+ * joined locally (see {@link ServiceJoinMode}).
  * TODO improve to find independent/asynchronous calls which should be parallelized (cross-join case)
  */
 public class OptimizeJoinStrategy extends TransformJoinStrategy {
 
+    public static final Symbol ORDERING_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#federationOrdering");
+
+    protected final FederationStatistics statistics;
+    protected final boolean ordering;
+    protected final FederationScope scope;
+    protected final long hashJoinLimit;
+
+    /**
+     * creates a join strategy in syntactic order
+     */
+    public OptimizeJoinStrategy() {
+        this(null);
+    }
+
+    /**
+     * creates a cost-based join strategy
+     *
+     * @param statistics observed service statistics, may be null
+     */
+    public OptimizeJoinStrategy(FederationStatistics statistics) {
+        this(statistics, null, 0);
+    }
+
+    /**
+     * creates a cost-based join strategy which also chooses the join modes of the services
+     *
+     * @param statistics    observed service statistics, may be null
+     * @param scope         receives the join modes of the services, may be null
+     * @param hashJoinLimit maximal number of results of a service pattern to join locally
+     */
+    public OptimizeJoinStrategy(FederationStatistics statistics, FederationScope scope, long hashJoinLimit) {
+        this(statistics, true, scope, hashJoinLimit);
+    }
+
+    /**
+     * creates a join strategy which chooses the join modes of the services and
+     * (optionally) orders them by their selectivity
+     *
+     * @param statistics    observed service statistics, may be null
+     * @param ordering      whether consecutive services should be reordered
+     * @param scope         receives the join modes of the services, may be null
+     * @param hashJoinLimit maximal number of results of a service pattern to join locally
+     */
+    public OptimizeJoinStrategy(FederationStatistics statistics, boolean ordering, FederationScope scope, long hashJoinLimit) {
+        this.statistics = statistics;
+        this.ordering = ordering;
+        this.scope = scope;
+        this.hashJoinLimit = hashJoinLimit;
+    }
+
     /**
      * implement the federated join strategy
      *
@@ -47,18 +111,235 @@ public class OptimizeJoinStrategy extends TransformJoinStrategy {
         if (!canDoLinear) {
             if (right instanceof OpService || right instanceof OpUnion) {
                 // join no-matter what with a service or a union
-                return OpSequence.create(left, right);
+                return sequence(left, right);
             }
             if (left instanceof OpService || left instanceof OpGraph) {
                 // join no matter after service and graph calls
-                return OpSequence.create(left, right);
+                return sequence(left, right);
             }
             if (left instanceof OpSequence && right instanceof OpSequence) {
                 // join two sequences
-                return OpSequence.create(left, right);
+                return sequence(left, right);
             }
         }
         // default transform
-        return super.transform(opJoin, left, right);
+        return reorder(super.transform(opJoin, left, right));
+    }
+
+    /**
+     * reorders existing sequences
+     *
+     * @param opSequence operator to optimize
+     * @param elts       transformed elements
+     * @return transformed sequence operator
+     */
+    @Override
+    public Op transform(OpSequence opSequence, List<Op> elts) {
+        return reorder(super.transform(opSequence, elts));
+    }
+
+    /**
+     * creates a sequence
+     *
+     * @param left  first part
+     * @param right second part
+     * @return the (possibly reordered) sequence
+     */
+    protected Op sequence(Op left, Op right) {
+        return reorder(OpSequence.create(left, right));
+    }
+
+    /**
+     * orders the runs of consecutive services in a sequence by their selectivity
+     * and chooses their join modes
+     *
+     * @param op operator to reorder
+     * @return reordered operator
+     */
+    protected Op reorder(Op op) {
+        if (statistics == null || !(op instanceof OpSequence)) {
+            return op;
+        }
+        List<Op> elements = new ArrayList<>();
+        flatten((OpSequence) op, elements);
+        List<Op> ordered = new ArrayList<>(elements.size());
+        int pos = 0;
+        while (pos < elements.size()) {
+            int end = pos;
+            while (end < elements.size() && elements.get(end) instanceof OpService) {
+                end++;
+            }
+            if (end == pos) {
+                ordered.add(elements.get(pos++));
+            } else if (!ordering) {
+                ordered.addAll(elements.subList(pos, end));
+                pos = end;
+            } else {
+                ordered.addAll(orderServices(elements.subList(pos, end)));
+                pos = end;
+            }
+        }
+        planJoins(ordered);
+        if (ordered.equals(elements)) {
+            return op;
+        }
+        OpSequence result = OpSequence.create();
+        ordered.forEach(result::add);
+        return result;
+    }
+
+    /**
+     * collects the elements of nested sequences
+     *
+     * @param sequence the sequence
+     * @param elements receives the elements
+     */
+    protected static void flatten(OpSequence sequence, List<Op> elements) {
+        for (Op element : sequence.getElements()) {
+            if (element instanceof OpSequence) {
+                flatten((OpSequence) element, elements);
+            } else {
+                elements.add(element);
+            }
+        }
+    }
+
+    /**
+     * orders consecutive services greedily by their results per binding. A service
+     * is only moved before another one if it does not depend on the variables which
+     * the other one produces (such as a service variable or a variable which is only filtered).
+     * The order stays as is if there are services without statistics.
+     *
+     * @param services the consecutive services
+     * @return ordered services
+     */
+    protected List<Op> orderServices(List<Op> services) {
+        if (services.size() < 2) {
+            return services;
+        }
+        double[] costs = new double[services.size()];
+        Set<Var> produced = new HashSet<>();
+        List<Set<Var>> required = new ArrayList<>(services.size());
+        for (int index = 0; index < services.size(); index++) {
+            OpService service = (OpService) services.get(index);
+            ServiceStatistics serviceStatistics = statistics.find(service);
+            if (serviceStatistics == null || serviceStatistics.getResultSamples() == 0) {
+                return services;
+            }
+            costs[index] = serviceStatistics.getResultsPerBinding();
+            produced.addAll(OpVars.visibleVars(service.getSubOp()));
+            required.add(getRequiredVars(service));
+        }
+        List<Op> ordered = new ArrayList<>(services.size());
+        boolean[] placed = new boolean[services.size()];
+        Set<Var> bound = new HashSet<>();
+        while (ordered.size() < services.size()) {
+            int best = -1;
+            for (int index = 0; index < services.size(); index++) {
+                if (!placed[index] && isReady(required.get(index), produced, bound) && (best < 0 || costs[index] < costs[best])) {
+                    best = index;
+                }
+            }
+            if (best < 0) {
+                // circular dependencies, keep the syntactic order
+                return services;
+            }
+            placed[best] = true;
+            ordered.add(services.get(best));
+            bound.addAll(OpVars.visibleVars(((OpService) services.get(best)).getSubOp()));
+        }
+        return ordered;
+    }
+
+    /**
+     * checks whether a service may run now
+     *
+     * @param required variables the service depends on
+     * @param produced variables produced by the services to order
+     * @param bound    variables produced by the services already ordered
+     * @return whether all dependencies are satisfied
+     */
+    protected static boolean isReady(Set<Var> required, Set<Var> produced, Set<Var> bound) {
+        for (Var var : required) {
+            if (produced.contains(var) && !bound.contains(var)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * computes the variables which a service needs from its input, i.e. a service variable
+     * and the variables which the pattern mentions (e.g. in filters) but does not produce
+     *
+     * @param service the service
+     * @return the required variables
+     */
+    protected static Set<Var> getRequiredVars(OpService service) {
+        Set<Var> mentioned = new HashSet<>(OpVars.mentionedVars(service.getSubOp()));
+        if (service.getService().isVariable()) {
+            mentioned.add(Var.alloc(service.getService()));
+        }
+        mentioned.removeAll(OpVars.visibleVars(service.getSubOp()));
+        return mentioned;
+    }
+
+    /**
+     * chooses the join modes of the services in a sequence. The input cardinality
+     * of each service is estimated from the preceding elements.
+     *
+     * @param elements the (flattened) sequence
+     */
+    protected void planJoins(List<Op> elements) {
+        if (scope == null || hashJoinLimit <= 0) {
+            return;
+        }
+        // a sequence starts with a single (empty) binding, negative means unknown
+        double input = 1;
+        for (Op element : elements) {
+            if (element instanceof OpService) {
+                OpService service = (OpService) element;
+                ServiceStatistics serviceStatistics = statistics.find(service);
+                scope.setJoinMode(service, chooseJoinMode(service, serviceStatistics, input));
+                if (input >= 0 && serviceStatistics != null && serviceStatistics.getResultSamples() > 0) {
+                    input = input * serviceStatistics.getResultsPerBinding();
+                } else {
+                    input = -1;
+                }
+            } else if (element instanceof OpTable && input >= 0) {
+                input = input * ((OpTable) element).getTable().size();
+            } else {
+                // local patterns of unknown cardinality
+                input = -1;
+            }
+        }
+    }
+
+    /**
+     * chooses the join mode of a service. Only services with a fixed address whose pattern does
+     * not depend on its input may be fetched once. This pays off if the pattern is known to
+     * be small and there are more input bindings than pattern results. If the size of
+     * the pattern is not yet known, we try to fetch it after the first batch.
+     *
+     * @param service           the service
+     * @param serviceStatistics the statistics of the service pattern, may be null
+     * @param input             the estimated number of input bindings, negative if unknown
+     * @return the join mode
+     */
+    protected ServiceJoinMode chooseJoinMode(OpService service, ServiceStatistics serviceStatistics, double input) {
+        if (!service.getService().isURI() || !getRequiredVars(service).isEmpty()) {
+            return ServiceJoinMode.BIND;
+        }
+        long fullResults = serviceStatistics == null ? -1 : serviceStatistics.getFullResults();
+        if (fullResults > hashJoinLimit) {
+            return ServiceJoinMode.BIND;
+        }
+        if (fullResults >= 0) {
+            if (input < 0) {
+                return ServiceJoinMode.HYBRID;
+            }
+            return input >= fullResults ? ServiceJoinMode.HASH : ServiceJoinMode.BIND;
+        }
+        return input >= 0 && input < hashJoinLimit ? ServiceJoinMode.BIND : ServiceJoinMode.HYBRID;
     }
 }
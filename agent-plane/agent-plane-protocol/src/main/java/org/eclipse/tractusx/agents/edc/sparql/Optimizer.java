@@ -25,6 +25,9 @@ import org.apache.jena.sparql.util.Context;
  * of federation-important sparql constructs better at the level of joins
  */
 public class Optimizer extends OptimizerStd {
+
+    protected final Context context;
+
     /**
      * Create a new optimizer
      *
@@ -32,6 +35,7 @@ public class Optimizer extends OptimizerStd {
      */
     public Optimizer(Context context) {
         super(context);
+        this.context = context;
     }
 
     /**
@@ -42,7 +46,13 @@ public class Optimizer extends OptimizerStd {
      */
     @Override
     protected Op transformJoinStrategy(Op op) {
-        return apply("Federated Index Join strategy", new OptimizeJoinStrategy(), op);
+        // the join strategy should already see (and record the statistics of) the pushed down services
+        if (context.isTrue(ServicePushdown.PUSHDOWN_SYMBOL)) {
+            op = new ServicePushdown(context.isTrue(ServicePushdown.AGGREGATES_SYMBOL)).rewrite(op);
+        }
+        return apply("Federated Index Join strategy", new OptimizeJoinStrategy(FederationStatistics.get(context),
+                !context.isFalse(OptimizeJoinStrategy.ORDERING_SYMBOL), FederationScope.get(context),
+                context.get(DataspaceServiceExecutor.HASH_JOIN_SYMBOL, 0L)), op);
     }
 
 }
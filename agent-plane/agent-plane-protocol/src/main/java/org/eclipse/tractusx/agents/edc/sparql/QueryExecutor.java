@@ -28,6 +28,7 @@ import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.lib.InternalErrorException;
 import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.http.HttpEnv;
@@ -61,13 +62,14 @@ import org.apache.jena.sparql.exec.http.Params;
 import org.apache.jena.sparql.exec.http.QuerySendMode;
 import org.apache.jena.sparql.util.Context;
 import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.eclipse.tractusx.agents.edc.http.CompressionFilter;
+import org.eclipse.tractusx.agents.edc.http.HttpUtils;
+import org.eclipse.tractusx.agents.edc.http.transfer.MultipartReader;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
@@ -79,7 +81,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.apache.jena.http.HttpLib.acceptHeader;
@@ -125,6 +131,8 @@ public class QueryExecutor implements QueryExec {
     private final Context context;
     private final ObjectMapper objectMapper;
     private final AgentConfig agentConfig;
+    // whether the target is an agent which accepts compressed query bodies
+    private final boolean compressBody;
 
     // Params
     private final Params params;
@@ -136,7 +144,8 @@ public class QueryExecutor implements QueryExec {
     private final List<String> defaultGraphUris;
     private final List<String> namedGraphUris;
 
-    private boolean closed = false;
+    // may be set by an abort from another thread
+    private volatile boolean closed = false;
 
     // Timeout of query execution.
     private final long readTimeout;
@@ -152,7 +161,9 @@ public class QueryExecutor implements QueryExec {
 
     // Releasing HTTP input streams is important. We remember this for SELECT result
     // set streaming, and will close it when the execution is closed
-    private InputStream retainedConnection = null;
+    private volatile InputStream retainedConnection = null;
+    // Asynchronous call which is still waiting for a response
+    private volatile Future<?> pendingCall = null;
 
     private final HttpClient httpClient;
     private Map<String, String> httpHeaders;
@@ -161,7 +172,7 @@ public class QueryExecutor implements QueryExec {
                          HttpClient httpClient, Map<String, String> httpHeaders, Params params, Context context,
                          List<String> defaultGraphUris, List<String> namedGraphUris,
                          QuerySendMode sendMode, String explicitAcceptHeader,
-                         long timeout, TimeUnit timeoutUnit, ObjectMapper objectMapper, AgentConfig agentConfig) {
+                         long timeout, TimeUnit timeoutUnit, ObjectMapper objectMapper, AgentConfig agentConfig, boolean compressBody) {
         this.context = context;
         this.service = serviceUrl;
         this.query = query;
@@ -186,6 +197,7 @@ public class QueryExecutor implements QueryExec {
         this.httpClient = HttpLib.dft(httpClient, HttpEnv.getDftHttpClient());
         this.objectMapper = objectMapper;
         this.agentConfig = agentConfig;
+        this.compressBody = compressBody;
     }
 
     @Override
@@ -195,11 +207,50 @@ public class QueryExecutor implements QueryExec {
         return execRowSet();
     }
 
+    /**
+     * asynchronous variant of select which does not block any
+     * thread while waiting for the remote side to respond
+     *
+     * @param executor executor to read the response on
+     * @return future row set
+     */
+    public CompletableFuture<RowSet> selectAsync(Executor executor) {
+        checkNotClosed();
+        check(QueryType.SELECT);
+        // Use the explicitly given header or the default selectAcceptheader
+        String thisAcceptHeader = dft(appProvidedAcceptHeader, selectAcceptheader);
+        HttpRequest request = prepareRequest(thisAcceptHeader);
+        CompletableFuture<HttpResponse<InputStream>> call = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        pendingCall = call;
+        return call.handleAsync((response, failure) -> {
+            pendingCall = null;
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                if (cause instanceof IOException) {
+                    throw new HttpException(request.method() + " " + request.uri().toString(), cause);
+                }
+                throw new CompletionException(cause);
+            }
+            if (closed) {
+                // aborted while waiting, drop the connection
+                try {
+                    response.body().close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                throw new CancellationException("HTTP execution aborted");
+            }
+            return toRowSet(processResponse(request, response));
+        }, executor);
+    }
+
     private RowSet execRowSet() {
         // Use the explicitly given header or the default selectAcceptheader
         String thisAcceptHeader = dft(appProvidedAcceptHeader, selectAcceptheader);
+        return toRowSet(performQuery(thisAcceptHeader));
+    }
 
-        Map.Entry<String, InputStream> response = performQuery(thisAcceptHeader);
+    private RowSet toRowSet(Map.Entry<String, InputStream> response) {
         InputStream in = response.getValue();
         // Don't assume the endpoint actually gives back the content type we asked for
         String actualContentType = response.getKey();
@@ -208,6 +259,11 @@ public class QueryExecutor implements QueryExec {
         actualContentType = removeCharset(actualContentType);
 
         retainedConnection = in; // This will be closed on close()
+        if (closed) {
+            // aborted before the connection could be retained
+            dropConnection();
+            throw new CancellationException("HTTP execution aborted");
+        }
 
         // Map to lang, with pragmatic alternatives.
         Lang lang = WebContent.contentTypeToLangResultSet(actualContentType);
@@ -467,6 +523,10 @@ public class QueryExecutor implements QueryExec {
      * Use {@link HttpLib#getInputStream} to access the body.
      */
     private Map.Entry<String, InputStream> performQuery(String reqAcceptHeader) {
+        return executeQuery(prepareRequest(reqAcceptHeader));
+    }
+
+    private HttpRequest prepareRequest(String reqAcceptHeader) {
         if (closed) {
             throw new ARQException("HTTP execution already closed");
         }
@@ -487,9 +547,7 @@ public class QueryExecutor implements QueryExec {
 
         HttpLib.modifyByService(service, context, thisParams, httpHeaders);
 
-        HttpRequest request = makeRequest(thisParams, reqAcceptHeader);
-
-        return executeQuery(request);
+        return makeRequest(thisParams, reqAcceptHeader);
     }
 
     private HttpRequest makeRequest(Params thisParams, String reqAcceptHeader) {
@@ -513,8 +571,11 @@ public class QueryExecutor implements QueryExec {
     }
 
     private Map.Entry<String, InputStream> executeQuery(HttpRequest request) {
+        return processResponse(request, execute(httpClient, request));
+    }
+
+    private Map.Entry<String, InputStream> processResponse(HttpRequest request, HttpResponse<InputStream> response) {
         try {
-            HttpResponse<InputStream> response = execute(httpClient, request);
             String contentType = responseHeader(response, HttpNames.hContentType);
             InputStream inputStream = new BufferedInputStream(HttpLib.getInputStream(response));
             inputStream.mark(2);
@@ -522,63 +583,24 @@ public class QueryExecutor implements QueryExec {
             int all = inputStream.read(boundaryBytes);
             String boundary = new String(boundaryBytes);
             inputStream.reset();
-            Optional<String> warnings = response.headers().firstValue("cx_warnings");
             if (all == boundaryBytes.length && contentType.startsWith("multipart/form-data") || "--".equals(boundary)) {
                 int boundaryIndex = contentType.indexOf(";boundary=");
                 if (boundaryIndex >= 0) {
                     boundary = boundary + contentType.substring(boundaryIndex + 10);
                 }
-                StringBuilder nextPart = null;
-                String embeddedContentType = null;
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                        if (boundary.equals(line)) {
-                            if (nextPart != null && embeddedContentType != null) {
-                                if (embeddedContentType.equals("application/cx-warnings+json")) {
-                                    warnings = Optional.of(nextPart.toString());
-                                } else {
-                                    inputStream = new ByteArrayInputStream(nextPart.toString().getBytes());
-                                    contentType = embeddedContentType;
-                                }
-                            }
-                            nextPart = new StringBuilder();
-                            String contentLine = reader.readLine();
-                            if (contentLine != null && contentLine.startsWith("Content-Type: ")) {
-                                embeddedContentType = contentLine.substring(14);
-                            } else {
-                                embeddedContentType = null;
-                            }
-                        } else if (nextPart != null) {
-                            nextPart.append(line);
-                            nextPart.append("\n");
-                        }
-                    }
-                }
-                if (nextPart != null && embeddedContentType != null) {
-                    if (embeddedContentType.equals("application/cx-warnings+json")) {
-                        warnings = Optional.of(nextPart.toString());
-                    } else {
-                        inputStream = new ByteArrayInputStream(nextPart.toString().getBytes());
-                        contentType = embeddedContentType;
-                    }
-                }
-            }
-            if (warnings.isPresent()) {
-                List<CatenaxWarning> yetWarnings = CatenaxWarning.getOrSetWarnings(context);
-                try {
-                    List<CatenaxWarning> newWarnings = objectMapper.readValue(warnings.get(), new TypeReference<>() {
-                    });
-                    yetWarnings.addAll(newWarnings);
-                } catch (JsonProcessingException e) {
-                    CatenaxWarning newWarning = new CatenaxWarning();
-                    newWarning.setSourceTenant(agentConfig.getControlPlaneIdsUrl());
-                    newWarning.setSourceAsset(agentConfig.getDefaultAsset());
-                    newWarning.setTargetTenant(request.uri().toString());
-                    newWarning.setTargetAsset(request.uri().toString());
-                    newWarning.setContext(String.valueOf(context.hashCode()));
-                    newWarning.setProblem("Could not deserialize embedded warnings.");
-                    yetWarnings.add(newWarning);
+                // stream the (binary-safe) result part, embedded warnings are collected on the side
+                MultipartReader reader = MultipartReader.forWarnings(inputStream, boundary,
+                        (type, body) -> addWarnings(request, new String(body, StandardCharsets.UTF_8)));
+                MultipartReader.Part part = reader.nextPart();
+                if (part != null) {
+                    inputStream = part;
+                    contentType = part.getContentType();
+                } else {
+                    reader.close();
+                    inputStream = new ByteArrayInputStream(new byte[0]);
                 }
+            } else {
+                response.headers().firstValue("cx_warnings").ifPresent(warnings -> addWarnings(request, warnings));
             }
             int httpStatusCode = response.statusCode();
             if (httpStatusCode < 200 || httpStatusCode > 299) {
@@ -591,6 +613,30 @@ public class QueryExecutor implements QueryExec {
         }
     }
 
+    /**
+     * adds the warnings of a remote agent to the context
+     *
+     * @param request the remote request
+     * @param warnings json array of warnings
+     */
+    private void addWarnings(HttpRequest request, String warnings) {
+        List<CatenaxWarning> yetWarnings = CatenaxWarning.getOrSetWarnings(context);
+        try {
+            List<CatenaxWarning> newWarnings = objectMapper.readValue(warnings, new TypeReference<>() {
+            });
+            yetWarnings.addAll(newWarnings);
+        } catch (JsonProcessingException e) {
+            CatenaxWarning newWarning = new CatenaxWarning();
+            newWarning.setSourceTenant(agentConfig.getControlPlaneIdsUrl());
+            newWarning.setSourceAsset(agentConfig.getDefaultAsset());
+            newWarning.setTargetTenant(request.uri().toString());
+            newWarning.setTargetAsset(request.uri().toString());
+            newWarning.setContext(String.valueOf(context.hashCode()));
+            newWarning.setProblem("Could not deserialize embedded warnings.");
+            yetWarnings.add(newWarning);
+        }
+    }
+
     private QuerySendMode actualSendMode() {
         switch (sendMode) {
             case asGetAlways:
@@ -650,32 +696,69 @@ public class QueryExecutor implements QueryExec {
         HttpRequest.Builder builder = HttpLib.requestBuilder(requestUrl, httpHeaders, readTimeout, readTimeoutUnit);
         contentTypeHeader(builder, QUERY_MIME_TYPE);
         acceptHeader(builder, acceptHeader);
-        return builder.POST(BodyPublishers.ofString(queryString));
+        byte[] body = queryString.getBytes(StandardCharsets.UTF_8);
+        if (compressBody && agentConfig != null && agentConfig.isFederationCompression() && body.length >= agentConfig.getFederationCompressionMin()) {
+            try {
+                body = HttpUtils.gzip(body);
+                builder.header(HttpNames.hContentEncoding, CompressionFilter.GZIP_ENCODING);
+            } catch (IOException e) {
+                throw new QueryExecException("Could not compress query body", e);
+            }
+        }
+        return builder.POST(BodyPublishers.ofByteArray(body));
     }
 
+    /**
+     * aborts the execution by dropping the connection
+     * without trying to consume the remaining response
+     */
     @Override
     public void abort() {
-        try {
-            close();
-        } catch (Exception ex) {
-            Log.warn(this, "Error during abort", ex);
+        closed = true;
+        Future<?> call = pendingCall;
+        pendingCall = null;
+        if (call != null) {
+            call.cancel(true);
+        }
+        dropConnection();
+    }
+
+    /**
+     * drops the retained connection (if any)
+     * without trying to consume the remaining response
+     */
+    private void dropConnection() {
+        InputStream connection = retainedConnection;
+        retainedConnection = null;
+        if (connection != null) {
+            try {
+                if (connection instanceof MultipartReader.Part) {
+                    // do not wait for trailing parts
+                    ((MultipartReader.Part) connection).abort();
+                } else {
+                    connection.close();
+                }
+            } catch (Exception ex) {
+                Log.warn(this, "Error during abort", ex);
+            }
         }
     }
 
     @Override
     public void close() {
         closed = true;
-        if (retainedConnection != null) {
+        InputStream connection = retainedConnection;
+        if (connection != null) {
             try {
                 // This call may take a long time if the response has not been consumed
                 // as HTTP client will consume the remaining response so it can re-use the
                 // connection. If we're closing when we're not at the end of the stream then
                 // issue a warning to the logs
-                if (retainedConnection.read() != -1) {
+                if (connection.read() != -1) {
                     Log.warn(this, "HTTP response not fully consumed, if HTTP Client is reusing connections (its default behaviour)" +
                             "then it will consume the remaining response data which may take a long time and cause this application to become unresponsive");
                 }
-                retainedConnection.close();
+                connection.close();
             } catch (RuntimeIOException | java.io.IOException e) {
                 // If we are closing early and the underlying stream is chunk encoded
                 // the close() can result in a IOException. TypedInputStream catches
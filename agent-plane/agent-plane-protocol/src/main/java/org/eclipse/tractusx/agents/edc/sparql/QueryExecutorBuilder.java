@@ -54,6 +54,7 @@ public class QueryExecutorBuilder extends ExecHTTPBuilder<QueryExecutor, QueryEx
 
     protected ObjectMapper objectMapper;
     protected AgentConfig agentConfig;
+    protected boolean compressBody;
 
     @Override
     protected QueryExecutor buildX(HttpClient httpClient, Query queryActual, String queryStringActual, Context cxt) {
@@ -62,7 +63,7 @@ public class QueryExecutorBuilder extends ExecHTTPBuilder<QueryExecutor, QueryEx
                 copyArray(defaultGraphURIs),
                 copyArray(namedGraphURIs),
                 sendMode, appAcceptHeader,
-                timeout, timeoutUnit, objectMapper, agentConfig);
+                timeout, timeoutUnit, objectMapper, agentConfig, compressBody);
     }
 
     @Override
@@ -80,6 +81,17 @@ public class QueryExecutorBuilder extends ExecHTTPBuilder<QueryExecutor, QueryEx
         return this;
     }
 
+    /**
+     * allows to gzip the query body (only agents are known to understand compressed requests)
+     *
+     * @param compressBody whether large query bodies may be compressed according to the agent config
+     * @return this builder
+     */
+    public QueryExecutorBuilder compressBody(boolean compressBody) {
+        this.compressBody = compressBody;
+        return this;
+    }
+
     @Override
     public QueryExecutorBuilder overallTimeout(long timeout, TimeUnit timeUnit) {
         super.timeout(timeout, timeUnit);
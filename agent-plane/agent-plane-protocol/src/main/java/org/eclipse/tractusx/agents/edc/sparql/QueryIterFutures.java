@@ -28,18 +28,26 @@ import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.tractusx.agents.edc.AgentConfig;
 
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A query iterator sitting on a set of future query iterators
+ * which are consumed in the order of their completion.
  * It will get and produce contextual information in order to collect any
- * errors appearing.
+ * errors appearing. Futures which did not complete before an (optional)
+ * deadline are cancelled and reported as warnings.
  */
 public class QueryIterFutures extends QueryIteratorBase {
 
-    final List<Future<QueryIterator>> futures;
+    final Map<Future<QueryIterator>, String> futures;
+    final BlockingQueue<Future<QueryIterator>> completed;
+    final long deadline;
     QueryIterator current;
     Binding lastBinding;
     final Monitor monitor;
@@ -59,10 +67,15 @@ public class QueryIterFutures extends QueryIteratorBase {
      * @param targetNode       a node (var, the name/uri of the remote tenant
      * @param sourceAsset      the name of the calling/consuming graph
      * @param executionContext description of the execution context
-     * @param futures          list of futures to synchronize on
+     * @param futures          futures to synchronize on (and the targets they are calling)
+     * @param completed        queue into which the futures are put upon completion
+     * @param deadline         point in time (millis) after which pending futures are given up, negative if there is no deadline
      */
-    public QueryIterFutures(AgentConfig config, Monitor monitor, String sourceTenant, String sourceAsset, Node targetNode, Context executionContext, List<Future<QueryIterator>> futures) {
-        this.futures = futures;
+    public QueryIterFutures(AgentConfig config, Monitor monitor, String sourceTenant, String sourceAsset, Node targetNode, Context executionContext,
+                            Map<Future<QueryIterator>, String> futures, BlockingQueue<Future<QueryIterator>> completed, long deadline) {
+        this.futures = new ConcurrentHashMap<>(futures);
+        this.completed = completed;
+        this.deadline = deadline;
         this.monitor = monitor;
         this.config = config;
         this.sourceAsset = sourceAsset;
@@ -107,47 +120,86 @@ public class QueryIterFutures extends QueryIteratorBase {
     }
 
     /**
-     * move to the next ready-made future (or sync/poll for the next ready-made one in a recursion)
+     * adds a warning about a failed or incomplete batch
+     *
+     * @param target  the target of the batch, if known
+     * @param problem description of the problem
+     * @param cause   the cause of the problem
+     */
+    protected void addWarning(String target, String problem, Throwable cause) {
+        List<CatenaxWarning> warnings = CatenaxWarning.getOrSetWarnings(executionContext);
+        CatenaxWarning newWarning = new CatenaxWarning();
+        newWarning.setSourceAsset(sourceAsset);
+        newWarning.setSourceTenant(sourceTenant);
+        newWarning.setTargetAsset(target != null ? target : getTargetAsset());
+        newWarning.setTargetTenant(target != null ? target : getTargetTenant());
+        newWarning.setContext(String.valueOf(executionContext.hashCode()));
+        newWarning.setProblem(problem);
+        warnings.add(newWarning);
+        monitor.warning(String.format("Produced warning %s for context %s", newWarning, executionContext), cause);
+    }
+
+    /**
+     * gives up all pending futures
+     *
+     * @param problem description of the problem
+     * @param cause   the cause of the problem
+     */
+    protected void abandonFutures(String problem, Throwable cause) {
+        futures.forEach((future, target) -> {
+            release(future);
+            addWarning(target, problem, cause);
+        });
+        futures.clear();
+    }
+
+    /**
+     * move to the next completed future (blocking until one completes or the deadline has passed)
      *
      * @return whether any service has/will produce any binding
      */
     boolean hasNextInternalBinding() {
-        if (!futures.isEmpty()) {
-            Optional<Future<QueryIterator>> boundFuture = futures.stream().filter(Future::isDone).findFirst();
+        while (current == null || !current.hasNext()) {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (futures.isEmpty()) {
+                return false;
+            }
+            Future<QueryIterator> currentFuture;
             try {
-                if (boundFuture.isPresent()) {
-                    Future<QueryIterator> currentFuture = boundFuture.get();
-                    futures.remove(currentFuture);
-                    current = currentFuture.get();
+                if (deadline < 0) {
+                    currentFuture = completed.take();
                 } else {
-                    Thread.sleep(config.getNegotiationPollInterval());
+                    currentFuture = completed.poll(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                    if (currentFuture == null) {
+                        abandonFutures("Deadline exceeded invoking a remote batch: Result may be partial.", null);
+                        return false;
+                    }
                 }
             } catch (InterruptedException e) {
-                List<CatenaxWarning> warnings = CatenaxWarning.getOrSetWarnings(executionContext);
-                CatenaxWarning newWarning = new CatenaxWarning();
-                newWarning.setSourceAsset(sourceAsset);
-                newWarning.setSourceTenant(sourceTenant);
-                newWarning.setTargetAsset(getTargetAsset());
-                newWarning.setTargetTenant(getTargetTenant());
-                newWarning.setContext(String.valueOf(executionContext.hashCode()));
-                newWarning.setProblem("Timeout/Interruption invoking a remote batch: Result may be partial.");
-                warnings.add(newWarning);
-                monitor.warning(String.format("Produced warning %s for context %s", newWarning, executionContext), e);
+                abandonFutures("Timeout/Interruption invoking a remote batch: Result may be partial.", e);
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            String target = futures.remove(currentFuture);
+            if (target == null) {
+                // already given up
+                continue;
+            }
+            try {
+                current = currentFuture.get();
+            } catch (InterruptedException e) {
+                addWarning(target, "Timeout/Interruption invoking a remote batch: Result may be partial.", e);
+                Thread.currentThread().interrupt();
             } catch (ExecutionException e) {
-                List<CatenaxWarning> warnings = CatenaxWarning.getOrSetWarnings(executionContext);
-                CatenaxWarning newWarning = new CatenaxWarning();
-                newWarning.setSourceAsset(sourceAsset);
-                newWarning.setSourceTenant(sourceTenant);
-                newWarning.setTargetAsset(getTargetAsset());
-                newWarning.setTargetTenant(getTargetTenant());
-                newWarning.setContext(String.valueOf(executionContext.hashCode()));
-                newWarning.setProblem("Failure invoking a remote batch: Result may be partial.");
-                warnings.add(newWarning);
-                monitor.warning(String.format("Produced warning %s for context %s", newWarning, executionContext), e);
+                addWarning(target, "Failure invoking a remote batch: Result may be partial.", e);
+            } catch (CancellationException e) {
+                // cancelled from outside, nothing to report
             }
-            return hasNextBinding();
         }
-        return false;
+        return true;
     }
 
     @Override
@@ -165,12 +217,31 @@ public class QueryIterFutures extends QueryIteratorBase {
         }
     }
 
+    /**
+     * cancels pending futures and closes the iterators of already
+     * finished ones (which may still hold a connection)
+     */
     @Override
     protected void requestCancel() {
-        futures.forEach(future -> future.cancel(true));
+        futures.keySet().forEach(this::release);
         futures.clear();
     }
 
+    /**
+     * cancels the given future or closes its iterator if it has already finished
+     *
+     * @param future the future to release
+     */
+    protected void release(Future<QueryIterator> future) {
+        if (!future.cancel(true) && future.isDone()) {
+            try {
+                future.get().close();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                // nothing to release
+            }
+        }
+    }
+
     @Override
     public void output(IndentedWriter indentedWriter, SerializationContext serializationContext) {
     }
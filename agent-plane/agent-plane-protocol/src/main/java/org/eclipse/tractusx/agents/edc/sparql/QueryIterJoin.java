@@ -19,6 +19,7 @@ package org.eclipse.tractusx.agents.edc.sparql;
 import org.apache.jena.atlas.io.IndentedWriter;
 import org.apache.jena.atlas.lib.Lib;
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
@@ -27,69 +28,195 @@ import org.apache.jena.sparql.engine.binding.BindingBuilder;
 import org.apache.jena.sparql.engine.iterator.QueryIter1;
 import org.apache.jena.sparql.serializer.SerializationContext;
 
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
 
 /**
  * Query join iterator
- * Prepares the given bindings with a hidden variable which is then projected
+ * Prepares the given bindings with a hidden variable which is then projected.
+ * The hidden variable carries the (int) index of the joined bindings.
  */
 public class QueryIterJoin extends QueryIter1 {
-    protected final Map<Node, List<Binding>> joinBindings;
+
+    /**
+     * the id nodes of typical batches are shared
+     */
+    protected static final Node[] ID_NODES = new Node[4096];
+
+    static {
+        for (int id = 0; id < ID_NODES.length; id++) {
+            ID_NODES[id] = NodeFactory.createLiteral(String.valueOf(id));
+        }
+    }
+
+    protected final List<List<Binding>> joinBindings;
     protected final Var idVar;
-    protected Iterator<Binding> leftBindings;
 
-    public QueryIterJoin(QueryIterator input, Map<Node, List<Binding>> joinBindings, Var idVar, ExecutionContext execCxt) {
+    // the bindings which join the current remote row
+    protected List<Binding> leftBindings;
+    protected int leftIndex;
+
+    // the variables of the current remote row (reused across rows)
+    protected Var[] remoteVars = new Var[8];
+    protected Node[] remoteNodes = new Node[8];
+    protected int remoteCount;
+    protected final BiConsumer<Var, Node> remoteCollector = this::collectRemote;
+
+    // number of joined bindings and who wants to know it once all remote rows have been read
+    protected long joined;
+    protected LongConsumer exhaustion;
+
+    /**
+     * creates a new join
+     *
+     * @param input        results of the remote call, annotated with the id variable
+     * @param joinBindings the bindings to join per id
+     * @param idVar        the id variable
+     * @param execCxt      execution context
+     */
+    public QueryIterJoin(QueryIterator input, List<List<Binding>> joinBindings, Var idVar, ExecutionContext execCxt) {
         super(input, execCxt);
         this.joinBindings = joinBindings;
         this.idVar = idVar;
     }
 
+    /**
+     * registers a listener which receives the number of joined bindings
+     * once all remote rows have been read (but not if the join is closed before)
+     *
+     * @param exhaustion the listener
+     * @return this join
+     */
+    public QueryIterJoin onExhausted(LongConsumer exhaustion) {
+        this.exhaustion = exhaustion;
+        return this;
+    }
+
+    /**
+     * access
+     *
+     * @param id index of the joined bindings
+     * @return node representing the id
+     */
+    public static Node idNode(int id) {
+        if (id < ID_NODES.length) {
+            return ID_NODES[id];
+        }
+        return NodeFactory.createLiteral(String.valueOf(id));
+    }
+
+    /**
+     * parses an id node
+     *
+     * @param node node representing an id (may be null)
+     * @return index of the joined bindings, -1 if the node is no id
+     */
+    public static int idOf(Node node) {
+        if (node == null || !node.isLiteral()) {
+            return -1;
+        }
+        String lexical = node.getLiteralLexicalForm();
+        if (lexical.isEmpty() || lexical.length() > 9) {
+            return -1;
+        }
+        int id = 0;
+        for (int pos = 0; pos < lexical.length(); pos++) {
+            char digit = lexical.charAt(pos);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            id = id * 10 + digit - '0';
+        }
+        return id;
+    }
+
+    /**
+     * a closed join must neither hold its bindings nor report
+     * the (partial) number of joined bindings
+     */
     @Override
     protected void closeSubIterator() {
+        exhaustion = null;
+        leftBindings = null;
     }
 
+    /**
+     * a cancelled remote stream may end early, so the (partial)
+     * number of joined bindings must not be reported
+     */
     @Override
     protected void requestSubCancel() {
+        exhaustion = null;
     }
 
+    /**
+     * advances over the remote rows until one joins some bindings
+     *
+     * @return whether there is a joined binding
+     */
     @Override
     public boolean hasNextBinding() {
-        return (leftBindings != null && leftBindings.hasNext()) || hasNextInputBinding();
+        while (leftBindings == null || leftIndex >= leftBindings.size()) {
+            if (!getInput().hasNext()) {
+                if (exhaustion != null) {
+                    exhaustion.accept(joined);
+                    exhaustion = null;
+                }
+                return false;
+            }
+            Binding remoteBinding = getInput().next();
+            int id = idOf(remoteBinding.get(idVar));
+            leftBindings = id >= 0 && id < joinBindings.size() ? joinBindings.get(id) : null;
+            leftIndex = 0;
+            if (leftBindings != null) {
+                remoteCount = 0;
+                remoteBinding.forEach(remoteCollector);
+            }
+        }
+        return true;
     }
 
-    protected boolean hasNextInputBinding() {
-        if (this.getInput().hasNext()) {
-            Binding nextBinding = this.getInput().next();
-            Node idNode = nextBinding.get(idVar);
-            List<Binding> resultBindings = joinBindings.get(idNode);
-            if (resultBindings != null) {
-                leftBindings = resultBindings.stream().map(resultBinding -> {
-                    BindingBuilder bb = BindingBuilder.create(resultBinding);
-                    nextBinding.forEach((v, n) -> {
-                        if (!resultBinding.contains(v)) {
-                            bb.set(v, n);
-                        }
-                    });
-                    return bb.build();
-                }).iterator();
-            } else {
-                leftBindings = null;
-            }
-            return hasNextBinding();
-        } else {
-            return false;
+    /**
+     * remembers a variable of the current remote row
+     *
+     * @param var  the variable
+     * @param node its value
+     */
+    protected void collectRemote(Var var, Node node) {
+        if (var.equals(idVar)) {
+            return;
+        }
+        if (remoteCount == remoteVars.length) {
+            remoteVars = Arrays.copyOf(remoteVars, remoteCount * 2);
+            remoteNodes = Arrays.copyOf(remoteNodes, remoteCount * 2);
         }
+        remoteVars[remoteCount] = var;
+        remoteNodes[remoteCount++] = node;
     }
 
+    /**
+     * joins the next binding with the current remote row. The joined binding
+     * keeps the original binding as its parent and only adds the remote values.
+     *
+     * @return joined binding
+     */
     @Override
     public Binding moveToNextBinding() {
-        if (leftBindings != null && leftBindings.hasNext()) {
-            return leftBindings.next();
-        } else {
-            return null;
+        Binding leftBinding = leftBindings.get(leftIndex++);
+        joined++;
+        BindingBuilder bb = null;
+        for (int pos = 0; pos < remoteCount; pos++) {
+            Var var = remoteVars[pos];
+            if (!leftBinding.contains(var)) {
+                if (bb == null) {
+                    bb = BindingBuilder.create(leftBinding);
+                }
+                bb.add(var, remoteNodes[pos]);
+            }
         }
+        return bb == null ? leftBinding : bb.build();
     }
 
     @Override
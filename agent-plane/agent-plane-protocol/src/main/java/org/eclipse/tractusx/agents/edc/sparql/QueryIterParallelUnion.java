@@ -0,0 +1,234 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIter1;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.main.QC;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A union which executes its remote (service) branches concurrently on a
+ * dedicated executor and produces their results in the order of arrival.
+ * The input bindings are read once and fed to every branch. Local branches are
+ * executed on the calling thread (which holds the transaction of the local dataset)
+ * while the remote branches are running.
+ */
+public class QueryIterParallelUnion extends QueryIter1 {
+
+    /**
+     * maximal number of results which the remote branches may buffer ahead of the consumer
+     */
+    public static final int BUFFER = 1024;
+
+    /**
+     * marks the end of a remote branch
+     */
+    protected static final Object BRANCH_DONE = new Object();
+
+    protected final List<Op> remoteBranches;
+    protected final Deque<Op> localBranches;
+    protected final ExecutorService executor;
+    protected final int maxBranches;
+    protected final BlockingQueue<Object> results = new LinkedBlockingQueue<>(BUFFER);
+    protected final List<Future<?>> running = new ArrayList<>();
+    protected Deque<Op> waiting;
+    protected List<Binding> bindings;
+    protected int active;
+    protected QueryIterator localIterator;
+    protected Binding next;
+
+    /**
+     * creates a new union
+     *
+     * @param input          the input bindings
+     * @param remoteBranches the branches to execute concurrently
+     * @param localBranches  the branches to execute on the calling thread
+     * @param execCxt        the execution context
+     * @param executor       executor for the remote branches
+     * @param maxBranches    maximal number of remote branches running at the same time
+     */
+    public QueryIterParallelUnion(QueryIterator input, List<Op> remoteBranches, List<Op> localBranches, ExecutionContext execCxt, ExecutorService executor, int maxBranches) {
+        super(input, execCxt);
+        this.remoteBranches = remoteBranches;
+        this.localBranches = new ArrayDeque<>(localBranches);
+        this.executor = executor;
+        this.maxBranches = maxBranches;
+    }
+
+    /**
+     * reads the input and starts the remote branches
+     */
+    protected void start() {
+        bindings = new ArrayList<>();
+        QueryIterator input = getInput();
+        while (input.hasNext()) {
+            bindings.add(input.next());
+        }
+        waiting = new ArrayDeque<>(remoteBranches);
+        startBranches();
+    }
+
+    /**
+     * starts waiting remote branches as long as there are free slots. If the executor
+     * is exhausted, the branches wait for a running one to finish or, if there is none,
+     * are executed on the calling thread.
+     */
+    protected void startBranches() {
+        while (active < maxBranches && !waiting.isEmpty()) {
+            Op branch = waiting.peek();
+            try {
+                running.add(executor.submit(() -> runBranch(branch)));
+            } catch (RejectedExecutionException e) {
+                if (active == 0) {
+                    localBranches.addAll(waiting);
+                    waiting.clear();
+                }
+                return;
+            }
+            waiting.poll();
+            active++;
+        }
+    }
+
+    /**
+     * executes a remote branch, runs on the branch executor
+     *
+     * @param branch the branch
+     */
+    protected void runBranch(Op branch) {
+        // the execution context keeps track of its iterators (which is not thread-safe)
+        ExecutionContext execCxt = getExecContext();
+        ExecutionContext branchCxt = new ExecutionContext(execCxt.getContext(), execCxt.getActiveGraph(), execCxt.getDataset(), execCxt.getExecutor());
+        QueryIterator iterator = null;
+        try {
+            iterator = QC.execute(branch, QueryIterPlainWrapper.create(bindings.iterator(), branchCxt), branchCxt);
+            while (iterator.hasNext()) {
+                results.put(iterator.next());
+            }
+            results.put(BRANCH_DONE);
+        } catch (InterruptedException e) {
+            // the union has been closed
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // any failure must reach the consumer, otherwise it would wait for the branch forever
+            try {
+                results.put(e instanceof RuntimeException ? e : new QueryExecException("Parallel union branch failed: " + e.getMessage(), e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            if (iterator != null) {
+                iterator.close();
+            }
+        }
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        if (next != null) {
+            return true;
+        }
+        if (bindings == null) {
+            start();
+        }
+        while (true) {
+            Object item = results.poll();
+            if (item == null) {
+                // do local work while the remote branches are running
+                if (localIterator != null && localIterator.hasNext()) {
+                    next = localIterator.next();
+                    return true;
+                }
+                if (!localBranches.isEmpty()) {
+                    if (localIterator != null) {
+                        localIterator.close();
+                    }
+                    localIterator = QC.execute(localBranches.poll(), QueryIterPlainWrapper.create(bindings.iterator(), getExecContext()), getExecContext());
+                    continue;
+                }
+                if (active == 0) {
+                    return false;
+                }
+                try {
+                    item = results.take();
+                } catch (InterruptedException e) {
+                    requestSubCancel();
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (item == BRANCH_DONE) {
+                active--;
+                startBranches();
+            } else if (item instanceof RuntimeException) {
+                active--;
+                throw (RuntimeException) item;
+            } else {
+                next = (Binding) item;
+                return true;
+            }
+        }
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        Binding result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * cancels the running branches
+     */
+    @Override
+    protected void requestSubCancel() {
+        running.forEach(future -> future.cancel(true));
+        if (waiting != null) {
+            waiting.clear();
+        }
+        if (localIterator != null) {
+            localIterator.cancel();
+        }
+    }
+
+    /**
+     * cancels the running branches and releases the local branch
+     */
+    @Override
+    protected void closeSubIterator() {
+        requestSubCancel();
+        if (localIterator != null) {
+            localIterator.close();
+            localIterator = null;
+        }
+    }
+}
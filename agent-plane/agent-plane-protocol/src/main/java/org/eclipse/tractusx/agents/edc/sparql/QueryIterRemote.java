@@ -0,0 +1,176 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.atlas.io.IndentedWriter;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIteratorBase;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.serializer.SerializationContext;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A query iterator streaming the rows of a remote service call
+ * directly from the underlying connection.
+ * A bounded number of rows may be read ahead (typically by the thread
+ * issuing the call), the rest is pulled lazily when consumed.
+ * Executions without a row set (such as in-process evaluations) are only started
+ * when their first row is pulled.
+ * The connection is released as soon as the rows are exhausted or
+ * the iterator is closed/cancelled.
+ */
+public class QueryIterRemote extends QueryIteratorBase {
+
+    protected final QueryExec queryExec;
+    protected RowSet rowSet;
+    protected final Deque<Binding> readAhead = new ArrayDeque<>();
+    protected volatile boolean exhausted = false;
+    protected final AtomicBoolean released = new AtomicBoolean();
+    protected Consumer<Boolean> release;
+
+    /**
+     * creates a new remote iterator
+     *
+     * @param queryExec the (open) remote execution
+     * @param rowSet    the streaming row set obtained from the execution
+     */
+    public QueryIterRemote(QueryExec queryExec, RowSet rowSet) {
+        this.queryExec = queryExec;
+        this.rowSet = rowSet;
+    }
+
+    /**
+     * creates a new iterator which starts the execution when consumed
+     *
+     * @param queryExec the (not yet started) execution
+     */
+    public QueryIterRemote(QueryExec queryExec) {
+        this(queryExec, null);
+    }
+
+    /**
+     * access
+     *
+     * @return the row set of the execution (started on first access)
+     */
+    protected RowSet getRowSet() {
+        if (rowSet == null) {
+            rowSet = queryExec.select();
+        }
+        return rowSet;
+    }
+
+    /**
+     * registers who wants to know when the connection is released
+     *
+     * @param release receives (once) whether the rows have been read completely
+     * @return this iterator
+     */
+    public QueryIterRemote onRelease(Consumer<Boolean> release) {
+        this.release = release;
+        return this;
+    }
+
+    /**
+     * reads ahead the given number of rows from the connection
+     *
+     * @param maxRows maximal number of rows to buffer
+     * @return this iterator
+     */
+    public QueryIterRemote readAhead(int maxRows) {
+        while (readAhead.size() < maxRows && hasNextRemoteBinding()) {
+            readAhead.add(getRowSet().next());
+        }
+        return this;
+    }
+
+    /**
+     * access
+     *
+     * @return whether the connection has still rows to deliver (releases the connection if not)
+     */
+    protected boolean hasNextRemoteBinding() {
+        if (exhausted) {
+            return false;
+        }
+        if (getRowSet().hasNext()) {
+            return true;
+        }
+        exhausted = true;
+        queryExec.close();
+        release(true);
+        return false;
+    }
+
+    /**
+     * notifies the release of the connection (only once)
+     *
+     * @param complete whether the rows have been read completely
+     */
+    protected void release(boolean complete) {
+        if (released.compareAndSet(false, true) && release != null) {
+            release.accept(complete);
+        }
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        return !readAhead.isEmpty() || hasNextRemoteBinding();
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        if (!readAhead.isEmpty()) {
+            return readAhead.poll();
+        }
+        return getRowSet().next();
+    }
+
+    @Override
+    protected void closeIterator() {
+        readAhead.clear();
+        if (!exhausted) {
+            exhausted = true;
+            queryExec.abort();
+        }
+        release(false);
+    }
+
+    /**
+     * may be called from a different thread, so we
+     * only drop the connection and leave the buffer alone
+     */
+    @Override
+    protected void requestCancel() {
+        if (!exhausted) {
+            exhausted = true;
+            queryExec.abort();
+        }
+        release(false);
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext cxt) {
+        out.println(Lib.className(this));
+    }
+}
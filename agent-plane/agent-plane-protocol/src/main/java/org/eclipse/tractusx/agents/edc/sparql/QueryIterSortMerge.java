@@ -0,0 +1,253 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingComparator;
+import org.apache.jena.sparql.engine.iterator.QueryIter1;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.main.QC;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An ordered (top-k) union which executes its remote (service) branches concurrently
+ * on a dedicated executor and merges their sorted results. Branches whose
+ * results do not arrive in the requested order (e.g. because the order could not be pushed
+ * into the remote query) are sorted locally before merging.
+ */
+public class QueryIterSortMerge extends QueryIter1 {
+
+    protected final List<Op> branches;
+    protected final List<SortCondition> conditions;
+    protected final long limit;
+    protected final ExecutorService executor;
+    protected final int maxBranches;
+    protected final List<Future<List<Binding>>> running = new ArrayList<>();
+    protected PriorityQueue<Cursor> heads;
+    protected long produced;
+
+    /**
+     * the position in the sorted results of a branch
+     */
+    protected static class Cursor {
+        protected final List<Binding> rows;
+        protected final int branch;
+        protected int position;
+
+        protected Cursor(List<Binding> rows, int branch) {
+            this.rows = rows;
+            this.branch = branch;
+        }
+
+        protected Binding head() {
+            return rows.get(position);
+        }
+    }
+
+    /**
+     * creates a new ordered union
+     *
+     * @param input       the input bindings
+     * @param branches    the branches of the union (services are executed concurrently)
+     * @param conditions  the order of the results
+     * @param limit       maximal number of results, Query.NOLIMIT if unlimited
+     * @param execCxt     the execution context
+     * @param executor    executor for the remote branches
+     * @param maxBranches maximal number of remote branches running at the same time
+     */
+    public QueryIterSortMerge(QueryIterator input, List<Op> branches, List<SortCondition> conditions, long limit, ExecutionContext execCxt, ExecutorService executor, int maxBranches) {
+        super(input, execCxt);
+        this.branches = branches;
+        this.conditions = conditions;
+        this.limit = limit;
+        this.executor = executor;
+        this.maxBranches = maxBranches;
+    }
+
+    /**
+     * reads the input, executes all branches and prepares the merge
+     */
+    protected void start() {
+        List<Binding> bindings = new ArrayList<>();
+        QueryIterator input = getInput();
+        while (input.hasNext()) {
+            bindings.add(input.next());
+        }
+        Semaphore slots = new Semaphore(maxBranches);
+        List<Future<List<Binding>>> remote = new ArrayList<>(branches.size());
+        for (Op branch : branches) {
+            Future<List<Binding>> future = null;
+            if (FederationOpExecutor.isRemote(branch)) {
+                try {
+                    future = executor.submit(() -> {
+                        slots.acquire();
+                        try {
+                            return runBranch(branch, bindings);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                    running.add(future);
+                } catch (RejectedExecutionException e) {
+                    // the executor is exhausted, so the branch runs on the calling thread
+                }
+            }
+            remote.add(future);
+        }
+        Comparator<Binding> comparator = new BindingComparator(conditions, getExecContext());
+        heads = new PriorityQueue<>((first, second) -> {
+            int result = comparator.compare(first.head(), second.head());
+            return result != 0 ? result : Integer.compare(first.branch, second.branch);
+        });
+        // do local work while the remote branches are running
+        for (int branch = 0; branch < branches.size(); branch++) {
+            if (remote.get(branch) == null) {
+                addBranch(drain(QC.execute(branches.get(branch), QueryIterPlainWrapper.create(bindings.iterator(), getExecContext()), getExecContext())), branch, comparator);
+            }
+        }
+        for (int branch = 0; branch < branches.size(); branch++) {
+            if (remote.get(branch) != null) {
+                addBranch(await(remote.get(branch)), branch, comparator);
+            }
+        }
+    }
+
+    /**
+     * executes a remote branch, runs on the branch executor
+     *
+     * @param branch   the branch
+     * @param bindings the input bindings
+     * @return results of the branch
+     */
+    protected List<Binding> runBranch(Op branch, List<Binding> bindings) {
+        // the execution context keeps track of its iterators (which is not thread-safe)
+        ExecutionContext execCxt = getExecContext();
+        ExecutionContext branchCxt = new ExecutionContext(execCxt.getContext(), execCxt.getActiveGraph(), execCxt.getDataset(), execCxt.getExecutor());
+        return drain(QC.execute(branch, QueryIterPlainWrapper.create(bindings.iterator(), branchCxt), branchCxt));
+    }
+
+    /**
+     * reads and closes an iterator
+     *
+     * @param iterator the iterator
+     * @return list of results
+     */
+    protected static List<Binding> drain(QueryIterator iterator) {
+        try {
+            List<Binding> rows = new ArrayList<>();
+            while (iterator.hasNext()) {
+                rows.add(iterator.next());
+            }
+            return rows;
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * waits for the results of a remote branch
+     *
+     * @param future the running branch
+     * @return results of the branch
+     */
+    protected List<Binding> await(Future<List<Binding>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            requestSubCancel();
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new QueryExecException(e.getCause());
+        }
+    }
+
+    /**
+     * adds the results of a branch to the merge
+     *
+     * @param rows       results of the branch
+     * @param branch     position of the branch in the union
+     * @param comparator the order
+     */
+    protected void addBranch(List<Binding> rows, int branch, Comparator<Binding> comparator) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        for (int row = 1; row < rows.size(); row++) {
+            if (comparator.compare(rows.get(row - 1), rows.get(row)) > 0) {
+                rows.sort(comparator);
+                break;
+            }
+        }
+        heads.add(new Cursor(rows, branch));
+    }
+
+    @Override
+    protected boolean hasNextBinding() {
+        if (heads == null) {
+            start();
+        }
+        return (limit == Query.NOLIMIT || produced < limit) && !heads.isEmpty();
+    }
+
+    @Override
+    protected Binding moveToNextBinding() {
+        Cursor cursor = heads.poll();
+        Binding result = cursor.head();
+        cursor.position++;
+        if (cursor.position < cursor.rows.size()) {
+            heads.add(cursor);
+        }
+        produced++;
+        return result;
+    }
+
+    /**
+     * cancels the running branches
+     */
+    @Override
+    protected void requestSubCancel() {
+        running.forEach(future -> future.cancel(true));
+    }
+
+    /**
+     * cancels the running branches
+     */
+    @Override
+    protected void closeSubIterator() {
+        requestSubCancel();
+    }
+}
@@ -0,0 +1,227 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpAsQuery;
+import org.apache.jena.sparql.algebra.op.Op1;
+import org.apache.jena.sparql.algebra.op.OpExtend;
+import org.apache.jena.sparql.algebra.op.OpFilter;
+import org.apache.jena.sparql.algebra.op.OpGroup;
+import org.apache.jena.sparql.algebra.op.OpSequence;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.table.TableData;
+import org.apache.jena.sparql.core.Prologue;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.graph.NodeTransformLib;
+import org.apache.jena.sparql.serializer.SerializationContext;
+import org.apache.jena.sparql.util.FmtUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled remote query of a service operator. The algebra rewrite
+ * (detecting the needed variables and joining them from a VALUES table) and the
+ * serialization happen once, the query text is then split at the rows of the
+ * VALUES table. Each batch only writes its rows between head and tail.
+ */
+public class RemoteQueryTemplate {
+
+    /**
+     * placeholder row which marks the position of the VALUES rows in the serialized query
+     */
+    protected static final Node ROW_MARKER = NodeFactory.createURI("urn:cx:agent:template#row");
+
+    protected final List<Var> neededVars;
+    protected final Var idVar;
+    protected final List<Var> tableVars;
+    protected final String head;
+    protected final String tail;
+    protected final Prologue prologue;
+
+    /**
+     * creates a new template
+     *
+     * @param neededVars the bound variables which the remote query needs
+     * @param idVar      the variable which correlates results and bindings
+     * @param head       query text before the VALUES rows
+     * @param tail       query text after the VALUES rows
+     * @param prologue   prefixes and base of the query
+     */
+    protected RemoteQueryTemplate(List<Var> neededVars, Var idVar, String head, String tail, Prologue prologue) {
+        this.neededVars = neededVars;
+        this.idVar = idVar;
+        this.tableVars = new ArrayList<>(neededVars);
+        this.tableVars.add(idVar);
+        this.head = head;
+        this.tail = tail;
+        this.prologue = prologue;
+    }
+
+    /**
+     * compiles the remote query of a service
+     *
+     * @param opRemote  the sub operator of the service
+     * @param boundVars the variables which are bound in the batches
+     * @return compiled template
+     */
+    public static RemoteQueryTemplate compile(Op opRemote, Set<String> boundVars) {
+        int hashCode = Math.abs(opRemote.hashCode());
+        Var idVar = Var.alloc("binding" + hashCode);
+        VariableDetector vd = new VariableDetector(boundVars);
+        opRemote = NodeTransformLib.transform(vd, opRemote);
+        List<Var> neededVars = vd.getVariables();
+        List<Var> tableVars = new ArrayList<>(neededVars);
+        tableVars.add(idVar);
+        TableData table = new TableData(tableVars, List.of(BindingFactory.binding(idVar, ROW_MARKER)));
+        OpTable opTable = OpTable.create(table);
+
+        Query query;
+
+        ServiceModifiers modifiers = ServiceModifiers.of(opRemote);
+        if (modifiers.hasSlice() && !neededVars.isEmpty()) {
+            // a limited "sub-select" must be evaluated once and joined with all bindings
+            Op join = OpSequence.create(opTable, opRemote);
+            query = OpAsQuery.asQuery(join);
+        } else {
+            // otherwise we smuggle our binding below the solution modifiers (and groupings)
+            Op grouped = bindGroup(modifiers.getPattern(), opTable, idVar);
+            modifiers.setPattern(grouped != null ? grouped : OpSequence.create(opTable, modifiers.getPattern()));
+            if (modifiers.getVars() != null) {
+                List<Var> resultVars = new ArrayList<>(modifiers.getVars());
+                resultVars.add(idVar);
+                modifiers.setVars(resultVars);
+            }
+            query = OpAsQuery.asQuery(modifiers.build());
+        }
+
+        String queryString = query.toString();
+        String marker = FmtUtils.stringForNode(ROW_MARKER, new SerializationContext(query.getPrologue()));
+        int start = queryString.indexOf(marker);
+        if (start < 0) {
+            throw new QueryExecException(String.format("Could not locate the bindings in remote query %s", queryString));
+        }
+        int end = start + marker.length();
+        if (tableVars.size() > 1) {
+            // a multi-variable row is parenthesized
+            start = queryString.lastIndexOf('(', start);
+            end = queryString.indexOf(')', end) + 1;
+        }
+        return new RemoteQueryTemplate(neededVars, idVar, queryString.substring(0, start), queryString.substring(end), query.getPrologue());
+    }
+
+    /**
+     * joins the bindings below the grouping of a remote query, so that
+     * each binding is aggregated separately
+     *
+     * @param op      the pattern of the remote query
+     * @param opTable the bindings
+     * @param idVar   the variable which correlates results and bindings
+     * @return pattern with the bindings joined below the grouping, null if the pattern is not grouped
+     */
+    protected static Op bindGroup(Op op, OpTable opTable, Var idVar) {
+        if (op instanceof OpGroup) {
+            OpGroup opGroup = (OpGroup) op;
+            VarExprList groupVars = new VarExprList(opGroup.getGroupVars());
+            groupVars.add(idVar);
+            return OpGroup.create(OpSequence.create(opTable, opGroup.getSubOp()), groupVars, opGroup.getAggregators());
+        }
+        if (op instanceof OpExtend || op instanceof OpFilter) {
+            Op1 op1 = (Op1) op;
+            Op sub = bindGroup(op1.getSubOp(), opTable, idVar);
+            return sub == null ? null : op1.copy(sub);
+        }
+        return null;
+    }
+
+    /**
+     * access
+     *
+     * @return the bound variables which the remote query needs (without the id variable)
+     */
+    public List<Var> getNeededVars() {
+        return neededVars;
+    }
+
+    /**
+     * access
+     *
+     * @return the variable which correlates results and bindings
+     */
+    public Var getIdVar() {
+        return idVar;
+    }
+
+    /**
+     * renders the remote query for a batch
+     *
+     * @param rows the VALUES rows binding the needed variables and the id variable
+     * @return the query text
+     */
+    public String render(Collection<Binding> rows) {
+        StringBuilder out = new StringBuilder(head.length() + tail.length() + rows.size() * 48 * tableVars.size());
+        out.append(head);
+        // the bnode labelling of a serialization context is not thread-safe
+        SerializationContext context = new SerializationContext(prologue);
+        boolean firstRow = true;
+        for (Binding row : rows) {
+            if (!firstRow) {
+                out.append('\n');
+            }
+            firstRow = false;
+            writeRow(out, row, context);
+        }
+        out.append(tail);
+        return out.toString();
+    }
+
+    /**
+     * writes a single VALUES row
+     *
+     * @param out     the query text
+     * @param row     the row
+     * @param context serialization context
+     */
+    protected void writeRow(StringBuilder out, Binding row, SerializationContext context) {
+        boolean parenthesized = tableVars.size() > 1;
+        if (parenthesized) {
+            out.append('(');
+        }
+        boolean first = true;
+        for (Var var : tableVars) {
+            if (!first) {
+                out.append(' ');
+            }
+            first = false;
+            Node node = row.get(var);
+            out.append(node == null ? "UNDEF" : FmtUtils.stringForNode(node, context));
+        }
+        if (parenthesized) {
+            out.append(')');
+        }
+    }
+}
@@ -0,0 +1,121 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The complete (unbound) result of a service pattern which has been fetched once
+ * in order to be joined locally with any number of bindings. The rows are
+ * hashed (lazily, once per join variable) by their values.
+ */
+public class RemoteTable {
+
+    protected final List<Var> vars;
+    protected final List<Binding> rows;
+    protected final Map<Var, Map<Node, List<Binding>>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * creates a new table
+     *
+     * @param vars the variables of the service pattern
+     * @param rows the results of the service pattern
+     */
+    public RemoteTable(List<Var> vars, List<Binding> rows) {
+        this.vars = vars;
+        this.rows = rows;
+    }
+
+    /**
+     * access
+     *
+     * @return number of rows
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * joins the table with the given bindings
+     *
+     * @param bindings the bindings
+     * @return all compatible combinations of a binding and a row
+     */
+    public List<Binding> join(List<Binding> bindings) {
+        List<Binding> results = new ArrayList<>();
+        for (Binding binding : bindings) {
+            Var joinVar = null;
+            for (Var var : vars) {
+                if (binding.contains(var)) {
+                    joinVar = var;
+                    break;
+                }
+            }
+            if (joinVar == null) {
+                // cross product
+                probe(binding, rows, results);
+            } else {
+                Map<Node, List<Binding>> index = indexes.computeIfAbsent(joinVar, this::index);
+                probe(binding, index.get(binding.get(joinVar)), results);
+                // rows which leave the variable unbound are compatible, too
+                probe(binding, index.get(null), results);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * hashes the rows by the value of a variable
+     *
+     * @param var the variable
+     * @return rows per value, the rows which do not bind the variable are found under null
+     */
+    protected Map<Node, List<Binding>> index(Var var) {
+        Map<Node, List<Binding>> index = new HashMap<>();
+        for (Binding row : rows) {
+            index.computeIfAbsent(row.get(var), value -> new ArrayList<>()).add(row);
+        }
+        return index;
+    }
+
+    /**
+     * merges a binding with the compatible candidates
+     *
+     * @param binding    the binding
+     * @param candidates the candidate rows (may be null)
+     * @param results    receives the merged bindings
+     */
+    protected static void probe(Binding binding, List<Binding> candidates, List<Binding> results) {
+        if (candidates == null) {
+            return;
+        }
+        for (Binding row : candidates) {
+            if (Algebra.compatible(binding, row)) {
+                results.add(Algebra.merge(binding, row));
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+/**
+ * Circuit breaker of a single remote endpoint.
+ * After a number of consecutive failures, the circuit opens and calls
+ * are refused for a while. Afterwards, a single probe call is let through
+ * (half open) whose outcome decides whether the circuit closes or opens again.
+ * Calls which neither succeed nor fail (e.g., because they have been cancelled)
+ * must be released, so that a pending probe does not block the endpoint.
+ */
+public class ServiceCircuitBreaker {
+
+    /**
+     * states of the circuit
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    protected final String endpoint;
+    protected final int failureThreshold;
+    protected final long openDelay;
+
+    protected State state = State.CLOSED;
+    protected int consecutiveFailures;
+    protected long openedAt;
+    protected boolean probing;
+
+    /**
+     * create a new breaker
+     *
+     * @param endpoint         the endpoint key
+     * @param failureThreshold number of consecutive failures which open the circuit
+     * @param openDelay        number of milliseconds the circuit stays open
+     */
+    public ServiceCircuitBreaker(String endpoint, int failureThreshold, long openDelay) {
+        this.endpoint = endpoint;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDelay = openDelay;
+    }
+
+    /**
+     * asks for permission to call the endpoint
+     *
+     * @return whether the call may be performed
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDelay) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (!probing) {
+                    probing = true;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * record a successful call
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+        probing = false;
+    }
+
+    /**
+     * record a failed call
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probing = false;
+        }
+    }
+
+    /**
+     * release a call without outcome
+     */
+    public synchronized void release() {
+        probing = false;
+    }
+
+    /**
+     * access
+     *
+     * @return the endpoint key
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * access
+     *
+     * @return current state of the circuit
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ServiceCircuitBreaker(%s,%s)", endpoint, getState());
+    }
+}
@@ -0,0 +1,209 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpDistinct;
+import org.apache.jena.sparql.algebra.op.OpOrder;
+import org.apache.jena.sparql.algebra.op.OpProject;
+import org.apache.jena.sparql.algebra.op.OpReduced;
+import org.apache.jena.sparql.algebra.op.OpSlice;
+import org.apache.jena.sparql.core.Var;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The solution modifiers of a (remote) sub-query in their canonical
+ * nesting slice(distinct|reduced(project(order(pattern)))).
+ * Used to add modifiers to the sub operator of a service and to
+ * slip the bindings of a batch below the modifiers.
+ */
+public class ServiceModifiers {
+
+    protected Op pattern;
+    protected List<SortCondition> conditions;
+    protected List<Var> vars;
+    protected boolean distinct;
+    protected boolean reduced;
+    protected long start = Query.NOLIMIT;
+    protected long length = Query.NOLIMIT;
+
+    /**
+     * decomposes an operator
+     *
+     * @param op the (sub) operator of a service
+     * @return modifiers of the operator
+     */
+    public static ServiceModifiers of(Op op) {
+        ServiceModifiers modifiers = new ServiceModifiers();
+        if (op instanceof OpSlice) {
+            OpSlice opSlice = (OpSlice) op;
+            modifiers.start = opSlice.getStart();
+            modifiers.length = opSlice.getLength();
+            op = opSlice.getSubOp();
+        }
+        if (op instanceof OpDistinct) {
+            modifiers.distinct = true;
+            op = ((OpDistinct) op).getSubOp();
+        } else if (op instanceof OpReduced) {
+            modifiers.reduced = true;
+            op = ((OpReduced) op).getSubOp();
+        }
+        if (op instanceof OpProject) {
+            OpProject opProject = (OpProject) op;
+            modifiers.vars = new ArrayList<>(opProject.getVars());
+            op = opProject.getSubOp();
+        }
+        if (op instanceof OpOrder) {
+            OpOrder opOrder = (OpOrder) op;
+            modifiers.conditions = opOrder.getConditions();
+            op = opOrder.getSubOp();
+        }
+        modifiers.pattern = op;
+        return modifiers;
+    }
+
+    /**
+     * composes the operator
+     *
+     * @return operator with the modifiers applied to the pattern
+     */
+    public Op build() {
+        Op op = pattern;
+        if (conditions != null) {
+            op = new OpOrder(op, conditions);
+        }
+        if (vars != null) {
+            op = new OpProject(op, vars);
+        }
+        if (distinct) {
+            op = OpDistinct.create(op);
+        } else if (reduced) {
+            op = OpReduced.create(op);
+        }
+        if (hasSlice()) {
+            op = new OpSlice(op, start, length);
+        }
+        return op;
+    }
+
+    /**
+     * access
+     *
+     * @return the operator below the modifiers
+     */
+    public Op getPattern() {
+        return pattern;
+    }
+
+    /**
+     * sets the operator below the modifiers
+     *
+     * @param pattern new operator
+     */
+    public void setPattern(Op pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * access
+     *
+     * @return the sort conditions, null if unordered
+     */
+    public List<SortCondition> getConditions() {
+        return conditions;
+    }
+
+    /**
+     * sets the sort conditions
+     *
+     * @param conditions the sort conditions, null if unordered
+     */
+    public void setConditions(List<SortCondition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * access
+     *
+     * @return the projected variables, null if all variables are visible
+     */
+    public List<Var> getVars() {
+        return vars;
+    }
+
+    /**
+     * sets the projection
+     *
+     * @param vars the projected variables, null if all variables are visible
+     */
+    public void setVars(List<Var> vars) {
+        this.vars = vars;
+    }
+
+    /**
+     * access
+     *
+     * @return whether duplicates are eliminated
+     */
+    public boolean isDistinct() {
+        return distinct;
+    }
+
+    /**
+     * access
+     *
+     * @return whether duplicates may be eliminated
+     */
+    public boolean isReduced() {
+        return reduced;
+    }
+
+    /**
+     * sets the duplicate elimination
+     *
+     * @param distinct whether duplicates are eliminated
+     * @param reduced  whether duplicates may be eliminated
+     */
+    public void setDuplicates(boolean distinct, boolean reduced) {
+        this.distinct = distinct;
+        this.reduced = reduced && !distinct;
+    }
+
+    /**
+     * access
+     *
+     * @return whether offset or limit are given
+     */
+    public boolean hasSlice() {
+        return start != Query.NOLIMIT || length != Query.NOLIMIT;
+    }
+
+    /**
+     * sets the slice
+     *
+     * @param start  offset, Query.NOLIMIT if none
+     * @param length limit, Query.NOLIMIT if none
+     */
+    public void setSlice(long start, long length) {
+        this.start = start;
+        this.length = length;
+    }
+}
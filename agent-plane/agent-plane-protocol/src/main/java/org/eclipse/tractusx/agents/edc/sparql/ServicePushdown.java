@@ -0,0 +1,776 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.OpWalker;
+import org.apache.jena.sparql.algebra.op.Op1;
+import org.apache.jena.sparql.algebra.op.Op2;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpConditional;
+import org.apache.jena.sparql.algebra.op.OpDistinct;
+import org.apache.jena.sparql.algebra.op.OpExtend;
+import org.apache.jena.sparql.algebra.op.OpFilter;
+import org.apache.jena.sparql.algebra.op.OpGroup;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpLeftJoin;
+import org.apache.jena.sparql.algebra.op.OpN;
+import org.apache.jena.sparql.algebra.op.OpOrder;
+import org.apache.jena.sparql.algebra.op.OpPath;
+import org.apache.jena.sparql.algebra.op.OpProject;
+import org.apache.jena.sparql.algebra.op.OpQuadPattern;
+import org.apache.jena.sparql.algebra.op.OpReduced;
+import org.apache.jena.sparql.algebra.op.OpSequence;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.op.OpSlice;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.op.OpTopN;
+import org.apache.jena.sparql.algebra.op.OpTriple;
+import org.apache.jena.sparql.algebra.op.OpUnion;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterAssign;
+import org.apache.jena.sparql.engine.iterator.QueryIterFilterExpr;
+import org.apache.jena.sparql.engine.iterator.QueryIterGroup;
+import org.apache.jena.sparql.engine.iterator.QueryIterProject;
+import org.apache.jena.sparql.expr.E_BNode;
+import org.apache.jena.sparql.expr.E_Coalesce;
+import org.apache.jena.sparql.expr.E_Conditional;
+import org.apache.jena.sparql.expr.E_Divide;
+import org.apache.jena.sparql.expr.E_Equals;
+import org.apache.jena.sparql.expr.E_Function;
+import org.apache.jena.sparql.expr.E_Now;
+import org.apache.jena.sparql.expr.E_Random;
+import org.apache.jena.sparql.expr.E_StrUUID;
+import org.apache.jena.sparql.expr.E_UUID;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.ExprFunction;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.expr.aggregate.AggAvg;
+import org.apache.jena.sparql.expr.aggregate.AggCount;
+import org.apache.jena.sparql.expr.aggregate.AggCountVar;
+import org.apache.jena.sparql.expr.aggregate.AggMax;
+import org.apache.jena.sparql.expr.aggregate.AggMaxDistinct;
+import org.apache.jena.sparql.expr.aggregate.AggMin;
+import org.apache.jena.sparql.expr.aggregate.AggMinDistinct;
+import org.apache.jena.sparql.expr.aggregate.AggSum;
+import org.apache.jena.sparql.expr.aggregate.Aggregator;
+import org.apache.jena.sparql.expr.aggregate.AggregatorFactory;
+import org.apache.jena.sparql.util.Symbol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+
+/**
+ * Pushes the operators which surround a service into the remote query,
+ * so that rows are filtered, deduplicated, projected and limited
+ * at the source rather than after their transfer:
+ * <ul>
+ *     <li>filter conjuncts which only depend on variables that the service always binds</li>
+ *     <li>DISTINCT/REDUCED of the query into the services below (the remote duplicates would be eliminated anyway)</li>
+ *     <li>the projection of the query onto the service variables which are used elsewhere</li>
+ *     <li>LIMIT (together with ORDER BY) of the query into single services or the branches of a union</li>
+ *     <li>decomposable aggregates (COUNT, SUM, MIN, MAX, AVG) over services or a union of services
+ *     as partial aggregates per service which are combined locally</li>
+ * </ul>
+ * The local operators are kept (except for the projection and the split aggregates), the pushed ones are a mere reduction of the remote results.
+ * Nested services (which are executed remotely) are left alone.
+ */
+public class ServicePushdown {
+
+    public static final Symbol PUSHDOWN_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#federationPushdown");
+    public static final Symbol AGGREGATES_SYMBOL = Symbol.create("https://w3id.org/catenax/ontology/common#federationAggregates");
+    public static final String PARTIAL_PREFIX = ".partial";
+
+    protected final boolean aggregates;
+
+    /**
+     * creates a new pushdown which also splits aggregates
+     */
+    public ServicePushdown() {
+        this(true);
+    }
+
+    /**
+     * creates a new pushdown
+     *
+     * @param aggregates whether decomposable aggregates should be split into remote partial aggregates
+     */
+    public ServicePushdown(boolean aggregates) {
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * rewrites a query
+     *
+     * @param op the query operator
+     * @return operator with the pushed down services
+     */
+    public Op rewrite(Op op) {
+        op = pushFilters(op);
+        if (aggregates) {
+            op = pushAggregates(op);
+        }
+        return pushModifiers(op);
+    }
+
+    /**
+     * pushes all filters of the query (bottom up)
+     *
+     * @param op operator
+     * @return operator with the pushed filters
+     */
+    protected Op pushFilters(Op op) {
+        if (op instanceof OpService) {
+            return op;
+        }
+        Op result = rebuild(op, this::pushFilters);
+        if (result instanceof OpFilter) {
+            OpFilter opFilter = (OpFilter) result;
+            Op sub = pushFilter(opFilter.getExprs(), opFilter.getSubOp());
+            if (sub != opFilter.getSubOp()) {
+                result = opFilter.copy(sub);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * pushes the conjuncts of a filter as far as the values of their variables
+     * cannot change anymore
+     *
+     * @param exprs the conjuncts
+     * @param op    the filtered operator
+     * @return operator with the pushed conjuncts
+     */
+    protected Op pushFilter(ExprList exprs, Op op) {
+        if (op instanceof OpService) {
+            OpService opService = (OpService) op;
+            ServiceModifiers modifiers = ServiceModifiers.of(opService.getSubOp());
+            if (modifiers.hasSlice()) {
+                return op;
+            }
+            Set<Var> fixed = OpVars.fixedVars(opService.getSubOp());
+            ExprList present = modifiers.getPattern() instanceof OpFilter ? ((OpFilter) modifiers.getPattern()).getExprs() : new ExprList();
+            ExprList pushed = new ExprList();
+            for (Expr expr : exprs) {
+                if (isPortable(expr) && fixed.containsAll(expr.getVarsMentioned()) && !present.getList().contains(expr)) {
+                    pushed.add(expr);
+                }
+            }
+            if (pushed.isEmpty()) {
+                return op;
+            }
+            modifiers.setPattern(OpFilter.filterBy(pushed, modifiers.getPattern()));
+            return new OpService(opService.getService(), modifiers.build(), opService.getSilent());
+        }
+        if (op instanceof OpJoin || op instanceof OpSequence || op instanceof OpUnion) {
+            return rebuild(op, sub -> pushFilter(exprs, sub));
+        }
+        if (op instanceof OpLeftJoin || op instanceof OpConditional) {
+            // only the left-hand side binds its variables in every row
+            Op2 opOptional = (Op2) op;
+            Op left = pushFilter(exprs, opOptional.getLeft());
+            return left == opOptional.getLeft() ? op : opOptional.copy(left, opOptional.getRight());
+        }
+        if (op instanceof OpFilter) {
+            Op sub = pushFilter(exprs, ((OpFilter) op).getSubOp());
+            return sub == ((OpFilter) op).getSubOp() ? op : ((OpFilter) op).copy(sub);
+        }
+        if (op instanceof OpExtend) {
+            OpExtend opExtend = (OpExtend) op;
+            ExprList below = new ExprList();
+            for (Expr expr : exprs) {
+                if (Collections.disjoint(expr.getVarsMentioned(), opExtend.getVarExprList().getVars())) {
+                    below.add(expr);
+                }
+            }
+            Op sub = pushFilter(below, opExtend.getSubOp());
+            return sub == opExtend.getSubOp() ? op : opExtend.copy(sub);
+        }
+        return op;
+    }
+
+    /**
+     * splits all decomposable aggregates of the query (bottom up)
+     *
+     * @param op operator
+     * @return operator with the split aggregates
+     */
+    protected Op pushAggregates(Op op) {
+        if (op instanceof OpService) {
+            return op;
+        }
+        Op result = rebuild(op, this::pushAggregates);
+        if (result instanceof OpGroup) {
+            Op split = splitGroup((OpGroup) result);
+            if (split != null) {
+                result = split;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * splits a grouping over a service (or a union of services) into
+     * partial groupings which are computed by the services and a local
+     * grouping which combines the partial results (COUNT and SUM are summed up,
+     * MIN and MAX are minimized/maximized, AVG is split into SUM and COUNT)
+     *
+     * @param opGroup the grouping
+     * @return the split grouping, null if the grouping cannot be split
+     */
+    protected Op splitGroup(OpGroup opGroup) {
+        Op sub = opGroup.getSubOp();
+        ExprList filters = new ExprList();
+        if (sub instanceof OpFilter) {
+            // only filters which have been completely pushed into the services can be skipped
+            filters = ((OpFilter) sub).getExprs();
+            sub = ((OpFilter) sub).getSubOp();
+        }
+        List<Op> branches = new ArrayList<>();
+        collectBranches(sub, branches);
+        for (Op branch : branches) {
+            if (!(branch instanceof OpService) || !isAggregatable((OpService) branch) || !isFiltered(ServiceModifiers.of(((OpService) branch).getSubOp()), filters)) {
+                return null;
+            }
+        }
+        if (!isPortable(opGroup.getGroupVars())) {
+            return null;
+        }
+        int hashCode = Math.abs(opGroup.hashCode());
+        List<ExprAggregator> partials = new ArrayList<>();
+        VarExprList partialVars = new VarExprList();
+        List<ExprAggregator> combined = new ArrayList<>();
+        VarExprList averages = new VarExprList();
+        for (ExprAggregator aggregator : opGroup.getAggregators()) {
+            Aggregator function = aggregator.getAggregator();
+            if (function.getExprList() != null && !isPortable(function.getExprList())) {
+                return null;
+            }
+            if (function instanceof AggCount || function instanceof AggCountVar || function instanceof AggSum) {
+                // a failed silent service contributes an empty row
+                Expr partial = partial(function, partials, partialVars, hashCode);
+                combined.add(new ExprAggregator(aggregator.getVar(), AggregatorFactory.createSum(false,
+                        function instanceof AggSum ? partial : new E_Coalesce(new ExprList(List.of(partial, NodeValue.nvZERO))))));
+            } else if (function instanceof AggMin || function instanceof AggMinDistinct) {
+                combined.add(new ExprAggregator(aggregator.getVar(), AggregatorFactory.createMin(false, partial(function, partials, partialVars, hashCode))));
+            } else if (function instanceof AggMax || function instanceof AggMaxDistinct) {
+                combined.add(new ExprAggregator(aggregator.getVar(), AggregatorFactory.createMax(false, partial(function, partials, partialVars, hashCode))));
+            } else if (function instanceof AggAvg) {
+                Expr arg = function.getExprList().get(0);
+                Var sum = Var.alloc(aggregator.getVar().getVarName() + "sum");
+                Var count = Var.alloc(aggregator.getVar().getVarName() + "count");
+                combined.add(new ExprAggregator(sum, AggregatorFactory.createSum(false,
+                        partial(AggregatorFactory.createSum(false, arg), partials, partialVars, hashCode))));
+                combined.add(new ExprAggregator(count, AggregatorFactory.createSum(false, new E_Coalesce(new ExprList(List.of(
+                        partial(AggregatorFactory.createCountExpr(false, arg), partials, partialVars, hashCode), NodeValue.nvZERO))))));
+                // the average of no values is zero
+                averages.add(aggregator.getVar(), new E_Conditional(new E_Equals(new ExprVar(count), NodeValue.nvZERO), NodeValue.nvZERO,
+                        new E_Divide(new ExprVar(sum), new ExprVar(count))));
+            } else {
+                // distinct counts, sums and averages, samples and concatenations cannot be combined
+                return null;
+            }
+        }
+        List<Var> resultVars = new ArrayList<>(opGroup.getGroupVars().getVars());
+        resultVars.addAll(partialVars.getVars());
+        Op union = null;
+        for (Op branch : branches) {
+            OpService opService = (OpService) branch;
+            Op remote = OpGroup.create(opService.getSubOp(), opGroup.getGroupVars(), partials);
+            remote = new OpProject(OpExtend.create(remote, partialVars), resultVars);
+            union = OpUnion.create(union, new OpService(opService.getService(), remote, opService.getSilent()));
+        }
+        Op result = OpGroup.create(union, new VarExprList(opGroup.getGroupVars().getVars()), combined);
+        return averages.isEmpty() ? result : OpExtend.create(result, averages);
+    }
+
+    /**
+     * finds the partial grouping which has been pushed into a service
+     *
+     * @param subOp the pattern of the service
+     * @return the remote grouping, null if the service does not compute partial aggregates
+     */
+    public static OpGroup getPartialGroup(Op subOp) {
+        Op pattern = ServiceModifiers.of(subOp).getPattern();
+        if (!(pattern instanceof OpExtend) || !(((OpExtend) pattern).getSubOp() instanceof OpGroup)) {
+            return null;
+        }
+        OpGroup opGroup = (OpGroup) ((OpExtend) pattern).getSubOp();
+        for (ExprAggregator aggregator : opGroup.getAggregators()) {
+            if (!aggregator.getVar().getVarName().startsWith(PARTIAL_PREFIX)) {
+                return null;
+            }
+        }
+        return opGroup.getAggregators().isEmpty() ? null : opGroup;
+    }
+
+    /**
+     * computes the partial aggregates of a service locally. This is needed if the
+     * service turns out to be a skill which ignores the pushed grouping.
+     *
+     * @param subOp     the pattern of the service (with the partial grouping)
+     * @param boundVars variables of the input bindings which must be kept apart
+     * @param rows      the raw results of the grouped pattern
+     * @param execCxt   the execution context
+     * @return the partial aggregates of the service
+     */
+    public static QueryIterator aggregateLocally(Op subOp, Set<String> boundVars, QueryIterator rows, ExecutionContext execCxt) {
+        OpExtend opExtend = (OpExtend) ServiceModifiers.of(subOp).getPattern();
+        OpGroup opGroup = (OpGroup) opExtend.getSubOp();
+        QueryIterator result = rows;
+        if (opGroup.getSubOp() instanceof OpFilter) {
+            // skills do not apply the pushed filters either
+            for (Expr expr : ((OpFilter) opGroup.getSubOp()).getExprs()) {
+                result = new QueryIterFilterExpr(result, expr, execCxt);
+            }
+        }
+        VarExprList groupVars = new VarExprList(opGroup.getGroupVars());
+        List<Var> resultVars = new ArrayList<>(opGroup.getGroupVars().getVars());
+        resultVars.addAll(opExtend.getVarExprList().getVars());
+        for (String boundVar : boundVars) {
+            Var var = Var.alloc(boundVar);
+            if (!groupVars.contains(var)) {
+                groupVars.add(var);
+                resultVars.add(var);
+            }
+        }
+        result = new QueryIterGroup(result, groupVars, opGroup.getAggregators(), execCxt);
+        result = new QueryIterAssign(result, opExtend.getVarExprList(), execCxt, true);
+        return new QueryIterProject(result, resultVars, execCxt);
+    }
+
+    /**
+     * registers a partial aggregate which is computed remotely
+     *
+     * @param function    the aggregate function
+     * @param partials    the remote aggregates to add to
+     * @param partialVars the remote result variables to add to
+     * @param hashCode    the hash code of the original grouping
+     * @return expression referring to the partial result
+     */
+    protected static Expr partial(Aggregator function, List<ExprAggregator> partials, VarExprList partialVars, int hashCode) {
+        for (int index = 0; index < partials.size(); index++) {
+            if (partials.get(index).getAggregator().equals(function)) {
+                return new ExprVar(partialVars.getVars().get(index));
+            }
+        }
+        Var aggregate = Var.alloc(PARTIAL_PREFIX + partials.size());
+        Var result = Var.alloc("partial" + hashCode + "_" + partials.size());
+        partials.add(new ExprAggregator(aggregate, function));
+        partialVars.add(result, new ExprVar(aggregate));
+        return new ExprVar(result);
+    }
+
+    /**
+     * checks whether a service can compute partial aggregates. Skills are
+     * invoked with their parameters rather than with a query, hence
+     * we require a constant service which addresses a graph (a dataspace graph asset
+     * or a plain SPARQL endpoint) and which matches a real graph pattern.
+     *
+     * @param opService the service
+     * @return whether the service is able to group its results
+     */
+    protected static boolean isAggregatable(OpService opService) {
+        if (!opService.getService().isURI()) {
+            // variable services may turn out to be skills
+            return false;
+        }
+        String serviceUrl = opService.getService().getURI();
+        if (serviceUrl.contains("Skill")) {
+            return false;
+        }
+        Matcher edcMatcher = DataspaceServiceExecutor.EDC_TARGET_ADDRESS_PATTERN.matcher(serviceUrl);
+        if (edcMatcher.matches()) {
+            // assets without a graph in their name could be negotiated as skills
+            String asset = edcMatcher.group("asset");
+            if (asset != null && asset.length() > 0 && !asset.contains("Graph")) {
+                return false;
+            }
+        }
+        boolean[] matching = new boolean[1];
+        OpWalker.walk(opService.getSubOp(), new OpVisitorBase() {
+            @Override
+            public void visit(OpBGP opBgp) {
+                matching[0] = matching[0] || !opBgp.getPattern().isEmpty();
+            }
+
+            @Override
+            public void visit(OpTriple opTriple) {
+                matching[0] = true;
+            }
+
+            @Override
+            public void visit(OpQuadPattern opQuads) {
+                matching[0] = matching[0] || !opQuads.getPattern().isEmpty();
+            }
+
+            @Override
+            public void visit(OpPath opPath) {
+                matching[0] = true;
+            }
+        });
+        return matching[0];
+    }
+
+    /**
+     * checks whether filters have already been applied by a service
+     *
+     * @param modifiers the modifiers of the service
+     * @param filters   the filter conjuncts
+     * @return whether all conjuncts are part of the remote query
+     */
+    protected static boolean isFiltered(ServiceModifiers modifiers, ExprList filters) {
+        return filters.isEmpty() || modifiers.getPattern() instanceof OpFilter && ((OpFilter) modifiers.getPattern()).getExprs().getList().containsAll(filters.getList());
+    }
+
+    /**
+     * collects the branches of a (nested) union
+     *
+     * @param op       operator
+     * @param branches list of branches to add to
+     */
+    protected static void collectBranches(Op op, List<Op> branches) {
+        if (op instanceof OpUnion) {
+            collectBranches(((OpUnion) op).getLeft(), branches);
+            collectBranches(((OpUnion) op).getRight(), branches);
+        } else {
+            branches.add(op);
+        }
+    }
+
+    /**
+     * pushes the solution modifiers of the query (top down)
+     *
+     * @param op operator
+     * @return operator with the pushed modifiers
+     */
+    protected Op pushModifiers(Op op) {
+        if (op instanceof OpSlice) {
+            OpSlice opSlice = (OpSlice) op;
+            Op sub = pushModifiers(opSlice.getSubOp());
+            if (opSlice.getLength() != Query.NOLIMIT) {
+                sub = pushLimit(sub, Math.max(opSlice.getStart(), 0) + opSlice.getLength(), null, new ExprList());
+            }
+            return sub == opSlice.getSubOp() ? op : opSlice.copy(sub);
+        }
+        if (op instanceof OpTopN) {
+            OpTopN opTop = (OpTopN) op;
+            Op sub = pushLimit(pushModifiers(opTop.getSubOp()), opTop.getLimit(), opTop.getConditions(), new ExprList());
+            return sub == opTop.getSubOp() ? op : opTop.copy(sub);
+        }
+        if (op instanceof OpDistinct || op instanceof OpReduced) {
+            Op1 opDuplicates = (Op1) op;
+            Op sub = pushDistinct(pushModifiers(opDuplicates.getSubOp()), op instanceof OpDistinct);
+            return sub == opDuplicates.getSubOp() ? op : opDuplicates.copy(sub);
+        }
+        if (op instanceof OpProject) {
+            OpProject opProject = (OpProject) op;
+            Op sub = pushModifiers(opProject.getSubOp());
+            sub = pushProject(sub, opProject.getVars());
+            return sub == opProject.getSubOp() ? op : opProject.copy(sub);
+        }
+        return op;
+    }
+
+    /**
+     * pushes a limit (and an order) through operators which do not change the number or the order of rows
+     *
+     * @param op         operator
+     * @param limit      maximal number of rows needed
+     * @param conditions order of the rows, null if unordered
+     * @param filters    the filters between the limit and the operator
+     * @return operator with the pushed limit
+     */
+    protected Op pushLimit(Op op, long limit, List<SortCondition> conditions, ExprList filters) {
+        if (op instanceof OpService) {
+            OpService opService = (OpService) op;
+            ServiceModifiers modifiers = ServiceModifiers.of(opService.getSubOp());
+            if (modifiers.hasSlice()) {
+                return op;
+            }
+            if (!isFiltered(modifiers, filters)) {
+                // a remaining local filter may drop remote rows
+                return op;
+            }
+            if (conditions != null) {
+                Set<Var> visible = OpVars.visibleVars(opService.getSubOp());
+                for (SortCondition condition : conditions) {
+                    if (!isPortable(condition.getExpression()) || !visible.containsAll(condition.getExpression().getVarsMentioned())) {
+                        return op;
+                    }
+                }
+                modifiers.setConditions(conditions);
+            }
+            modifiers.setSlice(Query.NOLIMIT, limit);
+            return new OpService(opService.getService(), modifiers.build(), opService.getSilent());
+        }
+        if (op instanceof OpUnion) {
+            return rebuild(op, sub -> pushLimit(sub, limit, conditions, filters));
+        }
+        if (op instanceof OpProject || op instanceof OpExtend) {
+            return rebuild(op, sub -> pushLimit(sub, limit, conditions, filters));
+        }
+        if (op instanceof OpFilter) {
+            ExprList allFilters = ExprList.copy(filters);
+            allFilters.addAll(((OpFilter) op).getExprs());
+            return rebuild(op, sub -> pushLimit(sub, limit, conditions, allFilters));
+        }
+        if (op instanceof OpOrder && conditions == null) {
+            return rebuild(op, sub -> pushLimit(sub, limit, ((OpOrder) op).getConditions(), filters));
+        }
+        return op;
+    }
+
+    /**
+     * pushes duplicate elimination through operators which preserve it
+     *
+     * @param op       operator
+     * @param distinct whether duplicates must be eliminated (otherwise they may be)
+     * @return operator with the pushed duplicate elimination
+     */
+    protected Op pushDistinct(Op op, boolean distinct) {
+        if (op instanceof OpService) {
+            OpService opService = (OpService) op;
+            ServiceModifiers modifiers = ServiceModifiers.of(opService.getSubOp());
+            if (modifiers.hasSlice() || modifiers.isDistinct() || modifiers.isReduced()) {
+                return op;
+            }
+            modifiers.setDuplicates(distinct, !distinct);
+            return new OpService(opService.getService(), modifiers.build(), opService.getSilent());
+        }
+        if (op instanceof OpFilter && !isPortable(((OpFilter) op).getExprs())) {
+            return op;
+        }
+        if (op instanceof OpExtend && !isPortable(((OpExtend) op).getVarExprList())) {
+            return op;
+        }
+        if (op instanceof OpProject || op instanceof OpFilter || op instanceof OpExtend || op instanceof OpOrder ||
+                op instanceof OpJoin || op instanceof OpSequence || op instanceof OpLeftJoin || op instanceof OpConditional || op instanceof OpUnion) {
+            return rebuild(op, sub -> pushDistinct(sub, distinct));
+        }
+        return op;
+    }
+
+    /**
+     * narrows the variables of the services to the ones which are projected or used elsewhere
+     *
+     * @param op   operator
+     * @param vars projected variables
+     * @return operator with the narrowed services
+     */
+    protected Op pushProject(Op op, List<Var> vars) {
+        List<OpService> services = new ArrayList<>();
+        collectServices(op, services);
+        for (OpService opService : services) {
+            ServiceModifiers modifiers = ServiceModifiers.of(opService.getSubOp());
+            if (modifiers.isDistinct() || modifiers.isReduced()) {
+                continue;
+            }
+            Set<Var> used = new HashSet<>(vars);
+            mentionedVars(replace(op, opService, OpTable.unit()), used);
+            if (opService.getService().isVariable()) {
+                used.add(Var.alloc(opService.getService()));
+            }
+            Set<Var> visible = OpVars.visibleVars(opService.getSubOp());
+            List<Var> needed = new ArrayList<>();
+            for (Var var : visible) {
+                if (used.contains(var)) {
+                    needed.add(var);
+                }
+            }
+            if (needed.isEmpty() || needed.size() == visible.size()) {
+                continue;
+            }
+            modifiers.setVars(needed);
+            op = replace(op, opService, new OpService(opService.getService(), modifiers.build(), opService.getSilent()));
+        }
+        return op;
+    }
+
+    /**
+     * collects the variables mentioned by an operator, including the
+     * arguments of aggregates and the top-k conditions
+     *
+     * @param op   operator
+     * @param vars set of variables to add to
+     */
+    protected static void mentionedVars(Op op, Set<Var> vars) {
+        OpVars.mentionedVars(op, vars);
+        OpWalker.walk(op, new OpVisitorBase() {
+            @Override
+            public void visit(OpGroup opGroup) {
+                for (ExprAggregator aggregator : opGroup.getAggregators()) {
+                    if (aggregator.getAggregator().getExprList() != null) {
+                        vars.addAll(aggregator.getAggregator().getExprList().getVarsMentioned());
+                    }
+                }
+            }
+
+            @Override
+            public void visit(OpTopN opTop) {
+                opTop.getConditions().forEach(condition -> vars.addAll(condition.getExpression().getVarsMentioned()));
+            }
+        });
+    }
+
+    /**
+     * checks whether an expression yields the same result remotely
+     *
+     * @param expr expression
+     * @return whether the expression may be evaluated by another agent
+     */
+    protected static boolean isPortable(Expr expr) {
+        if (expr instanceof ExprFunctionOp || expr instanceof ExprAggregator) {
+            // (not) exists and aggregates depend on the local context
+            return false;
+        }
+        if (expr instanceof E_Random || expr instanceof E_UUID || expr instanceof E_StrUUID || expr instanceof E_BNode || expr instanceof E_Now) {
+            return false;
+        }
+        if (expr instanceof E_Function && !((E_Function) expr).getFunctionIRI().startsWith(XSDDatatype.XSD)) {
+            // custom functions may not be known remotely (casts are)
+            return false;
+        }
+        if (expr instanceof ExprFunction) {
+            for (Expr arg : ((ExprFunction) expr).getArgs()) {
+                if (!isPortable(arg)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * checks whether a list of expressions yields the same results remotely
+     *
+     * @param exprs expressions
+     * @return whether all expressions may be evaluated by another agent
+     */
+    protected static boolean isPortable(ExprList exprs) {
+        for (Expr expr : exprs) {
+            if (!isPortable(expr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * checks whether a list of assignments yields the same results remotely
+     *
+     * @param assignments assignments
+     * @return whether all assignments may be evaluated by another agent
+     */
+    protected static boolean isPortable(VarExprList assignments) {
+        for (Var var : assignments.getVars()) {
+            if (!isPortable(assignments.getExpr(var))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * collects the (outermost) services of an operator
+     *
+     * @param op       operator
+     * @param services list of services to add to
+     */
+    protected static void collectServices(Op op, List<OpService> services) {
+        if (op instanceof OpService) {
+            services.add((OpService) op);
+        } else {
+            rebuild(op, sub -> {
+                collectServices(sub, services);
+                return sub;
+            });
+        }
+    }
+
+    /**
+     * replaces an operator (instance) in a tree
+     *
+     * @param op          the tree
+     * @param target      the operator to replace
+     * @param replacement the new operator
+     * @return the new tree
+     */
+    protected static Op replace(Op op, Op target, Op replacement) {
+        if (op == target) {
+            return replacement;
+        }
+        if (op instanceof OpService) {
+            return op;
+        }
+        return rebuild(op, sub -> replace(sub, target, replacement));
+    }
+
+    /**
+     * copies an operator with rewritten children (services are not entered)
+     *
+     * @param op      the operator
+     * @param rewrite rewrite of the children
+     * @return operator with the rewritten children, the operator itself if nothing changed
+     */
+    protected static Op rebuild(Op op, UnaryOperator<Op> rewrite) {
+        if (op instanceof OpService) {
+            return op;
+        }
+        if (op instanceof Op1) {
+            Op1 op1 = (Op1) op;
+            Op sub = rewrite.apply(op1.getSubOp());
+            return sub == op1.getSubOp() ? op : op1.copy(sub);
+        }
+        if (op instanceof Op2) {
+            Op2 op2 = (Op2) op;
+            Op left = rewrite.apply(op2.getLeft());
+            Op right = rewrite.apply(op2.getRight());
+            return left == op2.getLeft() && right == op2.getRight() ? op : op2.copy(left, right);
+        }
+        if (op instanceof OpN) {
+            OpN opN = (OpN) op;
+            List<Op> elements = new ArrayList<>(opN.size());
+            boolean changed = false;
+            for (Op element : opN.getElements()) {
+                Op rewritten = rewrite.apply(element);
+                changed = changed || rewritten != element;
+                elements.add(rewritten);
+            }
+            return changed ? opN.copy(elements) : op;
+        }
+        return op;
+    }
+}
@@ -0,0 +1,244 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.OpWalker;
+import org.apache.jena.sparql.algebra.Transformer;
+import org.apache.jena.sparql.algebra.op.OpGraph;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * Resolves dataspace (edc/edcs) service addresses into routes, i.e., the connector to
+ * negotiate with, the asset to negotiate and the service pattern to send. For
+ * addresses without an explicit asset, the graph asset is deduced by rewriting the
+ * graphs of the pattern (see {@link GraphRewrite}). As this only depends on the address,
+ * the pattern and the bound graph variables, the routes are remembered (least recently used).
+ */
+public class ServiceRouteResolver {
+
+    /**
+     * a parsed service address
+     */
+    public static class Address {
+        final boolean dataspace;
+        final String connector;
+        final String connectorUrl;
+        final String asset;
+        final String params;
+
+        Address(boolean dataspace, String connector, String connectorUrl, String asset, String params) {
+            this.dataspace = dataspace;
+            this.connector = connector;
+            this.connectorUrl = connectorUrl;
+            this.asset = asset;
+            this.params = params;
+        }
+    }
+
+    /**
+     * a resolved dataspace route
+     */
+    public static class Route {
+        final Address address;
+        final String asset;
+        final Op subOp;
+
+        Route(Address address, String asset, Op subOp) {
+            this.address = address;
+            this.asset = asset;
+            this.subOp = subOp;
+        }
+
+        /**
+         * applies the route to a service operator
+         *
+         * @param opService the original operator
+         * @return the operator with the rewritten pattern (or the original operator)
+         */
+        OpService apply(OpService opService) {
+            if (subOp == null) {
+                return opService;
+            }
+            return new OpService(opService.getService(), subOp, opService.getSilent());
+        }
+    }
+
+    protected final Monitor monitor;
+    protected final AgentConfig config;
+    protected final Map<String, Address> addresses;
+    protected final Map<List<Object>, Route> routes;
+
+    /**
+     * creates a new resolver
+     *
+     * @param monitor logging subsystem
+     * @param config  agent configuration
+     */
+    public ServiceRouteResolver(Monitor monitor, AgentConfig config) {
+        this.monitor = monitor;
+        this.config = config;
+        int capacity = config.getFederationRouteCacheSize();
+        this.addresses = createCache(capacity);
+        this.routes = createCache(capacity);
+    }
+
+    /**
+     * creates a synchronized, least-recently-used map
+     *
+     * @param capacity maximal number of entries, non-positive disables the cache
+     * @return new cache
+     */
+    protected static <K, V> Map<K, V> createCache(int capacity) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * parses a service address
+     *
+     * @param serviceUrl uri of the target service
+     * @return parsed address
+     */
+    public Address parse(String serviceUrl) {
+        Address address = addresses.get(serviceUrl);
+        if (address == null) {
+            Matcher edcMatcher = DataspaceServiceExecutor.EDC_TARGET_ADDRESS_PATTERN.matcher(serviceUrl);
+            if (!edcMatcher.matches()) {
+                address = new Address(false, null, null, null, null);
+            } else {
+                String connector = edcMatcher.group("connector");
+                String connectorUrl;
+                if (connector == null || connector.length() == 0) {
+                    connectorUrl = config.getControlPlaneIdsUrl();
+                } else if ("edcs".equals(edcMatcher.group("protocol"))) {
+                    connectorUrl = "https://" + connector;
+                } else {
+                    connectorUrl = "http://" + connector;
+                }
+                address = new Address(true, connector, connectorUrl, edcMatcher.group("asset"), edcMatcher.group("params"));
+            }
+            addresses.put(serviceUrl, address);
+        }
+        return address;
+    }
+
+    /**
+     * resolves the route of a dataspace service
+     *
+     * @param opService  the unbound operator
+     * @param serviceUrl uri of the target service
+     * @param bindings   the current bindings
+     * @return the route, null if the service is not a dataspace address
+     * @throws QueryExecException if no unique graph asset could be found
+     */
+    public Route resolve(OpService opService, String serviceUrl, List<Binding> bindings) {
+        Address address = parse(serviceUrl);
+        if (!address.dataspace) {
+            return null;
+        }
+        if (address.asset != null && address.asset.length() > 0) {
+            return new Route(address, address.asset, null);
+        }
+        Op subOp = opService.getSubOp();
+        List<Object> key = Arrays.asList(serviceUrl, subOp, getBoundGraphs(subOp, bindings));
+        Route route = routes.get(key);
+        if (route == null) {
+            route = rewrite(address, opService, serviceUrl, bindings);
+            routes.put(key, route);
+        }
+        return route;
+    }
+
+    /**
+     * deduces the graph asset by rewriting the pattern
+     *
+     * @param address    the parsed address
+     * @param opService  the unbound operator
+     * @param serviceUrl uri of the target service
+     * @param bindings   the current bindings
+     * @return the new route
+     */
+    protected Route rewrite(Address address, OpService opService, String serviceUrl, List<Binding> bindings) {
+        GraphRewriteVisitor grv = new GraphRewriteVisitor();
+        GraphRewrite gr = new GraphRewrite(monitor, bindings, grv);
+        Op transformed = Transformer.transform(gr, opService.getSubOp(), grv, null);
+        Set<String> graphNames = gr.getGraphNames();
+        if (graphNames.size() > 1) {
+            throw new QueryExecException("There are several graph assets (currently not supported due to negotiation strategy, please rewrite your query) under EDC-based service: " + serviceUrl);
+        }
+        if (graphNames.isEmpty()) {
+            throw new QueryExecException("There is no graph asset under EDC-based service: " + serviceUrl);
+        }
+        return new Route(address, graphNames.iterator().next(), transformed);
+    }
+
+    /**
+     * determines the values of the graph variables which a rewrite would use
+     * (the first binding of each variable)
+     *
+     * @param subOp    the service pattern
+     * @param bindings the current bindings
+     * @return graph values in the order of the graph variables, null if unbound
+     */
+    protected static List<Node> getBoundGraphs(Op subOp, List<Binding> bindings) {
+        Set<Var> graphVars = new LinkedHashSet<>();
+        OpWalker.walk(subOp, new OpVisitorBase() {
+            @Override
+            public void visit(OpGraph opGraph) {
+                if (opGraph.getNode().isVariable()) {
+                    graphVars.add((Var) opGraph.getNode());
+                }
+            }
+        });
+        List<Node> values = new ArrayList<>(graphVars.size());
+        for (Var graphVar : graphVars) {
+            Node bound = null;
+            if (bindings != null) {
+                for (Binding binding : bindings) {
+                    if (binding.contains(graphVar)) {
+                        bound = binding.get(graphVar);
+                        break;
+                    }
+                }
+            }
+            values.add(bound);
+        }
+        return values;
+    }
+}
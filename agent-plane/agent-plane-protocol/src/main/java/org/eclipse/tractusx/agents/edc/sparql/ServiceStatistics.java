@@ -0,0 +1,235 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import java.util.Arrays;
+
+/**
+ * Observed call statistics of a single federation target (connector/asset or endpoint).
+ * Values are exponentially weighted moving averages, so that
+ * recent observations dominate. In addition, the latencies of the most
+ * recent successful calls are kept for computing percentiles.
+ */
+public class ServiceStatistics {
+
+    /**
+     * weight of a new observation
+     */
+    public static final double ALPHA = 0.3;
+
+    /**
+     * number of recent latencies kept for percentiles
+     */
+    public static final int WINDOW = 128;
+
+    protected final String target;
+    protected long calls;
+    protected long failures;
+    protected double latency = -1;
+    protected double latencyPerBinding = -1;
+    protected double bindingsPerCall = -1;
+    protected double errorRate = 0;
+    protected double resultsPerBinding = -1;
+    protected long resultSamples;
+    protected long fullResults = -1;
+    protected final long[] recentLatencies = new long[WINDOW];
+    protected int recentCount;
+
+    /**
+     * create new statistics
+     *
+     * @param target the target key
+     */
+    public ServiceStatistics(String target) {
+        this.target = target;
+    }
+
+    protected static double average(double current, double observation) {
+        if (current < 0) {
+            return observation;
+        }
+        return ALPHA * observation + (1 - ALPHA) * current;
+    }
+
+    /**
+     * record a successful call
+     *
+     * @param bindings number of bindings sent
+     * @param millis   latency of the call
+     */
+    public synchronized void recordSuccess(long bindings, long millis) {
+        calls++;
+        latency = average(latency, millis);
+        latencyPerBinding = average(latencyPerBinding, (double) millis / Math.max(bindings, 1));
+        bindingsPerCall = average(bindingsPerCall, bindings);
+        errorRate = average(errorRate, 0);
+        recentLatencies[(int) ((calls - failures - 1) % WINDOW)] = millis;
+        recentCount = Math.min(recentCount + 1, WINDOW);
+    }
+
+    /**
+     * record a failed call
+     *
+     * @param bindings number of bindings sent
+     */
+    public synchronized void recordFailure(long bindings) {
+        calls++;
+        failures++;
+        bindingsPerCall = average(bindingsPerCall, bindings);
+        errorRate = average(errorRate, 1);
+    }
+
+    /**
+     * record the number of results which a completely consumed call has produced
+     *
+     * @param bindings number of bindings sent
+     * @param results  number of results
+     */
+    public synchronized void recordResults(long bindings, long results) {
+        resultSamples++;
+        resultsPerBinding = average(resultsPerBinding, (double) results / Math.max(bindings, 1));
+    }
+
+    /**
+     * record the number of results of the complete (unbound) pattern
+     *
+     * @param results number of results (or a number above the fetch limit if the pattern was too large)
+     */
+    public synchronized void recordFullResults(long results) {
+        fullResults = results;
+    }
+
+    /**
+     * access
+     *
+     * @return the target key
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * access
+     *
+     * @return number of recorded calls
+     */
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    /**
+     * access
+     *
+     * @return number of recorded failures
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * access
+     *
+     * @return average latency in milliseconds, negative if unknown
+     */
+    public synchronized double getLatency() {
+        return latency;
+    }
+
+    /**
+     * access
+     *
+     * @return average latency per sent binding in milliseconds, negative if unknown
+     */
+    public synchronized double getLatencyPerBinding() {
+        return latencyPerBinding;
+    }
+
+    /**
+     * access
+     *
+     * @return average number of bindings per call, negative if unknown
+     */
+    public synchronized double getBindingsPerCall() {
+        return bindingsPerCall;
+    }
+
+    /**
+     * access
+     *
+     * @return average error rate between 0 and 1
+     */
+    public synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * access
+     *
+     * @return average number of results per sent binding, negative if unknown
+     */
+    public synchronized double getResultsPerBinding() {
+        return resultsPerBinding;
+    }
+
+    /**
+     * access
+     *
+     * @return number of recorded result counts
+     */
+    public synchronized long getResultSamples() {
+        return resultSamples;
+    }
+
+    /**
+     * access
+     *
+     * @return number of results of the complete (unbound) pattern when it has last been fetched, negative if unknown
+     */
+    public synchronized long getFullResults() {
+        return fullResults;
+    }
+
+    /**
+     * access
+     *
+     * @return number of recent latencies available for percentiles
+     */
+    public synchronized int getLatencySamples() {
+        return recentCount;
+    }
+
+    /**
+     * access
+     *
+     * @param percentile the percentile between 0 and 1
+     * @return the given percentile of the recent latencies in milliseconds, negative if unknown
+     */
+    public synchronized long getLatencyPercentile(double percentile) {
+        if (recentCount == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(recentLatencies, recentCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(Math.min(Math.max(percentile, 0), 1) * recentCount) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ServiceStatistics(%s,calls=%d,latency=%.1f,errors=%.2f)", target, getCalls(), getLatency(), getErrorRate());
+    }
+}
@@ -34,11 +34,15 @@ import org.apache.jena.fuseki.servlets.HttpAction;
 import org.apache.jena.fuseki.servlets.SPARQL_QueryGeneral;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecException;
+import org.apache.jena.query.QueryExecution;
 import org.apache.jena.sparql.ARQConstants;
 import org.apache.jena.sparql.algebra.optimize.RewriteFactory;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.apache.jena.sparql.engine.main.OpExecutorFactory;
+import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.service.ServiceExecutorRegistry;
+import org.apache.jena.sparql.util.Context;
 import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.edc.spi.types.TypeManager;
 import org.eclipse.tractusx.agents.edc.AgentConfig;
@@ -55,6 +59,9 @@ import org.eclipse.tractusx.agents.edc.rdf.RdfStore;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -79,6 +86,9 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
     protected final OperationRegistry operationRegistry = OperationRegistry.createEmpty();
     protected final DataAccessPointRegistry dataAccessPointRegistry = new DataAccessPointRegistry();
     protected final RewriteFactory optimizerFactory = new OptimizerFactory();
+    protected final FederationStatistics statistics = new FederationStatistics();
+    protected final Map<String, FederationScope> runningQueries = new ConcurrentHashMap<>();
+    protected final OpExecutorFactory opExecutorFactory;
 
     // map EDC monitor to SLF4J (better than the builtin MonitorProvider)
     private final MonitorWrapper monitorWrapper;
@@ -88,6 +98,11 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
 
     public static final String UNSET_BASE = "http://server/unset-base/";
 
+    /**
+     * response header which carries the generated id of a query (under which it can be cancelled)
+     */
+    public static final String QUERY_ID_HEADER = "cx_query_id";
+
     /**
      * create a new sparql processor
      *
@@ -95,6 +110,20 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
      * @param monitor  EDC logging
      */
     public SparqlQueryProcessor(ServiceExecutorRegistry registry, Monitor monitor, AgentConfig config, RdfStore rdfStore, TypeManager typeManager) {
+        this(registry, monitor, config, rdfStore, typeManager, null);
+    }
+
+    /**
+     * create a new sparql processor which runs independent service branches concurrently
+     *
+     * @param registry          service execution registry
+     * @param monitor           EDC logging
+     * @param config            agent config
+     * @param rdfStore          the local store
+     * @param typeManager       type manager
+     * @param branchService     executor for concurrent service branches (must not be bounded by the federated calls), null if they should run one after the other
+     */
+    public SparqlQueryProcessor(ServiceExecutorRegistry registry, Monitor monitor, AgentConfig config, RdfStore rdfStore, TypeManager typeManager, ExecutorService branchService) {
         this.monitor = monitor;
         this.registry = registry;
         this.config = config;
@@ -102,6 +131,7 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
         this.rdfStore = rdfStore;
         this.objectMapper = typeManager.getMapper();
         dataAccessPointRegistry.register(rdfStore.getDataAccessPoint());
+        this.opExecutorFactory = branchService == null ? null : FederationOpExecutor.factory(branchService, config.getFederationUnionParallelism());
     }
 
     /**
@@ -157,8 +187,9 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
         AgentHttpAction action = new AgentHttpAction(++count, monitorWrapper, getJavaxRequest(request), getJavaxResponse(response), skill, graph);
         // Should we check whether this already has been done? the context should be quite static
         action.setRequest(rdfStore.getDataAccessPoint(), rdfStore.getDataService());
-        ServiceExecutorRegistry.set(action.getContext(), registry);
-        action.getContext().set(ARQConstants.sysOptimizerFactory, optimizerFactory);
+        String queryId = registerQuery(prepareExecution(action));
+        response.addHeader(QUERY_ID_HEADER, queryId);
+        response.addHeader("Access-Control-Expose-Headers", QUERY_ID_HEADER);
         List<CatenaxWarning> previous = CatenaxWarning.getWarnings(action.getContext());
         CatenaxWarning.setWarnings(action.getContext(), null);
         try {
@@ -176,10 +207,97 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
         } catch (QueryExecException | JsonProcessingException e) {
             throw new InternalServerErrorException(e.getMessage(), e.getCause());
         } finally {
+            finishExecution(action, queryId);
             CatenaxWarning.setWarnings(action.getContext(), previous);
         }
     }
 
+    /**
+     * prepares the context of an action for the (federated) execution: service executors,
+     * optimizer, federation statistics, pushdown, deadline and the scope of the query
+     *
+     * @param action a jena http action
+     * @return the scope of the query
+     */
+    protected FederationScope prepareExecution(AgentHttpAction action) {
+        Context context = action.getContext();
+        ServiceExecutorRegistry.set(context, registry);
+        context.set(ARQConstants.sysOptimizerFactory, optimizerFactory);
+        if (opExecutorFactory != null) {
+            QC.setFactory(context, opExecutorFactory);
+        }
+        boolean ordering = config.isFederationOrdering();
+        long hashJoinLimit = config.getFederationHashJoinLimit();
+        if (ordering || hashJoinLimit > 0) {
+            // both the service ordering and the join modes are based on the observed statistics
+            context.set(FederationStatistics.STATISTICS_SYMBOL, statistics);
+        }
+        context.set(OptimizeJoinStrategy.ORDERING_SYMBOL, ordering);
+        context.set(DataspaceServiceExecutor.HASH_JOIN_SYMBOL, hashJoinLimit);
+        context.set(ServicePushdown.PUSHDOWN_SYMBOL, config.isFederationPushdown());
+        context.set(ServicePushdown.AGGREGATES_SYMBOL, config.isFederationPushdownAggregates());
+        setFederationDeadline(action);
+        return FederationScope.open(context);
+    }
+
+    /**
+     * unregisters a finished query and closes its scope
+     *
+     * @param action  a jena http action
+     * @param queryId the id of the query, null if the query has not been registered
+     */
+    protected void finishExecution(AgentHttpAction action, String queryId) {
+        FederationScope scope = FederationScope.get(action.getContext());
+        if (queryId != null) {
+            runningQueries.remove(queryId, scope);
+        }
+        scope.close();
+    }
+
+    /**
+     * registers a running query of this agent. The id is generated (and not
+     * chosen by the client), so that nobody can guess or take over the id of another query.
+     *
+     * @param scope the scope of the query
+     * @return the id of the query
+     */
+    protected String registerQuery(FederationScope scope) {
+        String queryId = UUID.randomUUID().toString();
+        runningQueries.put(queryId, scope);
+        return queryId;
+    }
+
+    /**
+     * cancels a running query of this agent: its local execution is aborted,
+     * its outstanding federated calls are cancelled and no further
+     * calls are dispatched
+     *
+     * @param queryId the id of the query
+     * @return whether the query was running
+     */
+    public boolean cancel(String queryId) {
+        FederationScope scope = queryId != null ? runningQueries.get(queryId) : null;
+        if (scope == null) {
+            return false;
+        }
+        monitor.info(String.format("Cancelling query %s", queryId));
+        scope.cancel();
+        return true;
+    }
+
+    /**
+     * marks the point in time after which pending federated calls
+     * of the given action are given up (if configured)
+     *
+     * @param action a jena http action
+     */
+    protected void setFederationDeadline(AgentHttpAction action) {
+        long deadline = config.getFederationDeadline();
+        if (deadline >= 0) {
+            action.getContext().set(DataspaceServiceExecutor.DEADLINE_SYMBOL, System.currentTimeMillis() + deadline);
+        }
+    }
+
     /**
      * execute the given action. Circumvents
      * too strict SPARQL requirements in favor
@@ -217,26 +335,15 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
         // build and populate a SPARQL action from the wrappers
         AgentHttpAction action = new AgentHttpAction(++count, monitorWrapper, requestAdapter, responseAdapter, skill, graph);
         action.setRequest(rdfStore.getDataAccessPoint(), rdfStore.getDataService());
-        ServiceExecutorRegistry.set(action.getContext(), registry);
         action.getContext().set(DataspaceServiceExecutor.TARGET_URL_SYMBOL, request.header(DataspaceServiceExecutor.TARGET_URL_SYMBOL.getSymbol()));
         action.getContext().set(DataspaceServiceExecutor.AUTH_KEY_SYMBOL, targetProperties.getOrDefault(DataspaceServiceExecutor.AUTH_KEY_SYMBOL.getSymbol(), null));
         action.getContext().set(DataspaceServiceExecutor.AUTH_CODE_SYMBOL, targetProperties.getOrDefault(DataspaceServiceExecutor.AUTH_CODE_SYMBOL.getSymbol(), null));
-        action.getContext().set(ARQConstants.sysOptimizerFactory, optimizerFactory);
-        if (targetProperties.containsKey(DataspaceServiceExecutor.ALLOW_SYMBOL.getSymbol())) {
-            action.getContext().set(DataspaceServiceExecutor.ALLOW_SYMBOL,
-                    Pattern.compile(String.valueOf(targetProperties.get(DataspaceServiceExecutor.ALLOW_SYMBOL.getSymbol()))));
-        } else {
-            action.getContext().set(DataspaceServiceExecutor.ALLOW_SYMBOL, config.getServiceAssetAllowPattern());
-        }
-        if (targetProperties.containsKey(DataspaceServiceExecutor.DENY_SYMBOL.getSymbol())) {
-            action.getContext().set(DataspaceServiceExecutor.DENY_SYMBOL,
-                    Pattern.compile(String.valueOf(targetProperties.get(DataspaceServiceExecutor.DENY_SYMBOL.getSymbol()))));
-        } else {
-            action.getContext().set(DataspaceServiceExecutor.DENY_SYMBOL, config.getServiceAssetDenyPattern());
-        }
+        setServicePatterns(action.getContext(), targetProperties, config);
         if (graph != null) {
             action.getContext().set(DataspaceServiceExecutor.ASSET_SYMBOL, graph);
         }
+        // calls of other agents are not registered for cancellation by id
+        prepareExecution(action);
         List<CatenaxWarning> previous = CatenaxWarning.getWarnings(action.getContext());
         CatenaxWarning.setWarnings(action.getContext(), null);
 
@@ -256,11 +363,35 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
         } catch (QueryExecException | JsonProcessingException | QueryExceptionHTTP e) {
             responseAdapter.setStatus(HttpStatus.SC_INTERNAL_SERVER_ERROR, e.getMessage());
         } finally {
+            finishExecution(action, null);
             CatenaxWarning.setWarnings(action.getContext(), previous);
         }
         return responseAdapter.toResponse();
     }
 
+    /**
+     * sets the patterns which services called on behalf of an asset must (not) match,
+     * i.e., the allow/deny patterns of the asset or the configured defaults
+     *
+     * @param context          the execution context
+     * @param targetProperties the address properties of the asset
+     * @param config           agent config
+     */
+    public static void setServicePatterns(Context context, Map<String, Object> targetProperties, AgentConfig config) {
+        if (targetProperties.containsKey(DataspaceServiceExecutor.ALLOW_SYMBOL.getSymbol())) {
+            context.set(DataspaceServiceExecutor.ALLOW_SYMBOL,
+                    Pattern.compile(String.valueOf(targetProperties.get(DataspaceServiceExecutor.ALLOW_SYMBOL.getSymbol()))));
+        } else {
+            context.set(DataspaceServiceExecutor.ALLOW_SYMBOL, config.getServiceAssetAllowPattern());
+        }
+        if (targetProperties.containsKey(DataspaceServiceExecutor.DENY_SYMBOL.getSymbol())) {
+            context.set(DataspaceServiceExecutor.DENY_SYMBOL,
+                    Pattern.compile(String.valueOf(targetProperties.get(DataspaceServiceExecutor.DENY_SYMBOL.getSymbol()))));
+        } else {
+            context.set(DataspaceServiceExecutor.DENY_SYMBOL, config.getServiceAssetDenyPattern());
+        }
+    }
+
     /**
      * execute GET-style with possibility of asset=local skill
      *
@@ -342,6 +473,19 @@ public class SparqlQueryProcessor extends SPARQL_QueryGeneral.SPARQL_QueryProc {
         super.execute(queryString, action);
     }
 
+    /**
+     * the execution of a query is aborted when its scope is cancelled
+     */
+    @Override
+    protected QueryExecution createQueryExecution(HttpAction action, Query query, DatasetGraph dataset) {
+        QueryExecution execution = super.createQueryExecution(action, query, dataset);
+        FederationScope scope = FederationScope.get(action.getContext());
+        if (scope != null) {
+            scope.onCancel(execution::abort);
+        }
+        return execution;
+    }
+
     /**
      * deal with predefined assets=local graphs
      */
@@ -0,0 +1,119 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.ws.rs.ServiceUnavailableException;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the per-connector bulkhead
+ */
+public class TestBulkhead {
+
+    ConsoleMonitor monitor=new ConsoleMonitor();
+    SimpleMeterRegistry registry=new SimpleMeterRegistry();
+
+    @Test
+    public void testConnectorKey() {
+        assertEquals("provider:8282",Bulkhead.connectorKey("edcs://provider:8282/api/v1/dsp#urn:cx:Graph"),"Edc addresses should be reduced to the host");
+        assertEquals("provider:8282",Bulkhead.connectorKey("https://provider:8282/api/v1/dsp"),"Http addresses should be reduced to the host");
+        assertEquals("provider",Bulkhead.connectorKey("provider?param=value"),"Plain connectors should be kept");
+        assertEquals("",Bulkhead.connectorKey(null),"Local connector should have an empty key");
+    }
+
+    @Test
+    public void testSlowConnectorIsIsolated() {
+        Bulkhead bulkhead=new Bulkhead("test",1,-1,0,10,monitor,registry);
+        Bulkhead.Permit slow=bulkhead.acquire("edcs://slow:8282","urn:cx:Graph");
+        assertEquals(1,bulkhead.getActive("slow:8282"),"Slot should be occupied");
+        assertThrows(ServiceUnavailableException.class,() -> bulkhead.acquire("edcs://slow:8282","urn:cx:Graph"),"Further calls to the slow connector should be rejected");
+        try (Bulkhead.Permit healthy=bulkhead.acquire("edcs://healthy:8282","urn:cx:Graph")) {
+            assertEquals(1,bulkhead.getActive("healthy:8282"),"Other connectors should not be affected");
+        }
+        slow.close();
+        slow.close();
+        assertEquals(0,bulkhead.getActive("slow:8282"),"Slot should be released only once");
+        assertEquals(1.0,registry.get(Bulkhead.METRIC_PREFIX+"rejected").tag("kind","connector").counter().count(),"Rejection should be counted");
+    }
+
+    @Test
+    public void testAssetLimitAndWait() throws Exception {
+        Bulkhead bulkhead=new Bulkhead("test",-1,1,4,2000,monitor,registry);
+        Bulkhead.Permit first=bulkhead.acquire("provider","urn:cx:Graph1");
+        Bulkhead.Permit other=bulkhead.acquire("provider","urn:cx:Graph2");
+        Thread releaser=new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            first.close();
+        });
+        releaser.start();
+        try (Bulkhead.Permit second=bulkhead.acquire("provider","urn:cx:Graph1")) {
+            assertEquals(3,registry.get(Bulkhead.METRIC_PREFIX+"wait").tag("kind","asset").timer().count(),"Waits should be recorded");
+            assertEquals(2.0,registry.get(Bulkhead.METRIC_PREFIX+"active").tag("kind","asset").gauge().value(),"Active calls should be aggregated over the assets");
+        }
+        releaser.join();
+        other.close();
+    }
+
+    @Test
+    public void testAvailable() {
+        Bulkhead bulkhead=new Bulkhead("test",3,2,0,10,monitor,registry);
+        assertEquals(2,bulkhead.getAvailable("edcs://provider:8282","urn:cx:Graph"),"Asset limit should bound the available slots");
+        assertEquals(3,bulkhead.getAvailable("edcs://provider:8282",null),"Connector limit should bound the available slots");
+        try (Bulkhead.Permit permit=bulkhead.acquire("edcs://provider:8282","urn:cx:Graph")) {
+            assertEquals(1,bulkhead.getAvailable("edcs://provider:8282","urn:cx:Graph"),"Active calls should be subtracted");
+            assertEquals(2,bulkhead.getAvailable("edcs://provider:8282","urn:cx:Graph2"),"Active calls to other assets should count for the connector");
+        }
+        assertEquals(Integer.MAX_VALUE,new Bulkhead("test",-1,-1,0,10,monitor,registry).getAvailable("provider",null),"Unlimited bulkheads should not bound");
+    }
+
+    @Test
+    public void testTryAcquire() {
+        Bulkhead bulkhead=new Bulkhead("test",2,1,4,2000,monitor,registry);
+        Bulkhead.Permit first=bulkhead.tryAcquire("provider","urn:cx:Graph");
+        assertNotNull(first,"Free slot should be granted");
+        assertNull(bulkhead.tryAcquire("provider","urn:cx:Graph"),"Occupied asset should not be waited for");
+        assertEquals(1,bulkhead.getActive("provider"),"Connector slot should be given back when the asset is occupied");
+        Bulkhead.Permit other=bulkhead.tryAcquire("provider","urn:cx:Graph2");
+        assertNotNull(other,"Other asset should be granted");
+        assertNull(bulkhead.tryAcquire("provider",null),"Occupied connector should not be waited for");
+        first.close();
+        other.close();
+        assertEquals(0,bulkhead.getActive("provider"),"Slots should be released");
+        assertEquals(0,registry.find(Bulkhead.METRIC_PREFIX+"rejected").counters().stream().mapToDouble(counter -> counter.count()).sum(),"Skipped optional calls are no rejections");
+    }
+
+    @Test
+    public void testBoundedMetrics() {
+        Bulkhead bulkhead=new Bulkhead("test",1,1,0,10,monitor,registry);
+        for (int connector=0; connector<50; connector++) {
+            bulkhead.acquire("edcs://provider"+connector+":8282","urn:cx:Graph").close();
+        }
+        assertEquals(2,registry.find(Bulkhead.METRIC_PREFIX+"active").gauges().size(),"Gauges should not grow with the number of connectors");
+        assertEquals(2,registry.find(Bulkhead.METRIC_PREFIX+"wait").timers().size(),"Timers should not grow with the number of connectors");
+    }
+}
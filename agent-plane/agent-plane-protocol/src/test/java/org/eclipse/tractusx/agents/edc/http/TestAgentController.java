@@ -35,10 +35,15 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -50,6 +55,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.ServletContext;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -57,8 +63,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
 
 import org.eclipse.edc.web.jersey.testfixtures.RestControllerTestBase;
 
@@ -424,4 +435,56 @@ public class TestAgentController extends RestControllerTestBase {
         assertEquals(1,bindings.size(),"Correct number of result bindings.");
     }
 
+    /**
+     * test that a running query is cancelled by its generated id and that its pending remote call is aborted
+     * @throws Exception in case of an error
+     */
+    @Test
+    public void testCancelQuery() throws Exception {
+        CountDownLatch arrived=new CountDownLatch(1);
+        CountDownLatch aborted=new CountDownLatch(1);
+        HttpServer server=HttpServer.create(new InetSocketAddress("localhost",0),0);
+        server.createContext("/sparql", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type","application/sparql-results+json");
+            exchange.sendResponseHeaders(200,0);
+            try (OutputStream out=exchange.getResponseBody()) {
+                out.write("{ \"head\": { \"vars\": [\"what\"] }, \"results\": { \"bindings\": [".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                arrived.countDown();
+                // a slow remote side which never finishes its response
+                for (int count=0; count<500; count++) {
+                    Thread.sleep(20);
+                    out.write(' ');
+                    out.flush();
+                }
+            } catch (IOException e) {
+                aborted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor());
+        server.start();
+        try {
+            String query="SELECT ?what WHERE { SERVICE <http://localhost:"+server.getAddress().getPort()+"/sparql> { ?what ?p ?o } }";
+            CompletableFuture<String> execution=CompletableFuture.supplyAsync(() -> {
+                try {
+                    return testExecute("GET",query,null,"application/sparql-results+json",List.of());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            ArgumentCaptor<String> queryId=ArgumentCaptor.forClass(String.class);
+            verify(response,timeout(10000)).addHeader(eq(SparqlQueryProcessor.QUERY_ID_HEADER),queryId.capture());
+            assertTrue(arrived.await(10,TimeUnit.SECONDS),"Remote call should have been started");
+            assertEquals(404,agentController.cancelQuery("test-query").getStatus(),"Client-chosen ids should not be found");
+            assertEquals(200,agentController.cancelQuery(queryId.getValue()).getStatus(),"Running query should be found by its generated id");
+            assertTrue(aborted.await(5,TimeUnit.SECONDS),"Remote call should have been aborted");
+            execution.handle((result,error) -> result).get(5,TimeUnit.SECONDS);
+            assertEquals(404,agentController.cancelQuery(queryId.getValue()).getStatus(),"Finished query should be unregistered");
+        } finally {
+            server.stop(0);
+        }
+    }
+
 }
@@ -0,0 +1,138 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the gzip transport filter
+ */
+public class TestCompressionFilter {
+
+    CompressionFilter filter=new CompressionFilter(new ConsoleMonitor());
+
+    @Test
+    public void testAcceptEncoding() {
+        assertTrue(CompressionFilter.acceptsGzip(List.of("gzip, deflate")),"gzip should be accepted");
+        assertTrue(CompressionFilter.acceptsGzip(List.of("br;q=1.0, *;q=0.5")),"wildcard should be accepted");
+        assertFalse(CompressionFilter.acceptsGzip(List.of("gzip;q=0, identity")),"zero quality should be rejected");
+        assertFalse(CompressionFilter.acceptsGzip(null),"missing header should be rejected");
+    }
+
+    @Test
+    public void testInflateRequest() throws Exception {
+        String query="SELECT ?s WHERE { VALUES (?s) { (<urn:a>) (<urn:b>) } }";
+        MultivaluedMap<String,String> headers=new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING,"gzip");
+        AtomicReference<InputStream> entity=new AtomicReference<>(new ByteArrayInputStream(HttpUtils.gzip(query.getBytes(StandardCharsets.UTF_8))));
+        ContainerRequestContext request=mock(ContainerRequestContext.class);
+        when(request.getHeaders()).thenReturn(headers);
+        when(request.getHeaderString(HttpHeaders.CONTENT_ENCODING)).thenAnswer(invocation -> headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        when(request.getUriInfo()).thenReturn(mock(UriInfo.class));
+        when(request.getEntityStream()).thenAnswer(invocation -> entity.get());
+        doAnswer(invocation -> {
+            entity.set(invocation.getArgument(0));
+            return null;
+        }).when(request).setEntityStream(any());
+        filter.filter(request);
+        assertEquals(query,new String(entity.get().readAllBytes(),StandardCharsets.UTF_8),"Body should be inflated");
+        assertNull(headers.getFirst(HttpHeaders.CONTENT_ENCODING),"Encoding should be removed");
+    }
+
+    @Test
+    public void testDeflateResponse() throws Exception {
+        MultivaluedMap<String,String> requestHeaders=new MultivaluedHashMap<>();
+        requestHeaders.putSingle(HttpHeaders.ACCEPT_ENCODING,"gzip");
+        ContainerRequestContext request=mock(ContainerRequestContext.class);
+        when(request.getHeaders()).thenReturn(requestHeaders);
+        MultivaluedMap<String,Object> responseHeaders=new MultivaluedHashMap<>();
+        ContainerResponseContext response=mock(ContainerResponseContext.class);
+        when(response.hasEntity()).thenReturn(true);
+        when(response.getHeaders()).thenReturn(responseHeaders);
+        filter.filter(request,response);
+        assertEquals("gzip",responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING),"Encoding should be negotiated");
+
+        String result="{ \"head\": { \"vars\": [\"s\"] }, \"results\": { \"bindings\": [] } }";
+        ByteArrayOutputStream wire=new ByteArrayOutputStream();
+        AtomicReference<OutputStream> output=new AtomicReference<>(wire);
+        WriterInterceptorContext writer=mock(WriterInterceptorContext.class);
+        when(writer.getHeaders()).thenReturn(responseHeaders);
+        when(writer.getOutputStream()).thenAnswer(invocation -> output.get());
+        doAnswer(invocation -> {
+            output.set(invocation.getArgument(0));
+            return null;
+        }).when(writer).setOutputStream(any());
+        doAnswer(invocation -> {
+            output.get().write(result.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(writer).proceed();
+        filter.aroundWriteTo(writer);
+        try (InputStream inflated=new GZIPInputStream(new ByteArrayInputStream(wire.toByteArray()))) {
+            assertEquals(result,new String(inflated.readAllBytes(),StandardCharsets.UTF_8),"Entity should be deflated");
+        }
+    }
+
+    @Test
+    public void testRestrictedPath() throws Exception {
+        CompressionFilter agentFilter=new CompressionFilter(new ConsoleMonitor(),"agent");
+        MultivaluedMap<String,String> requestHeaders=new MultivaluedHashMap<>();
+        requestHeaders.putSingle(HttpHeaders.ACCEPT_ENCODING,"gzip");
+        UriInfo uriInfo=mock(UriInfo.class);
+        ContainerRequestContext request=mock(ContainerRequestContext.class);
+        when(request.getHeaders()).thenReturn(requestHeaders);
+        when(request.getUriInfo()).thenReturn(uriInfo);
+        MultivaluedMap<String,Object> responseHeaders=new MultivaluedHashMap<>();
+        ContainerResponseContext response=mock(ContainerResponseContext.class);
+        when(response.hasEntity()).thenReturn(true);
+        when(response.getHeaders()).thenReturn(responseHeaders);
+        when(uriInfo.getPath()).thenReturn("/check/health");
+        agentFilter.filter(request,response);
+        assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING),"Other resources of the context should not be compressed");
+        when(uriInfo.getPath()).thenReturn("agentx");
+        agentFilter.filter(request,response);
+        assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING),"Only the path itself should be matched");
+        when(uriInfo.getPath()).thenReturn("agent/repositories/AGENT");
+        agentFilter.filter(request,response);
+        assertEquals("gzip",responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING),"Agent resources should be compressed");
+    }
+}
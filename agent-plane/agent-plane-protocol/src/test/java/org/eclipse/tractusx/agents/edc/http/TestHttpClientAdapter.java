@@ -0,0 +1,179 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the java.net.http to OkHttp adapter
+ */
+public class TestHttpClientAdapter {
+
+    HttpServer server;
+    CountDownLatch slowLatch=new CountDownLatch(1);
+    HttpClientAdapter client=new HttpClientAdapter(new OkHttpClient());
+    String transferEncoding;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server=HttpServer.create(new InetSocketAddress("localhost",0),0);
+        server.createContext("/echo", exchange -> {
+            transferEncoding=exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+            byte[] body=exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type","text/plain");
+            exchange.sendResponseHeaders(200,body.length);
+            try (OutputStream out=exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                slowLatch.await(10,TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204,-1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        slowLatch.countDown();
+        server.stop(0);
+    }
+
+    protected URI uri(String path) {
+        return URI.create("http://localhost:"+server.getAddress().getPort()+path);
+    }
+
+    @Test
+    public void testSendAsync() throws Exception {
+        HttpRequest request=HttpRequest.newBuilder(uri("/echo"))
+                .header("Content-Type","text/plain")
+                .POST(HttpRequest.BodyPublishers.ofString("Hello Dataspace"))
+                .build();
+        HttpResponse<InputStream> response=client.sendAsync(request,HttpResponse.BodyHandlers.ofInputStream()).get(10,TimeUnit.SECONDS);
+        assertEquals(200,response.statusCode(),"Correct status");
+        try (InputStream body=response.body()) {
+            assertEquals("Hello Dataspace",new String(body.readAllBytes(),StandardCharsets.UTF_8),"Correct body");
+        }
+    }
+
+    @Test
+    public void testLargeBodyWithoutContentType() throws Exception {
+        StringBuilder content=new StringBuilder();
+        for(int count=0;count<100000;count++) {
+            content.append("(<urn:cx:Asset#").append(count).append(">)\n");
+        }
+        HttpRequest request=HttpRequest.newBuilder(uri("/echo"))
+                .POST(HttpRequest.BodyPublishers.ofString(content.toString()))
+                .build();
+        HttpResponse<InputStream> response=client.send(request,HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200,response.statusCode(),"Correct status");
+        try (InputStream body=response.body()) {
+            assertEquals(content.toString(),new String(body.readAllBytes(),StandardCharsets.UTF_8),"Body should be streamed completely");
+        }
+    }
+
+    @Test
+    public void testStreamedBody() throws Exception {
+        String line="(<urn:cx:Asset#0815>)\n";
+        // the writer runs on the calling thread, even if the executor is saturated
+        OutputStreamPublisher publisher=new OutputStreamPublisher(output -> {
+            for(int count=0;count<10000;count++) {
+                output.write(line.getBytes(StandardCharsets.UTF_8));
+            }
+        },command -> {
+            throw new RejectedExecutionException("saturated");
+        },1000);
+        HttpRequest request=HttpRequest.newBuilder(uri("/echo"))
+                .header("Content-Type","text/plain")
+                .POST(publisher)
+                .build();
+        HttpResponse<InputStream> response=client.send(request,HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200,response.statusCode(),"Correct status");
+        assertEquals("chunked",transferEncoding,"Body should be sent chunked");
+        try (InputStream body=response.body()) {
+            assertEquals(line.repeat(10000),new String(body.readAllBytes(),StandardCharsets.UTF_8),"Body should be written completely");
+        }
+    }
+
+    @Test
+    public void testStalledBody() {
+        HttpClientAdapter timedClient=new HttpClientAdapter(new OkHttpClient.Builder().writeTimeout(200,TimeUnit.MILLISECONDS).build());
+        AtomicBoolean cancelled=new AtomicBoolean();
+        HttpRequest.BodyPublisher stalled=new HttpRequest.BodyPublisher() {
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                        cancelled.set(true);
+                    }
+                });
+            }
+        };
+        HttpRequest request=HttpRequest.newBuilder(uri("/echo")).POST(stalled).build();
+        long start=System.currentTimeMillis();
+        assertThrows(IOException.class,() -> timedClient.send(request,HttpResponse.BodyHandlers.ofInputStream()),"Stalled body should time out");
+        assertTrue(System.currentTimeMillis()-start<5000,"Write timeout should apply");
+        assertTrue(cancelled.get(),"Subscription should be cancelled");
+    }
+
+    @Test
+    public void testCancelAsync() {
+        HttpRequest request=HttpRequest.newBuilder(uri("/slow")).GET().build();
+        CompletableFuture<HttpResponse<InputStream>> future=client.sendAsync(request,HttpResponse.BodyHandlers.ofInputStream());
+        assertTrue(future.cancel(true),"Pending call can be cancelled");
+        assertTrue(future.isCancelled(),"Call is cancelled");
+    }
+}
@@ -0,0 +1,125 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.http.transfer;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.sparql.service.ServiceExecutorRegistry;
+import org.eclipse.edc.json.JacksonTypeManager;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.eclipse.tractusx.agents.edc.TestConfig;
+import org.eclipse.tractusx.agents.edc.rdf.RdfStore;
+import org.eclipse.tractusx.agents.edc.sparql.SparqlQueryProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the binary-safe framing and streaming of agent transfer parts
+ */
+public class TestAgentPart {
+
+    ConsoleMonitor monitor=new ConsoleMonitor();
+    AgentConfig agentConfig=new AgentConfig(monitor,new TestConfig());
+    JacksonTypeManager typeManager=new JacksonTypeManager();
+    SparqlQueryProcessor processor=new SparqlQueryProcessor(new ServiceExecutorRegistry(),monitor,agentConfig,new RdfStore(agentConfig,monitor),typeManager);
+
+    @Test
+    public void testThriftResultRoundTrip() throws Exception {
+        String query="SELECT ?subject ?label WHERE { VALUES (?subject ?label) { (<urn:cx:Part#1> \"first\\npart--\") (<urn:cx:Part#2> \"zweites Teil äöü\") } }";
+        Request.Builder builder=new Request.Builder();
+        builder.url("http://localhost:8080");
+        builder.addHeader("Accept",WebContent.contentTypeResultsThrift);
+        builder.post(RequestBody.create(query,MediaType.parse("application/sparql-query")));
+        byte[] result;
+        String contentType;
+        try (Response response=processor.execute(builder.build(),null,null,Map.of())) {
+            assertTrue(response.isSuccessful(),"Response was successful");
+            contentType=Objects.requireNonNull(response.body()).contentType().toString();
+            result=response.body().bytes();
+        }
+        assertTrue(contentType.startsWith(WebContent.contentTypeResultsThrift),"Thrift should be negotiated");
+
+        ByteArrayOutputStream transfer=new ByteArrayOutputStream();
+        transfer.writeBytes(new AgentPart(MultipartReader.WARNINGS_CONTENT_TYPE,"[{\"problem\":\"leading\"}]".getBytes(StandardCharsets.UTF_8)).openStream().readAllBytes());
+        transfer.writeBytes(new AgentPart(contentType,result).openStream().readAllBytes());
+        transfer.writeBytes(new AgentPart(MultipartReader.WARNINGS_CONTENT_TYPE,"[{\"problem\":\"trailing\"}]".getBytes(StandardCharsets.UTF_8)).openStream().readAllBytes());
+
+        List<String> warnings=new ArrayList<>();
+        MultipartReader reader=MultipartReader.forWarnings(new ByteArrayInputStream(transfer.toByteArray()),AgentPart.AGENT_BOUNDARY,
+                (type,body) -> warnings.add(new String(body,StandardCharsets.UTF_8)));
+        MultipartReader.Part part=reader.nextPart();
+        assertEquals(contentType,part.getContentType(),"Correct content type");
+        assertEquals(1,warnings.size(),"Leading warnings should be delivered before the result");
+        ResultSet resultSet=ResultSetMgr.read(part,ResultSetLang.RS_Thrift);
+        assertEquals("first\npart--",resultSet.next().getLiteral("label").getString(),"Binary content should survive");
+        assertEquals("zweites Teil äöü",resultSet.next().getLiteral("label").getString(),"Binary content should survive");
+        part.close();
+        assertEquals(List.of("[{\"problem\":\"leading\"}]\n","[{\"problem\":\"trailing\"}]\n"),warnings,"Trailing warnings should be delivered on close");
+    }
+
+    @Test
+    public void testTextPartIsStreamed() throws Exception {
+        String json="{ \"head\": { \"vars\": [\"s\"] },\n\"results\": { \"bindings\": [] } }\n";
+        String transfer="--\nContent-Type: application/sparql-results+json\n"+json+"--\nContent-Type: application/cx-warnings+json\n[]";
+        List<String> warnings=new ArrayList<>();
+        MultipartReader reader=MultipartReader.forWarnings(new ByteArrayInputStream(transfer.getBytes(StandardCharsets.UTF_8)),AgentPart.AGENT_BOUNDARY,
+                (type,body) -> warnings.add(new String(body,StandardCharsets.UTF_8)));
+        MultipartReader.Part part=reader.nextPart();
+        assertTrue(warnings.isEmpty(),"Trailing warnings should not be read ahead");
+        assertEquals(json,new String(part.readAllBytes(),StandardCharsets.UTF_8),"Text part should end at the boundary");
+        part.close();
+        assertEquals(List.of("[]"),warnings,"Warnings should be collected on the side");
+        assertNull(reader.nextPart(),"There should be no further part");
+    }
+
+    @Test
+    public void testTextPartIsReadInBulk() throws Exception {
+        String json="{ \"head\": { \"vars\": [\"s\"] }, \"results\": { \"bindings\": [ "+"{ \"s\": { \"type\": \"literal\", \"value\": \"x\" } }, ".repeat(40)+"] } }\n--- not a boundary\n\n";
+        String transfer="--\nContent-Type: application/sparql-results+json\n"+json+"--\nContent-Type: application/cx-warnings+json\n[]";
+        MultipartReader reader=MultipartReader.forWarnings(new ByteArrayInputStream(transfer.getBytes(StandardCharsets.UTF_8)),AgentPart.AGENT_BOUNDARY,(type,body) -> { });
+        MultipartReader.Part part=reader.nextPart();
+        byte[] buffer=new byte[8192];
+        ByteArrayOutputStream result=new ByteArrayOutputStream();
+        int first=part.read(buffer,0,buffer.length);
+        assertTrue(first>1,"Text part should be read in chunks, not byte by byte");
+        result.write(buffer,0,first);
+        for (int count=part.read(buffer,0,buffer.length); count>=0; count=part.read(buffer,0,buffer.length)) {
+            result.write(buffer,0,count);
+        }
+        assertEquals(json,result.toString(StandardCharsets.UTF_8),"Text part should end exactly at the boundary");
+        part.close();
+        assertNull(reader.nextPart(),"There should be no further part");
+    }
+}
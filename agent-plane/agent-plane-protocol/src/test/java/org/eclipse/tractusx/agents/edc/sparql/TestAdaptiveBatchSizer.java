@@ -0,0 +1,88 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the adaptive batch sizing
+ */
+public class TestAdaptiveBatchSizer {
+
+    ConsoleMonitor monitor=new ConsoleMonitor();
+
+    AgentConfig adaptiveConfig=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of(
+            "cx.agent.federation.batch.adaptive","true",
+            "cx.agent.federation.batch.min","2",
+            "cx.agent.federation.batch.initial","16",
+            "cx.agent.federation.batch.max","256",
+            "cx.agent.federation.batch.latency","1000")));
+
+    @Test
+    public void testStaticBatchSize() {
+        AgentConfig staticConfig=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of("cx.agent.federation.batch.max","8")));
+        AdaptiveBatchSizer sizer=new AdaptiveBatchSizer(staticConfig);
+        assertEquals(8,sizer.getBatchSize("edcs://fast#Graph"),"Static batch size should be the maximum");
+        sizer.recordSuccess("edcs://fast#Graph",8,10);
+        assertEquals(8,sizer.getBatchSize("edcs://fast#Graph"),"Static batch size should not adapt");
+        assertEquals(1,sizer.getStatistics("edcs://fast#Graph").getCalls(),"Statistics should be recorded anyway");
+    }
+
+    @Test
+    public void testFastTargetGrows() {
+        AdaptiveBatchSizer sizer=new AdaptiveBatchSizer(adaptiveConfig);
+        assertEquals(16,sizer.getBatchSize("edcs://fast#Graph"),"Initial batch size should be used");
+        sizer.recordSuccess("edcs://fast#Graph",16,16);
+        assertEquals(32,sizer.getBatchSize("edcs://fast#Graph"),"Fast target should double");
+        for(int count=0;count<10;count++) {
+            sizer.recordSuccess("edcs://fast#Graph",sizer.getBatchSize("edcs://fast#Graph"),1);
+        }
+        assertEquals(256,sizer.getBatchSize("edcs://fast#Graph"),"Fast target should be capped at the maximum");
+        assertEquals(16,sizer.getBatchSize("edcs://other#Graph"),"Other targets should be independent");
+    }
+
+    @Test
+    public void testSlowTargetShrinks() {
+        AdaptiveBatchSizer sizer=new AdaptiveBatchSizer(adaptiveConfig);
+        sizer.recordSuccess("edcs://slow#Graph",16,4000);
+        assertEquals(4,sizer.getBatchSize("edcs://slow#Graph"),"Slow target should aim at the latency");
+        sizer.recordFailure("edcs://slow#Graph",4);
+        assertEquals(2,sizer.getBatchSize("edcs://slow#Graph"),"Failing target should be capped at the minimum");
+        assertTrue(sizer.getStatistics("edcs://slow#Graph").getErrorRate()>0,"Failures should be tracked");
+    }
+
+    @Test
+    public void testFailingTargetRecovers() {
+        AdaptiveBatchSizer sizer=new AdaptiveBatchSizer(adaptiveConfig);
+        sizer.recordFailure("edcs://flaky#Graph",16);
+        assertEquals(8,sizer.getBatchSize("edcs://flaky#Graph"),"Failing target should halve");
+        sizer.recordSuccess("edcs://flaky#Graph",8,1);
+        assertEquals(8,sizer.getBatchSize("edcs://flaky#Graph"),"Target should not grow while its error rate is high");
+        while (sizer.getStatistics("edcs://flaky#Graph").getErrorRate()>AdaptiveBatchSizer.ERROR_TOLERANCE) {
+            sizer.recordSuccess("edcs://flaky#Graph",8,1);
+        }
+        assertEquals(16,sizer.getBatchSize("edcs://flaky#Graph"),"Target should grow again once failures have faded");
+    }
+}
@@ -0,0 +1,233 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import okhttp3.OkHttpClient;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.iterator.QueryIterSingleton;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.service.ServiceExecutorRegistry;
+import org.apache.jena.sparql.util.Context;
+import org.eclipse.edc.json.JacksonTypeManager;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.eclipse.tractusx.agents.edc.MockAgreementController;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the concurrent execution of union branches
+ * and the merge of ordered branches
+ */
+public class TestFederationOpExecutor {
+
+    @Test
+    public void testParallelUnion() {
+        AtomicInteger running=new AtomicInteger();
+        AtomicInteger maxRunning=new AtomicInteger();
+        Var service=Var.alloc("service");
+        ServiceExecutorRegistry registry=new ServiceExecutorRegistry();
+        registry.add((opExecute,opOriginal,binding,execCxt) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(),Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return QueryIterSingleton.create(BindingFactory.binding(binding,service,opExecute.getService()),execCxt);
+        });
+        ExecutorService executor=Executors.newFixedThreadPool(4);
+        try {
+            Context context=ARQ.getContext().copy();
+            ServiceExecutorRegistry.set(context,registry);
+            QC.setFactory(context,FederationOpExecutor.factory(executor,2));
+            DatasetGraph dataset=DatasetGraphFactory.create();
+            ExecutionContext execCxt=new ExecutionContext(context,dataset.getDefaultGraph(),dataset,QC.getFactory(context));
+            Op op=Algebra.compile(QueryFactory.create("SELECT * WHERE { { SERVICE <urn:a> { } } UNION { SERVICE <urn:b> { } } UNION { SERVICE <urn:c> { } } UNION { BIND(<urn:local> AS ?service) } }"));
+            QueryIterator union=QC.execute(op,QueryIterRoot.create(execCxt),execCxt);
+            int count=0;
+            while (union.hasNext()) {
+                union.next();
+                count++;
+            }
+            union.close();
+            assertEquals(4,count,"All branches should produce their results");
+            assertEquals(2,maxRunning.get(),"Service branches should run concurrently up to the limit");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExhaustedBranchExecutor() {
+        Var service=Var.alloc("service");
+        ServiceExecutorRegistry registry=new ServiceExecutorRegistry();
+        registry.add((opExecute,opOriginal,binding,execCxt) -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return QueryIterSingleton.create(BindingFactory.binding(binding,service,opExecute.getService()),execCxt);
+        });
+        AgentConfig config=new AgentConfig(new ConsoleMonitor(),ConfigFactory.fromMap(Map.of("cx.agent.federation.branch.threads","1")));
+        ExecutorService shared=Executors.newFixedThreadPool(2);
+        ExecutorService executor=FederationExecutors.createBlocking(config,shared,shared);
+        try {
+            assertEquals(1,((ThreadPoolExecutor) executor).getMaximumPoolSize(),"Branch threads should be bounded by the config");
+            Context context=ARQ.getContext().copy();
+            ServiceExecutorRegistry.set(context,registry);
+            QC.setFactory(context,FederationOpExecutor.factory(executor,4));
+            DatasetGraph dataset=DatasetGraphFactory.create();
+            ExecutionContext execCxt=new ExecutionContext(context,dataset.getDefaultGraph(),dataset,QC.getFactory(context));
+            // the nested unions find the only branch thread occupied
+            Op op=Algebra.compile(QueryFactory.create("SELECT * WHERE { { { SERVICE <urn:a> { } } UNION { SERVICE <urn:b> { } } } UNION { { SERVICE <urn:c> { } } UNION { SERVICE <urn:d> { } } } }"));
+            QueryIterator union=QC.execute(op,QueryIterRoot.create(execCxt),execCxt);
+            List<String> results=new ArrayList<>();
+            while (union.hasNext()) {
+                results.add(union.next().get(service).getURI());
+            }
+            union.close();
+            results.sort(String::compareTo);
+            assertEquals(List.of("urn:a","urn:b","urn:c","urn:d"),results,"Rejected branches should run on the calling thread");
+        } finally {
+            executor.shutdownNow();
+            shared.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSortMerge() {
+        Var value=Var.alloc("v");
+        ServiceExecutorRegistry registry=new ServiceExecutorRegistry();
+        registry.add((opExecute,opOriginal,binding,execCxt) -> {
+            // the first service does not return its results in order
+            int[] values=opExecute.getService().getURI().equals("urn:a") ? new int[] {1,5,3} : new int[] {2,6};
+            List<Binding> results=new ArrayList<>();
+            for (int next : values) {
+                results.add(BindingFactory.binding(binding,value,NodeValue.makeInteger(next).asNode()));
+            }
+            return QueryIterPlainWrapper.create(results.iterator(),execCxt);
+        });
+        ExecutorService executor=Executors.newCachedThreadPool();
+        try {
+            Context context=ARQ.getContext().copy();
+            ServiceExecutorRegistry.set(context,registry);
+            QC.setFactory(context,FederationOpExecutor.factory(executor,2));
+            DatasetGraph dataset=DatasetGraphFactory.create();
+            ExecutionContext execCxt=new ExecutionContext(context,dataset.getDefaultGraph(),dataset,QC.getFactory(context));
+            for (String modifiers : List.of("ORDER BY ?v LIMIT 4","ORDER BY ?v")) {
+                Op op=Algebra.optimize(Algebra.compile(QueryFactory.create("SELECT ?v WHERE { { SERVICE <urn:a> { } } UNION { SERVICE <urn:b> { } } UNION { VALUES ?v { 4 0 } } } "+modifiers)));
+                QueryIterator merge=QC.execute(op,QueryIterRoot.create(execCxt),execCxt);
+                List<Integer> result=new ArrayList<>();
+                while (merge.hasNext()) {
+                    result.add(Integer.parseInt(merge.next().get(value).getLiteralLexicalForm()));
+                }
+                merge.close();
+                List<Integer> expected=modifiers.contains("LIMIT") ? List.of(0,1,2,3) : List.of(0,1,2,3,4,5,6);
+                assertEquals(expected,result,"Branches should be merged in order "+op);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPipelinedBatches() {
+        ConsoleMonitor monitor=new ConsoleMonitor();
+        AgentConfig config=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of(
+                "cx.agent.federation.batch.max","1",
+                "cx.agent.federation.batch.pipeline","2")));
+        List<CompletableFuture<QueryIterator>> dispatched=new CopyOnWriteArrayList<>();
+        ExecutorService executor=Executors.newFixedThreadPool(2);
+        try {
+            DataspaceServiceExecutor serviceExecutor=new DataspaceServiceExecutor(monitor,new MockAgreementController(),config,new OkHttpClient(),executor,new JacksonTypeManager()) {
+                @Override
+                protected CompletableFuture<QueryIterator> createJoinExecution(OpService opOriginal, String serviceUrl, Set<String> boundVars, List<Binding> bindings, ExecutionContext execCxt, boolean first) {
+                    CompletableFuture<QueryIterator> result=new CompletableFuture<>();
+                    dispatched.add(result);
+                    if (dispatched.size()==1) {
+                        // only the first batch answers, the others stay in flight
+                        result.complete(QueryIterPlainWrapper.create(bindings.iterator(),execCxt));
+                    }
+                    return result;
+                }
+            };
+            Var value=Var.alloc("v");
+            List<Binding> input=new ArrayList<>();
+            for (int count=0; count<10; count++) {
+                input.add(BindingFactory.binding(value,NodeValue.makeInteger(count).asNode()));
+            }
+            Context context=ARQ.getContext().copy();
+            DatasetGraph dataset=DatasetGraphFactory.create();
+            ExecutionContext execCxt=new ExecutionContext(context,dataset.getDefaultGraph(),dataset,QC.getFactory(context));
+            OpService opService=new OpService(NodeFactory.createURI("http://provider/sparql"),OpTable.unit(),false);
+            QueryIterator batches=serviceExecutor.createExecution(opService,QueryIterPlainWrapper.create(input.iterator(),execCxt),execCxt,null);
+            assertTrue(batches.hasNext(),"First batch should deliver");
+            assertEquals(3,dispatched.size(),"Batches should be dispatched up to the pipeline window ahead of the consumed batch");
+            assertEquals(2,dispatched.stream().filter(future -> !future.isDone()).count(),"Several batches should be in flight at the same time");
+            batches.next();
+            assertEquals(3,dispatched.size(),"Dispatch should stop while the pipeline window is full");
+            int count=1;
+            while (count<input.size()) {
+                // answer all pending batches, which lets the pipeline advance
+                dispatched.stream().filter(future -> !future.isDone()).forEach(future -> future.complete(QueryIterPlainWrapper.create(List.of(BindingFactory.empty()).iterator(),execCxt)));
+                if (!batches.hasNext()) {
+                    break;
+                }
+                batches.next();
+                count++;
+            }
+            batches.close();
+            assertEquals(10,count,"Every batch should deliver");
+            assertEquals(10,dispatched.size(),"Every binding should be dispatched in its own batch");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
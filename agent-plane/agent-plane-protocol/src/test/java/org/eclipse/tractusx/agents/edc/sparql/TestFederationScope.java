@@ -0,0 +1,89 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.sparql.util.Context;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the per-query federation scope and execution lane
+ */
+public class TestFederationScope {
+
+    ConsoleMonitor monitor=new ConsoleMonitor();
+
+    @Test
+    public void testCloseCancelsPending() {
+        Context context=new Context();
+        FederationScope scope=FederationScope.open(context);
+        assertSame(scope,FederationScope.get(context),"Scope should be found in the context");
+        CompletableFuture<String> done=scope.register(new CompletableFuture<>());
+        CompletableFuture<String> pending=scope.register(new CompletableFuture<>());
+        done.complete("result");
+        assertEquals(1,scope.getPendingCount(),"Completed calls should be forgotten");
+        scope.close();
+        assertTrue(pending.isCancelled(),"Outstanding calls should be cancelled");
+        assertEquals("result",done.join(),"Completed calls should be kept");
+        CompletableFuture<String> late=scope.register(new CompletableFuture<>());
+        assertTrue(late.isCancelled(),"Calls registered after closing should be cancelled");
+    }
+
+    @Test
+    public void testCancelAborts() {
+        FederationScope scope=new FederationScope();
+        AtomicInteger aborted=new AtomicInteger();
+        scope.onCancel(aborted::incrementAndGet);
+        CompletableFuture<String> pending=scope.register(new CompletableFuture<>());
+        scope.cancel();
+        assertTrue(scope.isCancelled() && scope.isClosed(),"Cancelled scope should be closed");
+        assertTrue(pending.isCancelled(),"Outstanding calls should be cancelled");
+        assertEquals(1,aborted.get(),"Local execution should be aborted");
+        scope.onCancel(aborted::incrementAndGet);
+        assertEquals(2,aborted.get(),"Executions registered after cancelling should be aborted");
+    }
+
+    @Test
+    public void testExecutorFallback() {
+        ExecutorService fallback=Executors.newSingleThreadExecutor();
+        try {
+            AgentConfig platformConfig=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of()));
+            assertSame(fallback,FederationExecutors.create(platformConfig,monitor,fallback),"Shared pool should be used by default");
+            AgentConfig virtualConfig=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of("cx.agent.federation.threads.virtual","true")));
+            ExecutorService federation=FederationExecutors.create(virtualConfig,monitor,fallback);
+            assertNotNull(federation,"Some executor should be used");
+            if (federation!=fallback) {
+                federation.shutdownNow();
+            }
+        } finally {
+            fallback.shutdownNow();
+        }
+    }
+}
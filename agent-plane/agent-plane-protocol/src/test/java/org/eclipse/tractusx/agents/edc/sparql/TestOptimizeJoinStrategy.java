@@ -0,0 +1,113 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpSequence;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.core.Var;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests the cost-based ordering of federated services
+ */
+public class TestOptimizeJoinStrategy {
+
+    protected OpService service(Node target, String pattern) {
+        Op subOp=Algebra.compile(QueryFactory.create("SELECT * WHERE { "+pattern+" }").getQueryPattern());
+        return new OpService(target,subOp,false);
+    }
+
+    protected void observe(FederationStatistics statistics, OpService service, long bindings, long results) {
+        statistics.record(service).recordResults(bindings,results);
+    }
+
+    @Test
+    public void testSelectiveFirst() {
+        FederationStatistics statistics=new FederationStatistics();
+        OpService broad=service(NodeFactory.createURI("edcs://a.cx"),"?part <urn:cx:name> ?name");
+        OpService selective=service(NodeFactory.createURI("edcs://b.cx"),"?part <urn:cx:serial> \"4711\"");
+        observe(statistics,broad,1,10000);
+        observe(statistics,selective,1,1);
+        OptimizeJoinStrategy strategy=new OptimizeJoinStrategy(statistics);
+        Op ordered=strategy.reorder(OpSequence.create(broad,selective));
+        assertEquals(List.of(selective,broad),((OpSequence) ordered).getElements(),"Selective service should drive the join");
+        Op unordered=new OptimizeJoinStrategy().reorder(OpSequence.create(broad,selective));
+        assertEquals(List.of(broad,selective),((OpSequence) unordered).getElements(),"Order should be kept without statistics");
+    }
+
+    @Test
+    public void testDependencies() {
+        FederationStatistics statistics=new FederationStatistics();
+        OpService lookup=service(NodeFactory.createURI("edcs://a.cx"),"?part <urn:cx:supplier> ?connector");
+        OpService dependent=service(Var.alloc("connector"),"?part <urn:cx:serial> ?serial");
+        observe(statistics,lookup,1,100);
+        observe(statistics,dependent,1,1);
+        OpSequence sequence=(OpSequence) OpSequence.create(lookup,dependent);
+        Op ordered=new OptimizeJoinStrategy(statistics).reorder(sequence);
+        assertSame(sequence,ordered,"Service variable should be bound before");
+    }
+
+    @Test
+    public void testJoinModes() {
+        FederationStatistics statistics=new FederationStatistics();
+        FederationScope scope=new FederationScope();
+        OptimizeJoinStrategy strategy=new OptimizeJoinStrategy(statistics,scope,100);
+        OpService small=service(NodeFactory.createURI("edcs://a.cx"),"?part <urn:cx:category> ?category");
+        OpService large=service(NodeFactory.createURI("edcs://b.cx"),"?part <urn:cx:name> ?name");
+        OpService unknown=service(NodeFactory.createURI("edcs://c.cx"),"?part <urn:cx:serial> ?serial");
+        OpService dependent=service(NodeFactory.createURI("edcs://d.cx"),"?part <urn:cx:weight> ?weight FILTER(?weight > ?limit)");
+        observe(statistics,small,1,1);
+        statistics.record(small).recordFullResults(10);
+        observe(statistics,large,1,1);
+        statistics.record(large).recordFullResults(101);
+        statistics.record(dependent).recordFullResults(10);
+        Op table=Algebra.compile(QueryFactory.create("SELECT * WHERE { VALUES ?part { "+"<urn:cx:Part> ".repeat(20)+"} }").getQueryPattern());
+        strategy.planJoins(List.of(table,small,large,unknown,dependent));
+        assertEquals(ServiceJoinMode.HASH,scope.getJoinMode(small),"Small pattern should be fetched for many bindings");
+        assertEquals(ServiceJoinMode.BIND,scope.getJoinMode(large),"Large pattern should be bind-joined");
+        assertEquals(ServiceJoinMode.BIND,scope.getJoinMode(unknown),"Few bindings should be bind-joined");
+        assertEquals(ServiceJoinMode.BIND,scope.getJoinMode(dependent),"Dependent pattern should be bind-joined");
+        strategy.planJoins(List.of(Algebra.compile(QueryFactory.create("SELECT * WHERE { ?part a ?type }").getQueryPattern()),small,unknown));
+        assertEquals(ServiceJoinMode.HYBRID,scope.getJoinMode(small),"Small pattern should be fetched after the first batch of unknown input");
+        assertEquals(ServiceJoinMode.HYBRID,scope.getJoinMode(unknown),"Unknown pattern should be fetched after the first batch of unknown input");
+    }
+
+    @Test
+    public void testJoinModesWithoutOrdering() {
+        FederationStatistics statistics=new FederationStatistics();
+        FederationScope scope=new FederationScope();
+        OpService broad=service(NodeFactory.createURI("edcs://a.cx"),"?part <urn:cx:name> ?name");
+        OpService small=service(NodeFactory.createURI("edcs://b.cx"),"?part <urn:cx:category> ?category");
+        observe(statistics,broad,1,50);
+        observe(statistics,small,1,1);
+        statistics.record(small).recordFullResults(10);
+        OpSequence sequence=(OpSequence) OpSequence.create(broad,small);
+        Op kept=new OptimizeJoinStrategy(statistics,false,scope,100).reorder(sequence);
+        assertSame(sequence,kept,"Services should not be reordered");
+        assertEquals(ServiceJoinMode.HASH,scope.getJoinMode(small),"Join modes should be chosen without ordering");
+    }
+}
@@ -0,0 +1,151 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.main.QC;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.http.QuerySendMode;
+import org.apache.jena.sparql.util.Context;
+import org.eclipse.edc.json.JacksonTypeManager;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.eclipse.tractusx.agents.edc.MockAgreementController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the remote query execution
+ */
+public class TestQueryExecutor {
+
+    ConsoleMonitor monitor=new ConsoleMonitor();
+    AgentConfig config=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of(
+            "cx.agent.federation.compression","true",
+            "cx.agent.federation.compression.min","0")));
+    List<String> encodings=new CopyOnWriteArrayList<>();
+    HttpServer server;
+    ExecutorService executor=Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server=HttpServer.create(new InetSocketAddress("localhost",0),0);
+        server.createContext("/sparql", exchange -> {
+            encodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Content-Encoding")));
+            exchange.getRequestBody().readAllBytes();
+            byte[] response="{ \"head\": { \"vars\": [\"what\"] }, \"results\": { \"bindings\": [] } }".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type","application/sparql-results+json");
+            exchange.sendResponseHeaders(200,response.length);
+            try (OutputStream out=exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    protected String serviceUrl() {
+        return "http://localhost:"+server.getAddress().getPort()+"/sparql";
+    }
+
+    @Test
+    public void testPlainTargetUncompressed() {
+        DataspaceServiceExecutor serviceExecutor=new DataspaceServiceExecutor(monitor,new MockAgreementController(),config,new OkHttpClient(),executor,new JacksonTypeManager());
+        Context context=ARQ.getContext().copy();
+        DatasetGraph dataset=DatasetGraphFactory.create();
+        ExecutionContext execCxt=new ExecutionContext(context,dataset.getDefaultGraph(),dataset,QC.getFactory(context));
+        OpService opService=(OpService) Algebra.compile(QueryFactory.create("SELECT * WHERE { SERVICE <"+serviceUrl()+"> { ?what ?p ?o } }"));
+        QueryIterator results=serviceExecutor.createExecution(opService,serviceUrl(),Set.of(),List.of(BindingFactory.empty()),execCxt);
+        assertFalse(results.hasNext(),"Empty response should be delivered");
+        results.close();
+        assertEquals(List.of("null"),encodings,"Third-party endpoints should receive an uncompressed query");
+    }
+
+    @Test
+    public void testSlowConsumerNotMeasured() throws Exception {
+        AgentConfig streamingConfig=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of(
+                "cx.agent.federation.streaming","true",
+                "cx.agent.federation.readahead","0")));
+        DataspaceServiceExecutor serviceExecutor=new DataspaceServiceExecutor(monitor,new MockAgreementController(),streamingConfig,new OkHttpClient(),executor,new JacksonTypeManager());
+        Context context=ARQ.getContext().copy();
+        DatasetGraph dataset=DatasetGraphFactory.create();
+        ExecutionContext execCxt=new ExecutionContext(context,dataset.getDefaultGraph(),dataset,QC.getFactory(context));
+        OpService opService=(OpService) Algebra.compile(QueryFactory.create("SELECT * WHERE { SERVICE <"+serviceUrl()+"> { ?what ?p ?o } }"));
+        QueryIterator results=serviceExecutor.createMeasuredExecution(opService,serviceUrl(),Set.of(),List.of(BindingFactory.empty()),execCxt).get(5,TimeUnit.SECONDS);
+        // a consumer which takes its time before reading the results
+        Thread.sleep(500);
+        assertFalse(results.hasNext(),"Empty response should be delivered");
+        results.close();
+        ServiceStatistics statistics=serviceExecutor.batchSizer.getStatistics(serviceUrl());
+        for (int wait=0;wait<50 && statistics.getCalls()==0;wait++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1,statistics.getCalls(),"Call should be measured");
+        assertTrue(statistics.getLatency()<500,"Consumption should not be measured as latency of the call");
+    }
+
+    @Test
+    public void testAgentTargetCompressed() {
+        QueryExecutor remoteExec=QueryExecutor.newBuilder()
+                .endpoint(serviceUrl())
+                .queryString("SELECT ?what WHERE { ?what ?p ?o }")
+                .timeout(5,TimeUnit.SECONDS)
+                .sendMode(QuerySendMode.asPost)
+                .agentConfig(config)
+                .compressBody(true)
+                .build();
+        try {
+            RowSet rows=remoteExec.select();
+            assertFalse(rows.hasNext(),"Empty response should be delivered");
+        } finally {
+            remoteExec.close();
+        }
+        assertEquals(List.of("gzip"),encodings,"Agents should receive a compressed query");
+    }
+}
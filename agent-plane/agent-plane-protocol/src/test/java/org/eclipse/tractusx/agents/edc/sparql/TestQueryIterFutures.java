@@ -0,0 +1,113 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.util.Context;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.eclipse.tractusx.agents.edc.TestConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the completion-order future iterator
+ */
+public class TestQueryIterFutures {
+
+    ConsoleMonitor monitor=new ConsoleMonitor();
+    AgentConfig agentConfig=new AgentConfig(monitor,new TestConfig());
+    ExecutorService executor=Executors.newFixedThreadPool(2);
+    Var resultVar=Var.alloc("result");
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    protected QueryIterator result(String value) {
+        Binding binding=BindingFactory.binding(resultVar,NodeFactory.createLiteral(value));
+        return QueryIterPlainWrapper.create(List.of(binding).iterator());
+    }
+
+    @Test
+    public void testCompletionOrder() {
+        CountDownLatch slowLatch=new CountDownLatch(1);
+        BlockingQueue<Future<QueryIterator>> completed=new LinkedBlockingQueue<>();
+        CompletionService<QueryIterator> completion=new ExecutorCompletionService<>(executor,completed);
+        Map<Future<QueryIterator>,String> futures=new HashMap<>();
+        futures.put(completion.submit(() -> {
+            slowLatch.await();
+            return result("slow");
+        }),"edcs://slow");
+        futures.put(completion.submit(() -> result("fast")),"edcs://fast");
+        Context context=new Context();
+        QueryIterFutures iterator=new QueryIterFutures(agentConfig,monitor,"source","asset",resultVar,context,futures,completed,-1);
+        List<String> results=new ArrayList<>();
+        results.add(iterator.next().get(resultVar).getLiteralLexicalForm());
+        slowLatch.countDown();
+        results.add(iterator.next().get(resultVar).getLiteralLexicalForm());
+        assertEquals(false,iterator.hasNext(),"All results should have been consumed");
+        assertEquals(List.of("fast","slow"),results,"Results should arrive in completion order");
+        assertEquals(null,CatenaxWarning.getWarnings(context),"No warnings should be produced");
+    }
+
+    @Test
+    public void testDeadline() {
+        CountDownLatch slowLatch=new CountDownLatch(1);
+        BlockingQueue<Future<QueryIterator>> completed=new LinkedBlockingQueue<>();
+        CompletionService<QueryIterator> completion=new ExecutorCompletionService<>(executor,completed);
+        Map<Future<QueryIterator>,String> futures=new HashMap<>();
+        futures.put(completion.submit(() -> {
+            slowLatch.await();
+            return result("slow");
+        }),"edcs://slow");
+        futures.put(completion.submit(() -> result("fast")),"edcs://fast");
+        Context context=new Context();
+        QueryIterFutures iterator=new QueryIterFutures(agentConfig,monitor,"source","asset",resultVar,context,futures,completed,System.currentTimeMillis()+500);
+        int count=0;
+        while(iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        slowLatch.countDown();
+        assertEquals(1,count,"Only the fast result should be delivered");
+        List<CatenaxWarning> warnings=CatenaxWarning.getWarnings(context);
+        assertEquals(1,warnings.size(),"The straggler should be reported");
+        assertEquals("edcs://slow",warnings.get(0).getTargetTenant(),"The straggler target should be reported");
+    }
+}
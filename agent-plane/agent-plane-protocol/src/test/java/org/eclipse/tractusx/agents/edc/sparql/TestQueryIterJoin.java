@@ -0,0 +1,226 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBase;
+import org.apache.jena.sparql.engine.binding.BindingBuilder;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests the join of remote results with the original bindings
+ */
+public class TestQueryIterJoin {
+
+    Var idVar=Var.alloc("binding");
+    Var subject=Var.alloc("subject");
+    Var label=Var.alloc("label");
+    Var other=Var.alloc("other");
+
+    protected List<List<Binding>> fanOut(int count) {
+        List<Binding> left=new ArrayList<>(count);
+        for(int row=0;row<count;row++) {
+            left.add(BindingFactory.binding(subject,NodeFactory.createURI("urn:cx:Part#"+row),idVar,QueryIterJoin.idNode(0),
+                    other,NodeFactory.createLiteral(String.valueOf(row))));
+        }
+        return List.of(left,List.of(BindingFactory.binding(subject,NodeFactory.createURI("urn:cx:Part#x"),idVar,QueryIterJoin.idNode(1))));
+    }
+
+    @Test
+    public void testIds() {
+        assertEquals(4711,QueryIterJoin.idOf(QueryIterJoin.idNode(4711)),"Ids should round trip");
+        assertEquals(-1,QueryIterJoin.idOf(NodeFactory.createLiteral("a1")),"Non-numeric ids should be rejected");
+        assertEquals(-1,QueryIterJoin.idOf(null),"Unbound ids should be rejected");
+    }
+
+    @Test
+    public void testFanOut() {
+        List<List<Binding>> joinBindings=fanOut(10000);
+        List<Binding> remote=List.of(
+                BindingFactory.binding(idVar,QueryIterJoin.idNode(7)),
+                BindingFactory.binding(idVar,QueryIterJoin.idNode(0),label,NodeFactory.createLiteral("joined")),
+                BindingFactory.binding(idVar,QueryIterJoin.idNode(1)));
+        QueryIterator join=new QueryIterJoin(QueryIterPlainWrapper.create(remote.iterator()),joinBindings,idVar,null);
+        int count=0;
+        for(;count<10000;count++) {
+            assertTrue(join.hasNext(),"Every original binding should be joined");
+            Binding result=join.next();
+            assertEquals("joined",result.get(label).getLiteralLexicalForm(),"Remote value should be added");
+            assertEquals(String.valueOf(count),result.get(other).getLiteralLexicalForm(),"Original value should be kept");
+        }
+        assertTrue(join.hasNext(),"Next remote row should be joined");
+        assertSame(joinBindings.get(1).get(0),join.next(),"Original binding should be reused if nothing is added");
+        assertFalse(join.hasNext(),"Unknown ids should be skipped");
+    }
+
+    @Test
+    public void testDeduplicatedJoin() {
+        List<Binding> bindings=List.of(
+                BindingFactory.binding(subject,NodeFactory.createURI("urn:cx:Part#a"),other,NodeFactory.createLiteral("1")),
+                BindingFactory.binding(subject,NodeFactory.createURI("urn:cx:Part#b"),other,NodeFactory.createLiteral("2")),
+                BindingFactory.binding(subject,NodeFactory.createURI("urn:cx:Part#a"),other,NodeFactory.createLiteral("3")),
+                BindingFactory.binding(subject,NodeFactory.createURI("urn:cx:Part#a"),other,NodeFactory.createLiteral("4")));
+        Var[] columns=new Var[] {subject};
+        List<List<Binding>> joinBindings=new ArrayList<>();
+        List<Binding> rows=DataspaceServiceExecutor.prepareJoin(bindings,columns,columns,idVar,joinBindings);
+        assertEquals(2,rows.size(),"Duplicate bindings should be sent only once");
+        assertEquals("urn:cx:Part#a",rows.get(0).get(subject).getURI(),"First distinct binding should be sent first");
+        assertEquals(QueryIterJoin.idNode(0),rows.get(0).get(idVar),"Rows should carry their id");
+        assertFalse(rows.get(0).contains(other),"Only the needed columns should be sent");
+        assertEquals(List.of(3,1),List.of(joinBindings.get(0).size(),joinBindings.get(1).size()),"Every original binding should be kept per id");
+
+        // the remote side answers per sent row
+        List<Binding> remote=List.of(
+                BindingFactory.binding(idVar,QueryIterJoin.idNode(1),label,NodeFactory.createLiteral("b")),
+                BindingFactory.binding(idVar,QueryIterJoin.idNode(0),label,NodeFactory.createLiteral("a")));
+        QueryIterator join=new QueryIterJoin(QueryIterPlainWrapper.create(remote.iterator()),joinBindings,idVar,null);
+        List<String> results=new ArrayList<>();
+        while (join.hasNext()) {
+            Binding result=join.next();
+            assertEquals(result.get(subject).getURI().substring("urn:cx:Part#".length()),result.get(label).getLiteralLexicalForm(),"Remote value should be joined to the matching bindings");
+            results.add(result.get(other).getLiteralLexicalForm());
+        }
+        assertEquals(List.of("2","1","3","4"),results,"Every original binding should be joined back");
+    }
+
+    /**
+     * access the parent a joined binding has been built upon
+     */
+    protected Binding parentOf(Binding binding) throws ReflectiveOperationException {
+        Field parent=BindingBase.class.getDeclaredField("parent");
+        parent.setAccessible(true);
+        return (Binding) parent.get(binding);
+    }
+
+    @Test
+    public void testJoinStructure() throws ReflectiveOperationException {
+        List<List<Binding>> joinBindings=fanOut(1000);
+        List<Binding> remote=List.of(
+                BindingFactory.binding(idVar,QueryIterJoin.idNode(0),label,NodeFactory.createLiteral("joined")),
+                BindingFactory.binding(idVar,QueryIterJoin.idNode(1)));
+        QueryIterator join=new QueryIterJoin(QueryIterPlainWrapper.create(remote.iterator()),joinBindings,idVar,null);
+        for (Binding left : joinBindings.get(0)) {
+            assertTrue(join.hasNext(),"Every original binding should be joined");
+            Binding result=join.next();
+            assertSame(left,parentOf(result),"Original binding should be reused as the parent instead of being copied");
+            assertEquals(left.size()+1,result.size(),"Only the remote value should be added to the joined binding");
+        }
+        assertTrue(join.hasNext(),"Next remote row should be joined");
+        assertSame(joinBindings.get(1).get(0),join.next(),"Original binding should be reused if nothing is added");
+        assertFalse(join.hasNext(),"Unknown ids should be skipped");
+    }
+
+    /**
+     * the former join which streamed and copied the bindings per remote row, kept for comparison
+     */
+    static class StreamJoin extends QueryIterJoin {
+        Iterator<Binding> streamed;
+
+        StreamJoin(QueryIterator input, List<List<Binding>> joinBindings, Var idVar) {
+            super(input,joinBindings,idVar,null);
+        }
+
+        @Override
+        public boolean hasNextBinding() {
+            return (streamed!=null && streamed.hasNext()) || hasNextInputBinding();
+        }
+
+        protected boolean hasNextInputBinding() {
+            if (getInput().hasNext()) {
+                Binding nextBinding=getInput().next();
+                int id=idOf(nextBinding.get(idVar));
+                List<Binding> resultBindings=id>=0 && id<joinBindings.size() ? joinBindings.get(id) : null;
+                if (resultBindings!=null) {
+                    streamed=resultBindings.stream().map(resultBinding -> {
+                        BindingBuilder bb=BindingBuilder.create(resultBinding);
+                        nextBinding.forEach((v,n) -> {
+                            if (!resultBinding.contains(v)) {
+                                bb.set(v,n);
+                            }
+                        });
+                        return bb.build();
+                    }).iterator();
+                } else {
+                    streamed=null;
+                }
+                return hasNextBinding();
+            }
+            return false;
+        }
+
+        @Override
+        public Binding moveToNextBinding() {
+            return streamed.next();
+        }
+    }
+
+    /**
+     * measures the bytes allocated per joined row (best of several rounds)
+     */
+    protected long allocationPerRow(com.sun.management.ThreadMXBean threads, List<List<Binding>> joinBindings, List<Binding> remote,
+                                    Function<QueryIterator,QueryIterator> joiner) {
+        long best=Long.MAX_VALUE;
+        for (int round=0;round<10;round++) {
+            QueryIterator join=joiner.apply(QueryIterPlainWrapper.create(remote.iterator()));
+            long before=threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long count=0;
+            while (join.hasNext()) {
+                join.next();
+                count++;
+            }
+            long perRow=(threads.getThreadAllocatedBytes(Thread.currentThread().getId())-before)/count;
+            best=Math.min(best,perRow);
+        }
+        return best;
+    }
+
+    @Test
+    public void testAllocationAgainstStreamJoin() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,"Allocation counter needed");
+        com.sun.management.ThreadMXBean threads=(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),"Allocation counter needed");
+        // 10k remote rows, each fanning out to two original bindings
+        List<List<Binding>> joinBindings=new ArrayList<>();
+        List<Binding> remote=new ArrayList<>();
+        for (int id=0;id<10000;id++) {
+            Binding left=BindingFactory.binding(subject,NodeFactory.createURI("urn:cx:Part#"+id),other,NodeFactory.createLiteral("a"));
+            joinBindings.add(List.of(left,BindingFactory.binding(subject,left.get(subject),other,NodeFactory.createLiteral("b"))));
+            remote.add(BindingFactory.binding(idVar,QueryIterJoin.idNode(id),label,NodeFactory.createLiteral("joined")));
+        }
+        long streamed=allocationPerRow(threads,joinBindings,remote,input -> new StreamJoin(input,joinBindings,idVar));
+        long indexed=allocationPerRow(threads,joinBindings,remote,input -> new QueryIterJoin(input,joinBindings,idVar,null));
+        assertTrue(indexed<streamed,"Join should allocate less per row than the streamed join, but allocated "+indexed+" instead of "+streamed+" bytes");
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.exec.QueryExec;
+import org.apache.jena.sparql.exec.RowSet;
+import org.apache.jena.sparql.exec.RowSetStream;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the streaming remote iterator
+ */
+public class TestQueryIterRemote {
+
+    Var resultVar=Var.alloc("result");
+    AtomicInteger pulled=new AtomicInteger();
+    List<String> calls=new ArrayList<>();
+
+    /**
+     * a remote execution which only records how it is released
+     */
+    protected QueryExec remoteExec() {
+        return remoteExec(null);
+    }
+
+    /**
+     * an execution which records how it is started and released
+     */
+    protected QueryExec remoteExec(RowSet rowSet) {
+        return (QueryExec) Proxy.newProxyInstance(getClass().getClassLoader(),new Class<?>[]{QueryExec.class},(proxy,method,args) -> {
+            calls.add(method.getName());
+            return "select".equals(method.getName()) ? rowSet : null;
+        });
+    }
+
+    /**
+     * remote rows which count how many have been read from the connection
+     */
+    protected Iterator<Binding> remoteRows(int count) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return pulled.get()<count;
+            }
+
+            @Override
+            public Binding next() {
+                return BindingFactory.binding(resultVar,NodeFactory.createLiteral(String.valueOf(pulled.getAndIncrement())));
+            }
+        };
+    }
+
+    @Test
+    public void testReadAheadAndExhaustion() {
+        CompletableFuture<Boolean> released=new CompletableFuture<>();
+        QueryIterRemote iterator=new QueryIterRemote(remoteExec(),RowSetStream.create(List.of(resultVar),remoteRows(5))).onRelease(released::complete).readAhead(2);
+        assertEquals(2,pulled.get(),"Only the read-ahead rows should have been pulled");
+        assertFalse(released.isDone(),"Connection should be kept while rows are pending");
+        List<String> results=new ArrayList<>();
+        while (iterator.hasNext()) {
+            results.add(iterator.next().get(resultVar).getLiteralLexicalForm());
+        }
+        assertEquals(List.of("0","1","2","3","4"),results,"All rows should be delivered in order");
+        assertEquals(List.of("close"),calls,"Exhausted connection should be closed regularly");
+        assertTrue(released.join(),"Release should report a complete response");
+        iterator.close();
+        assertEquals(List.of("close"),calls,"Connection should be released only once");
+    }
+
+    @Test
+    public void testReadAheadExhaustsSmallResponse() {
+        CompletableFuture<Boolean> released=new CompletableFuture<>();
+        QueryIterRemote iterator=new QueryIterRemote(remoteExec(),RowSetStream.create(List.of(resultVar),remoteRows(1))).onRelease(released::complete).readAhead(4);
+        assertTrue(released.join(),"Small response should be released during read-ahead");
+        assertEquals(List.of("close"),calls,"Connection should be closed during read-ahead");
+        assertTrue(iterator.hasNext(),"Buffered row should still be delivered");
+        iterator.next();
+        assertFalse(iterator.hasNext(),"No further rows");
+        iterator.close();
+    }
+
+    @Test
+    public void testAbortOnClose() {
+        CompletableFuture<Boolean> released=new CompletableFuture<>();
+        QueryIterRemote iterator=new QueryIterRemote(remoteExec(),RowSetStream.create(List.of(resultVar),remoteRows(100))).onRelease(released::complete).readAhead(2);
+        iterator.next();
+        iterator.close();
+        assertEquals(List.of("abort"),calls,"Early close should abort instead of draining the connection");
+        assertFalse(released.join(),"Release should report an incomplete response");
+        assertEquals(2,pulled.get(),"No further rows should be pulled");
+    }
+
+    @Test
+    public void testAbortOnCancel() {
+        CompletableFuture<Boolean> released=new CompletableFuture<>();
+        QueryIterRemote iterator=new QueryIterRemote(remoteExec(),RowSetStream.create(List.of(resultVar),remoteRows(100))).onRelease(released::complete).readAhead(2);
+        iterator.cancel();
+        assertEquals(List.of("abort"),calls,"Cancel should abort the connection");
+        assertFalse(released.join(),"Release should report an incomplete response");
+        iterator.close();
+        assertEquals(List.of("abort"),calls,"Connection should be released only once");
+    }
+
+    @Test
+    public void testStartOnConsumption() {
+        CompletableFuture<Boolean> released=new CompletableFuture<>();
+        QueryIterRemote iterator=new QueryIterRemote(remoteExec(RowSetStream.create(List.of(resultVar),remoteRows(3)))).onRelease(released::complete);
+        assertEquals(List.of(),calls,"Execution should not be started before consumption");
+        int count=0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(3,count,"All rows should be delivered");
+        assertEquals(List.of("select","close"),calls,"Execution should be started by the consumer and closed when exhausted");
+        assertTrue(released.join(),"Release should report a complete evaluation");
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the compiled remote queries
+ */
+public class TestRemoteQueryTemplate {
+
+    Op opRemote=Algebra.compile(QueryFactory.create("SELECT * WHERE { ?s <urn:cx:p> ?o }").getQueryPattern());
+
+    protected List<String> execute(String query, String var) {
+        Model model=ModelFactory.createDefaultModel();
+        model.add(model.createResource("urn:cx:a"),model.createProperty("urn:cx:p"),"first \"value\"");
+        model.add(model.createResource("urn:cx:b"),model.createProperty("urn:cx:p"),"second");
+        Dataset dataset=DatasetFactory.create(model);
+        List<String> result=new ArrayList<>();
+        try (QueryExecution execution=QueryExecutionFactory.create(QueryFactory.create(query),dataset)) {
+            ResultSet resultSet=execution.execSelect();
+            while (resultSet.hasNext()) {
+                QuerySolution solution=resultSet.next();
+                result.add(solution.getLiteral(var).getLexicalForm()+"="+solution.getLiteral("o").getLexicalForm());
+            }
+        }
+        result.sort(String::compareTo);
+        return result;
+    }
+
+    @Test
+    public void testRenderRows() {
+        RemoteQueryTemplate template=RemoteQueryTemplate.compile(opRemote,Set.of("s"));
+        Var idVar=template.getIdVar();
+        assertEquals(List.of(Var.alloc("s")),template.getNeededVars(),"Bound variable should be needed");
+        List<Binding> rows=List.of(
+                BindingFactory.binding(Var.alloc("s"),NodeFactory.createURI("urn:cx:a"),idVar,NodeFactory.createLiteral("0")),
+                BindingFactory.binding(Var.alloc("s"),NodeFactory.createURI("urn:cx:c"),idVar,NodeFactory.createLiteral("1")));
+        assertEquals(List.of("0=first \"value\""),execute(template.render(rows),idVar.getVarName()),"Only the rows of the batch should be joined");
+        List<Binding> otherRows=List.of(BindingFactory.binding(Var.alloc("s"),NodeFactory.createURI("urn:cx:b"),idVar,NodeFactory.createLiteral("0")));
+        assertEquals(List.of("0=second"),execute(template.render(otherRows),idVar.getVarName()),"Template should be reusable");
+    }
+
+    @Test
+    public void testSingleVariableRows() {
+        RemoteQueryTemplate template=RemoteQueryTemplate.compile(opRemote,Set.of());
+        Var idVar=template.getIdVar();
+        List<Binding> rows=List.of(BindingFactory.binding(idVar,NodeFactory.createLiteral("0")));
+        assertEquals(List.of("0=first \"value\"","0=second"),execute(template.render(rows),idVar.getVarName()),"Single variable tables should be rendered");
+    }
+
+    @Test
+    public void testModifiers() {
+        Op opLimited=Algebra.compile(QueryFactory.create("SELECT DISTINCT ?o WHERE { ?s <urn:cx:p> ?o } ORDER BY DESC(?o) LIMIT 1"));
+        RemoteQueryTemplate template=RemoteQueryTemplate.compile(opLimited,Set.of());
+        Var idVar=template.getIdVar();
+        List<Binding> rows=List.of(BindingFactory.binding(idVar,NodeFactory.createLiteral("0")));
+        String query=template.render(rows);
+        assertEquals(List.of("0=second"),execute(query,idVar.getVarName()),"Modifiers should apply to the joined rows");
+        assertTrue(query.matches("(?s).*LIMIT\\s+1\\s*"),"Limit should stay at the top of the remote query: "+query);
+    }
+
+    @Test
+    public void testGrouping() {
+        Op opGrouped=Algebra.compile(QueryFactory.create("SELECT (COUNT(?s) AS ?o) WHERE { ?s <urn:cx:p> ?v }"));
+        RemoteQueryTemplate template=RemoteQueryTemplate.compile(opGrouped,Set.of());
+        Var idVar=template.getIdVar();
+        List<Binding> rows=List.of(BindingFactory.binding(idVar,NodeFactory.createLiteral("0")),BindingFactory.binding(idVar,NodeFactory.createLiteral("1")));
+        assertEquals(List.of("0=2","1=2"),execute(template.render(rows),idVar.getVarName()),"Each binding should be aggregated separately");
+    }
+
+    @Test
+    public void testScopeCompilesOnce() {
+        FederationScope scope=new FederationScope();
+        RemoteQueryTemplate first=scope.getTemplate(List.of(opRemote,Set.of("s")),key -> RemoteQueryTemplate.compile(opRemote,Set.of("s")));
+        RemoteQueryTemplate second=scope.getTemplate(List.of(opRemote,Set.of("s")),key -> RemoteQueryTemplate.compile(opRemote,Set.of("s")));
+        assertSame(first,second,"Template should be compiled once per query");
+    }
+}
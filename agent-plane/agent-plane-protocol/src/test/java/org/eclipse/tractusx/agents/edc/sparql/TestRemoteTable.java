@@ -0,0 +1,53 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the local hash join of fetched service patterns
+ */
+public class TestRemoteTable {
+
+    Var part=Var.alloc("part");
+    Var name=Var.alloc("name");
+    Var other=Var.alloc("other");
+
+    @Test
+    public void testJoin() {
+        RemoteTable table=new RemoteTable(List.of(part,name),List.of(
+                BindingFactory.binding(part,NodeFactory.createURI("urn:cx:Part#1"),name,NodeFactory.createLiteral("one")),
+                BindingFactory.binding(part,NodeFactory.createURI("urn:cx:Part#2"),name,NodeFactory.createLiteral("two")),
+                BindingFactory.binding(name,NodeFactory.createLiteral("any"))));
+        List<Binding> results=table.join(List.of(
+                BindingFactory.binding(part,NodeFactory.createURI("urn:cx:Part#1"),other,NodeFactory.createLiteral("x")),
+                BindingFactory.binding(part,NodeFactory.createURI("urn:cx:Part#3")),
+                BindingFactory.binding(part,NodeFactory.createURI("urn:cx:Part#2"),name,NodeFactory.createLiteral("none"))));
+        assertEquals(3,results.size(),"Matching rows and rows without the join variable should be joined");
+        assertEquals("one",results.get(0).get(name).getLiteralLexicalForm(),"Remote value should be added");
+        assertEquals("x",results.get(0).get(other).getLiteralLexicalForm(),"Original value should be kept");
+        assertEquals(3,table.join(List.of(BindingFactory.binding(other,NodeFactory.createLiteral("x")))).size(),"Unrelated bindings should yield the cross product");
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the circuit breaker and latency percentiles of remote endpoints
+ */
+public class TestServiceCircuitBreaker {
+
+    @Test
+    public void testOpenAndProbe() throws InterruptedException {
+        ServiceCircuitBreaker breaker=new ServiceCircuitBreaker("http://down/sparql",2,50);
+        assertTrue(breaker.tryAcquire(),"Closed circuit should let calls through");
+        breaker.recordFailure();
+        assertEquals(ServiceCircuitBreaker.State.CLOSED,breaker.getState(),"Single failure should not open the circuit");
+        breaker.recordFailure();
+        assertEquals(ServiceCircuitBreaker.State.OPEN,breaker.getState(),"Consecutive failures should open the circuit");
+        assertFalse(breaker.tryAcquire(),"Open circuit should fail fast");
+        Thread.sleep(100);
+        assertTrue(breaker.tryAcquire(),"A probe should be let through after the delay");
+        assertFalse(breaker.tryAcquire(),"Only a single probe should be let through");
+        breaker.release();
+        assertTrue(breaker.tryAcquire(),"A released probe should not block the endpoint");
+        breaker.recordSuccess();
+        assertEquals(ServiceCircuitBreaker.State.CLOSED,breaker.getState(),"Successful probe should close the circuit");
+    }
+
+    @Test
+    public void testLatencyPercentile() {
+        ServiceStatistics statistics=new ServiceStatistics("http://slow/sparql");
+        assertEquals(-1,statistics.getLatencyPercentile(0.95),"Unknown latency should be negative");
+        for(int count=1;count<=100;count++) {
+            statistics.recordSuccess(1,count);
+        }
+        assertEquals(95,statistics.getLatencyPercentile(0.95),"Correct percentile");
+        assertEquals(100,statistics.getLatencySamples(),"Correct number of samples");
+    }
+}
@@ -0,0 +1,167 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpExtend;
+import org.apache.jena.sparql.algebra.op.OpFilter;
+import org.apache.jena.sparql.algebra.op.OpGroup;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests pushing operators into the remote queries of services
+ */
+public class TestServicePushdown {
+
+    protected List<ServiceModifiers> pushdown(String query) {
+        return pushdown(query,true);
+    }
+
+    protected List<ServiceModifiers> pushdown(String query, boolean aggregates) {
+        Op op=new ServicePushdown(aggregates).rewrite(Algebra.optimize(Algebra.compile(QueryFactory.create(query))));
+        List<OpService> services=new ArrayList<>();
+        ServicePushdown.collectServices(op,services);
+        List<ServiceModifiers> result=new ArrayList<>();
+        services.forEach(service -> result.add(ServiceModifiers.of(service.getSubOp())));
+        return result;
+    }
+
+    protected String filters(ServiceModifiers modifiers) {
+        return modifiers.getPattern() instanceof OpFilter ? ((OpFilter) modifiers.getPattern()).getExprs().toString() : "";
+    }
+
+    @Test
+    public void testFilter() {
+        List<ServiceModifiers> services=pushdown("SELECT * WHERE { SERVICE <urn:a> { ?a <urn:p> ?b . ?a <urn:q> ?c } "+
+                "SERVICE <urn:b> { ?a <urn:r> ?d OPTIONAL { ?a <urn:s> ?e } } FILTER(?c > 5 && ?d < 3 && ?c < ?d && ?e = 1 && ?c < RAND()) }");
+        assertEquals("[(> ?c 5)]",filters(services.get(0)),"Conjuncts of the service variables should be pushed");
+        assertEquals("[(< ?d 3)]",filters(services.get(1)),"Conjuncts of optional or non-deterministic variables should stay local");
+    }
+
+    @Test
+    public void testTopN() {
+        List<ServiceModifiers> services=pushdown("SELECT ?a ?b WHERE { { SERVICE <urn:a> { ?a <urn:p> ?b } } UNION { SERVICE <urn:b> { ?a <urn:p> ?b FILTER(?b > 2) } } } "+
+                "ORDER BY DESC(?b) LIMIT 10 OFFSET 5");
+        for (ServiceModifiers service : services) {
+            assertEquals(15,service.length,"Limit and offset should be pushed into all branches");
+            assertEquals(List.of(new SortCondition(Var.alloc("b"),Query.ORDER_DESCENDING)),service.getConditions(),"Order should be pushed into all branches");
+        }
+    }
+
+    @Test
+    public void testNoLimitThroughJoin() {
+        List<ServiceModifiers> services=pushdown("SELECT * WHERE { SERVICE <urn:a> { ?a <urn:p> ?b } SERVICE <urn:b> { ?a <urn:q> ?c } } LIMIT 10");
+        services.forEach(service -> assertEquals(Query.NOLIMIT,service.length,"Limit should not be pushed through joins"));
+        services=pushdown("SELECT * WHERE { SERVICE <urn:a> { ?a <urn:p> ?b } FILTER(?b > <urn:q>(?a)) } ORDER BY ?b LIMIT 10");
+        assertEquals(Query.NOLIMIT,services.get(0).length,"Limit should not be pushed through local filters");
+    }
+
+    @Test
+    public void testDistinctAndProjection() {
+        List<ServiceModifiers> services=pushdown("SELECT DISTINCT ?a WHERE { SERVICE <urn:a> { ?a <urn:p> ?b . ?b <urn:q> ?c } SERVICE <urn:b> { ?b <urn:r> ?d } }");
+        assertEquals(List.of(Var.alloc("a"),Var.alloc("b")),services.get(0).getVars(),"Only used variables should be projected");
+        assertEquals(List.of(Var.alloc("b")),services.get(1).getVars(),"Only join variables should be projected");
+        services.forEach(service -> assertTrue(service.isDistinct(),"Distinct should be pushed into all services"));
+        services=pushdown("SELECT DISTINCT ?a (COUNT(?b) AS ?n) WHERE { SERVICE <urn:a> { ?a <urn:p> ?b . ?a <urn:q> ?c } } GROUP BY ?a",false);
+        assertEquals(List.of(Var.alloc("a"),Var.alloc("b")),services.get(0).getVars(),"Aggregated variables should be projected");
+        assertFalse(services.get(0).isDistinct(),"Distinct should not be pushed through aggregations");
+    }
+
+    @Test
+    public void testAggregates() {
+        String query="SELECT ?a (COUNT(*) AS ?n) (AVG(?b) AS ?m) (MAX(?b) AS ?x) WHERE { { SERVICE <urn:a> { ?a <urn:p> ?b } } UNION { SERVICE <urn:b> { ?a <urn:p> ?b } } "+
+                "FILTER(?b > 2) } GROUP BY ?a";
+        List<ServiceModifiers> services=pushdown(query);
+        for (ServiceModifiers service : services) {
+            assertEquals(5,service.getVars().size(),"Group and partial aggregates should be returned");
+            OpGroup opGroup=(OpGroup) ((OpExtend) service.getPattern()).getSubOp();
+            assertEquals(List.of(Var.alloc("a")),opGroup.getGroupVars().getVars(),"Grouping should be pushed");
+            assertEquals(4,opGroup.getAggregators().size(),"Average should be split into sum and count");
+            assertTrue(opGroup.getSubOp() instanceof OpFilter,"Filter should be pushed below the grouping");
+        }
+        services=pushdown(query.replace("COUNT(*)","COUNT(DISTINCT ?b)"));
+        services.forEach(service -> assertFalse(service.getPattern() instanceof OpExtend,"Distinct counts should not be split"));
+        services=pushdown("SELECT (SUM(?b) AS ?n) WHERE { SERVICE <urn:a> { ?a <urn:p> ?b } SERVICE <urn:b> { ?a <urn:q> ?c } }");
+        services.forEach(service -> assertFalse(service.getPattern() instanceof OpExtend,"Aggregates of joins should not be split"));
+    }
+    @Test
+    public void testNoAggregatesOverSkills() {
+        String query="SELECT ?a (COUNT(*) AS ?n) WHERE { SERVICE %s { ?a <urn:p> ?b } } GROUP BY ?a";
+        for (String service : List.of("?service","<edcs://partner#urn:cx:Asset1>","<edcs://partner#SkillAsset?param=1>")) {
+            List<ServiceModifiers> services=pushdown(String.format(query,service));
+            assertFalse(services.get(0).getPattern() instanceof OpExtend,"Aggregates over possible skills should not be split: "+service);
+        }
+        List<ServiceModifiers> services=pushdown(String.format(query,"<edcs://partner#GraphAsset>"));
+        assertTrue(services.get(0).getPattern() instanceof OpExtend,"Aggregates over graph assets should be split");
+    }
+
+    @Test
+    public void testSkillFallback() {
+        Op op=new ServicePushdown().rewrite(Algebra.optimize(Algebra.compile(QueryFactory.create(
+                "SELECT ?a (COUNT(*) AS ?n) (SUM(?b) AS ?s) WHERE { SERVICE <edcs://partner#GraphAsset> { ?a <urn:p> ?b } FILTER(?b > 1) } GROUP BY ?a"))));
+        List<OpService> services=new ArrayList<>();
+        ServicePushdown.collectServices(op,services);
+        Op subOp=services.get(0).getSubOp();
+        OpGroup opGroup=ServicePushdown.getPartialGroup(subOp);
+        assertNotNull(opGroup,"Split service should carry a partial grouping");
+        assertNull(ServicePushdown.getPartialGroup(opGroup.getSubOp()),"Raw pattern should not carry a partial grouping");
+        // a skill answers with its raw rows
+        Var a=Var.alloc("a");
+        Var b=Var.alloc("b");
+        List<Binding> rows=List.of(
+                BindingFactory.binding(a,NodeFactory.createURI("urn:x"),b,NodeValue.makeInteger(2).asNode()),
+                BindingFactory.binding(a,NodeFactory.createURI("urn:x"),b,NodeValue.makeInteger(3).asNode()),
+                BindingFactory.binding(a,NodeFactory.createURI("urn:x"),b,NodeValue.makeInteger(1).asNode()),
+                BindingFactory.binding(a,NodeFactory.createURI("urn:y"),b,NodeValue.makeInteger(4).asNode()));
+        ExecutionContext execCxt=new ExecutionContext(DatasetGraphFactory.create());
+        QueryIterator partials=ServicePushdown.aggregateLocally(subOp,Set.of(),QueryIterPlainWrapper.create(rows.iterator(),execCxt),execCxt);
+        List<Var> partialVars=((OpExtend) ServiceModifiers.of(subOp).getPattern()).getVarExprList().getVars();
+        Map<String,String> results=new HashMap<>();
+        while (partials.hasNext()) {
+            Binding partial=partials.next();
+            assertEquals(3,partial.size(),"Only the group and the partial aggregates should be returned");
+            results.put(partial.get(a).getURI(),partial.get(partialVars.get(0)).getLiteralLexicalForm()+"/"+partial.get(partialVars.get(1)).getLiteralLexicalForm());
+        }
+        assertEquals(Map.of("urn:x","2/5","urn:y","1/4"),results,"Filtered rows should be counted and summed per group");
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright (c) 2022,2024 Contributors to the Eclipse Foundation
+//
+// See the NOTICE file(s) distributed with this work for additional
+// information regarding copyright ownership.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Apache License, Version 2.0 which is available at
+// https://www.apache.org/licenses/LICENSE-2.0.
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+// WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+// License for the specific language governing permissions and limitations
+// under the License.
+//
+// SPDX-License-Identifier: Apache-2.0
+package org.eclipse.tractusx.agents.edc.sparql;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QueryExecException;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpService;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
+import org.eclipse.tractusx.agents.edc.AgentConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the memoizing resolution of dataspace routes
+ */
+public class TestServiceRouteResolver {
+
+    ConsoleMonitor monitor=new ConsoleMonitor();
+    ServiceRouteResolver resolver=new ServiceRouteResolver(monitor,new AgentConfig(monitor,ConfigFactory.fromMap(Map.of())));
+
+    protected OpService service(String pattern) {
+        Op subOp=Algebra.compile(QueryFactory.create("SELECT * WHERE { "+pattern+" }").getQueryPattern());
+        return new OpService(NodeFactory.createURI("edcs://provider.cx"),subOp,false);
+    }
+
+    @Test
+    public void testAddresses() {
+        assertFalse(resolver.parse("https://provider.cx/sparql").dataspace,"Http addresses are no dataspace addresses");
+        ServiceRouteResolver.Address address=resolver.parse("edcs://provider.cx#GraphAsset?param=value");
+        assertEquals("https://provider.cx",address.connectorUrl,"Secure protocol should be used");
+        assertEquals("param=value",address.params,"Parameters should be kept");
+        assertSame(address,resolver.parse("edcs://provider.cx#GraphAsset?param=value"),"Addresses should be parsed once");
+        ServiceRouteResolver.Route route=resolver.resolve(service("?s ?p ?o"),"edcs://provider.cx#GraphAsset?param=value",List.of());
+        assertEquals("GraphAsset",route.asset,"Explicit asset should be used");
+        assertNull(route.subOp,"Pattern should not be rewritten");
+        assertNull(resolver.resolve(service("?s ?p ?o"),"https://provider.cx/sparql",List.of()),"Http addresses have no route");
+    }
+
+    @Test
+    public void testGraphRoutes() {
+        OpService opService=service("GRAPH ?g { ?s ?p ?o }");
+        Var graphVar=Var.alloc("g");
+        ServiceRouteResolver.Route first=resolver.resolve(opService,"edcs://provider.cx",
+                List.of(BindingFactory.binding(graphVar,NodeFactory.createURI("GraphAsset?a"))));
+        assertEquals("GraphAsset?a",first.asset,"Graph asset should be deduced from the binding");
+        ServiceRouteResolver.Route second=resolver.resolve(service("GRAPH ?g { ?s ?p ?o }"),"edcs://provider.cx",
+                List.of(BindingFactory.binding(graphVar,NodeFactory.createURI("GraphAsset?a"))));
+        assertSame(first,second,"Same pattern and graph binding should reuse the route");
+        ServiceRouteResolver.Route third=resolver.resolve(opService,"edcs://provider.cx",
+                List.of(BindingFactory.binding(graphVar,NodeFactory.createURI("GraphAsset?b"))));
+        assertEquals("GraphAsset?b",third.asset,"Other graph binding should yield another route");
+        assertThrows(QueryExecException.class,() -> resolver.resolve(service("GRAPH <urn:a> { ?s ?p ?o } GRAPH <urn:b> { ?s ?p ?o }"),"edcs://provider.cx",List.of()),
+                "Several graph assets should not be supported");
+    }
+}
@@ -19,12 +19,19 @@ package org.eclipse.tractusx.agents.edc.sparql;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
 import org.apache.jena.sparql.service.ServiceExecutorRegistry;
 import org.eclipse.edc.json.JacksonTypeManager;
 import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
 import org.eclipse.edc.spi.types.TypeManager;
 import org.eclipse.tractusx.agents.edc.*;
+import org.eclipse.tractusx.agents.edc.rdf.ExternalFormat;
 import org.eclipse.tractusx.agents.edc.rdf.RdfStore;
+import org.eclipse.tractusx.agents.edc.service.DataManagement;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -37,6 +44,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -317,4 +325,73 @@ public class TestSparqlProcessor {
         }
     }
 
+    /**
+     * test that services on graph assets of the own connector are evaluated without negotiation
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void testLocalService() throws IOException {
+        AgentConfig localConfig=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of("cx.agent.controlplane.protocol","https://localhost:8082/api/v1/dsp",
+                "cx.agent.service.asset.allow","(http|edc)s?://.*")));
+        RdfStore localStore=new RdfStore(localConfig,monitor);
+        localStore.registerAsset("urn:cx:GraphAsset:Local","<urn:cx:Part#1> <urn:cx:name> \"Part1\" . <urn:cx:Part#2> <urn:cx:name> \"Part2\" .",ExternalFormat.TURTLE);
+        Map<String, Map<String, Object>> addresses=new HashMap<>();
+        addresses.put("urn:cx:GraphAsset:Local",Map.of());
+        DataManagement localAssets=new DataManagement(monitor,typeManager,client,localConfig) {
+            @Override
+            public Optional<Map<String, Object>> getAssetAddress(String assetId) {
+                return Optional.ofNullable(addresses.get(assetId));
+            }
+        };
+        DataspaceServiceExecutor localExec=new DataspaceServiceExecutor(monitor,mockController,localConfig,client,Executors.newFixedThreadPool(4),typeManager,
+                Bulkhead.forFederation(localConfig,monitor),localStore,localAssets);
+        ServiceExecutorRegistry localReg=new ServiceExecutorRegistry();
+        localReg.addBulkLink(localExec);
+        SparqlQueryProcessor localProcessor=new SparqlQueryProcessor(localReg,monitor,localConfig,store,typeManager);
+        String service="SERVICE <edcs://localhost:8082/api/v1/dsp#urn:cx:GraphAsset:Local> { GRAPH <http://server/unset-base/urn:cx:GraphAsset:Local> ";
+        String query="SELECT ?part ?name ?other WHERE { VALUES (?part) { (<urn:cx:Part#1>) (<urn:cx:Part#3>) } "+
+                service+"{ ?part <urn:cx:name> ?name "+service+"{ ?part <urn:cx:name> ?other } } } } }";
+        Request.Builder builder=new Request.Builder();
+        builder.url("http://localhost:8080");
+        builder.addHeader("Accept","application/sparql-results+json");
+        builder.put(RequestBody.create(query, MediaType.parse("application/sparql-query")));
+        try (Response response=localProcessor.execute(builder.build(),null,null,Map.of())) {
+            assertTrue(response.isSuccessful(), "Successful result");
+            JsonNode root = mapper.readTree(Objects.requireNonNull(response.body()).string());
+            JsonNode bindings = root.get("results").get("bindings");
+            assertEquals(1, bindings.size(), "Correct number of result bindings.");
+            assertEquals("Part1", bindings.get(0).get("name").get("value").asText(), "Correct binding of the local asset");
+            assertEquals("Part1", bindings.get(0).get("other").get("value").asText(), "Nested service allowed by the default pattern");
+        }
+        // the asset denies the nested service although the default pattern allows it
+        addresses.put("urn:cx:GraphAsset:Local",Map.of(DataspaceServiceExecutor.DENY_SYMBOL.getSymbol(),"edcs://.*"));
+        try (Response response=localProcessor.execute(builder.build(),null,null,Map.of())) {
+            assertTrue(response.isSuccessful(), "Successful result");
+            JsonNode root = mapper.readTree(Objects.requireNonNull(response.body()).string());
+            assertEquals(0, root.get("results").get("bindings").size(), "Nested service should be denied by the asset pattern");
+            JsonNode warnings = mapper.readTree(response.header("cx_warnings", "[]"));
+            assertEquals(1, warnings.size(), "Denial should be reported");
+        }
+    }
+
+    /**
+     * test that oversized batches are split into concurrent requests bounded by the bulkhead
+     */
+    @Test
+    public void testSplitBatch() {
+        List<Binding> batch=new ArrayList<>();
+        for (int count=0; count<200; count++) {
+            batch.add(BindingFactory.binding(Var.alloc("what"),NodeFactory.createURI("urn:cx:Part#"+count)));
+        }
+        assertEquals(1,exec.splitBatch("https://provider:8282/sparql",batch).size(),"Batches should not be split by default");
+        AgentConfig splitConfig=new AgentConfig(monitor,ConfigFactory.fromMap(Map.of("cx.agent.federation.batch.split","4")));
+        DataspaceServiceExecutor splitExec=new DataspaceServiceExecutor(monitor,mockController,splitConfig,client,threadedExecutor,typeManager);
+        List<List<Binding>> parts=splitExec.splitBatch("https://provider:8282/sparql",batch);
+        assertEquals(3,parts.size(),"Batch should be split into parts of minimal size");
+        assertEquals(200,parts.stream().mapToInt(List::size).sum(),"No binding should be lost");
+        assertEquals(1,splitExec.splitBatch("https://provider:8282/sparql",batch.subList(0,100)).size(),"Small batches should not be split");
+        DataspaceServiceExecutor limitedExec=new DataspaceServiceExecutor(monitor,mockController,splitConfig,client,threadedExecutor,typeManager,
+                new Bulkhead("test",2,-1,0,10,monitor));
+        assertEquals(2,limitedExec.splitBatch("edcs://provider:8282/api/v1/dsp#urn:cx:Graph",batch).size(),"Split should be bounded by the connector limit");
+    }
 }